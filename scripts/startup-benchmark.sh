@@ -0,0 +1,56 @@
+#!/usr/bin/env bash
+# Time from JVM launch to the first 200 response of GET /hello, with and without
+# the AppCDS archive. Build the jar and the archive first:
+#
+#   mvn -Pappcds -DskipTests package
+#   scripts/startup-benchmark.sh [runs]
+#
+# The server is polled with curl every 5 ms, so results have a few ms of resolution.
+set -euo pipefail
+
+RUNS=${1:-10}
+PORT=${PORT:-35111}
+cd "$(dirname "$0")/.."
+JAR="$(pwd)/target/MicroSpringBoot-1.0-SNAPSHOT.jar"
+ARCHIVE="$(pwd)/target/app.jsa"
+MAIN=co.edu.escuelaing.microspringboot.MicroSpringBoot
+
+if [[ ! -f "$JAR" || ! -f "$ARCHIVE" ]]; then
+    echo "Missing $JAR or $ARCHIVE, run: mvn -Pappcds -DskipTests package" >&2
+    exit 1
+fi
+
+# measure <label> [jvm options...]
+measure() {
+    local label=$1
+    shift
+    local times=()
+    for _ in $(seq "$RUNS"); do
+        local start end pid
+        start=$(date +%s%N)
+        java "$@" -Dserver.port="$PORT" -Dserver.access.log.level=OFF -cp "$JAR" "$MAIN" >/dev/null 2>&1 &
+        pid=$!
+        until curl -sf -o /dev/null "http://localhost:$PORT/hello"; do
+            if ! kill -0 "$pid" 2>/dev/null; then
+                echo "$label: server exited before answering" >&2
+                exit 1
+            fi
+            sleep 0.005
+        done
+        end=$(date +%s%N)
+        kill "$pid"
+        wait "$pid" 2>/dev/null || true
+        times+=($(( (end - start) / 1000000 )))
+    done
+    local sorted
+    sorted=($(printf '%s\n' "${times[@]}" | sort -n))
+    local sum=0
+    for t in "${times[@]}"; do
+        sum=$((sum + t))
+    done
+    printf '%-10s runs=%d min=%dms median=%dms mean=%dms\n' "$label" "$RUNS" \
+        "${sorted[0]}" "${sorted[$((RUNS / 2))]}" "$((sum / RUNS))"
+}
+
+measure "default"
+measure "appcds" -XX:SharedArchiveFile="$ARCHIVE"
@@ -0,0 +1,58 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Compares the precompiled {@link ServiceInvoker} with the per-request
+ * reflection that invokeService used before: getParameters, annotation
+ * lookups and Method.invoke on every call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms256m", "-Xmx256m"})
+@State(Scope.Benchmark)
+public class InvokerBenchmark {
+
+    private HttpRequest request;
+    private RouteTable.Match route;
+    private Method method;
+
+    @Setup
+    public void setUp() throws Exception {
+        HttpServer.services.clear();
+        HttpServer.loadComponent(ExampleController.class);
+        request = new HttpRequest(new URI("/user?name=bench&age=30"));
+        route = HttpServer.services.match("/user");
+        method = route.getHandler();
+    }
+
+    @Benchmark
+    public Object reflection() throws Exception {
+        Parameter[] parameters = method.getParameters();
+        Object[] args = new Object[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            Parameter p = parameters[i];
+            if (p.isAnnotationPresent(RequestParam.class)) {
+                RequestParam param = p.getAnnotation(RequestParam.class);
+                String value = request.getValue(param.value());
+                if (value == null || value.isEmpty()) {
+                    value = param.defaultValue();
+                }
+                args[i] = p.getType() == int.class ? Integer.parseInt(value) : value;
+            }
+        }
+        return method.invoke(null, args);
+    }
+
+    @Benchmark
+    public Object invoker() throws Throwable {
+        return route.getInvoker().invoke(request, route);
+    }
+}
@@ -0,0 +1,136 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * JSON bodies written into the response buffer: the string concatenation
+ * greetingService used before, which does not escape, a hand-written
+ * StringBuilder that escapes like JsonWriter does, and JsonWriter itself, for
+ * the same greeting and for a record with numbers and a list. The escaping
+ * baseline separates the cost of escaping from the cost of the writer's
+ * per-property dispatch.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms256m", "-Xmx256m"})
+@State(Scope.Thread)
+public class JsonBenchmark {
+    private static final String HEX = "0123456789abcdef";
+
+    public record User(String name, int age, long visits, boolean active, List<String> roles) {
+    }
+
+    private String name;
+    private GreetingController.Greeting greeting;
+    private User user;
+    private HttpResponse response;
+
+    @Setup
+    public void setUp() {
+        name = "Daniel Aldana";
+        greeting = new GreetingController.Greeting("Hello " + name);
+        user = new User(name, 30, 1_234_567L, true, List.of("admin", "editor", "viewer"));
+        JsonWriter.prepare(GreetingController.Greeting.class);
+        JsonWriter.prepare(User.class);
+        response = new HttpResponse();
+    }
+
+    @Benchmark
+    public int greetingConcatenation() {
+        response.release();
+        response.write("{\"msg\": \"" + greeting.msg() + "\"}");
+        return response.getBodyLength();
+    }
+
+    @Benchmark
+    public int greetingEscapedBuilder() {
+        response.release();
+        StringBuilder json = new StringBuilder(32).append("{\"msg\":");
+        escape(greeting.msg(), json);
+        response.write(json.append('}').toString());
+        return response.getBodyLength();
+    }
+
+    @Benchmark
+    public int greetingJsonWriter() {
+        response.release();
+        JsonWriter.write(greeting, response);
+        return response.getBodyLength();
+    }
+
+    @Benchmark
+    public int userConcatenation() {
+        response.release();
+        StringBuilder roles = new StringBuilder();
+        for (String role : user.roles()) {
+            roles.append(roles.length() == 0 ? "\"" : ",\"").append(role).append('"');
+        }
+        response.write("{\"name\":\"" + user.name() + "\",\"age\":" + user.age() + ",\"visits\":" + user.visits()
+                + ",\"active\":" + user.active() + ",\"roles\":[" + roles + "]}");
+        return response.getBodyLength();
+    }
+
+    @Benchmark
+    public int userEscapedBuilder() {
+        response.release();
+        StringBuilder json = new StringBuilder(96).append("{\"name\":");
+        escape(user.name(), json);
+        json.append(",\"age\":").append(user.age()).append(",\"visits\":").append(user.visits())
+                .append(",\"active\":").append(user.active()).append(",\"roles\":[");
+        List<String> roles = user.roles();
+        for (int i = 0; i < roles.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            escape(roles.get(i), json);
+        }
+        response.write(json.append("]}").toString());
+        return response.getBodyLength();
+    }
+
+    @Benchmark
+    public int userJsonWriter() {
+        response.release();
+        JsonWriter.write(user, response);
+        return response.getBodyLength();
+    }
+
+    /**
+     * Quotes a string with the escapes JsonWriter writes, the way a hand-written serializer would.
+     */
+    private static void escape(String s, StringBuilder json) {
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                case '\b' -> json.append("\\b");
+                case '\f' -> json.append("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        json.append("\\u00").append(HEX.charAt(c >> 4)).append(HEX.charAt(c & 0xF));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    @Benchmark
+    public byte[] greetingStringBytes() {
+        // What greetingService paid before: a String, then its UTF-8 copy
+        return ("{\"msg\": \"" + greeting.msg() + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+}
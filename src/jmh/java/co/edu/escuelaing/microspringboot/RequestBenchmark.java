@@ -0,0 +1,69 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Request decoding: the query decoding done on the first parameter lookup,
+ * the byte-level head parser used by both engines, and the request target
+ * parsed from the head against the java.net.URI it replaced.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms256m", "-Xmx256m"})
+@State(Scope.Thread)
+public class RequestBenchmark {
+
+    private URI uri;
+    private byte[] head;
+    private HttpRequestParser parser;
+
+    @Setup
+    public void setUp() throws Exception {
+        uri = new URI("/user?name=bench&age=30&city=bogota");
+        head = ("GET /user?name=bench&age=30&city=bogota HTTP/1.1\r\n"
+                + "Host: localhost:35000\r\n"
+                + "User-Agent: Mozilla/5.0 (X11; Linux x86_64)\r\n"
+                + "Accept: text/html,application/xhtml+xml\r\n"
+                + "Accept-Encoding: gzip, deflate\r\n"
+                + "Connection: keep-alive\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        parser = new HttpRequestParser();
+    }
+
+    @Benchmark
+    public String parseQueryParams() {
+        return new HttpRequest(uri).getValue("city");
+    }
+
+    @Benchmark
+    public int parseHead() throws HttpParseException {
+        parser.reset();
+        return parser.parse(head, 0, head.length);
+    }
+
+    @Benchmark
+    public String targetAsUri() throws Exception {
+        parser.reset();
+        parser.parse(head, 0, head.length);
+        return new URI(parser.getTarget()).getPath();
+    }
+
+    @Benchmark
+    public String targetAsRequestTarget() throws Exception {
+        parser.reset();
+        parser.parse(head, 0, head.length);
+        return parser.getRequestTarget().getPath();
+    }
+
+    @Benchmark
+    public boolean parseHeadAndKeepAlive() throws HttpParseException {
+        parser.reset();
+        parser.parse(head, 0, head.length);
+        return HttpServer.isKeepAlive(parser);
+    }
+}
@@ -0,0 +1,58 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Route lookup in the services table and MIME type resolution.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms256m", "-Xmx256m"})
+@State(Scope.Benchmark)
+public class RoutingBenchmark {
+
+    @RestController
+    public static class OrdersController {
+        @GetMapping("/users/{id}/orders/{order}")
+        public static String order(@PathVariable("id") String id, @PathVariable("order") String order) {
+            return order;
+        }
+    }
+
+    private Path file;
+
+    @Setup
+    public void setUp() {
+        HttpServer.services.clear();
+        HttpServer.loadComponent(ExampleController.class);
+        HttpServer.loadComponent(GreetingController.class);
+        HttpServer.loadComponent(HelloController.class);
+        HttpServer.loadComponent(OrdersController.class);
+        file = Path.of("/css/style.css");
+    }
+
+    @Benchmark
+    public Object matchStatic() {
+        return HttpServer.services.match("/greeting");
+    }
+
+    @Benchmark
+    public Object matchVariables() {
+        return HttpServer.services.match("/users/42/orders/7");
+    }
+
+    @Benchmark
+    public Object matchMiss() {
+        return HttpServer.services.match("/style.css");
+    }
+
+    @Benchmark
+    public String getType() {
+        return HttpServer.getType(file);
+    }
+}
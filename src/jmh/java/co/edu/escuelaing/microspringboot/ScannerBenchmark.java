@@ -0,0 +1,120 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Startup cost of finding controllers in a classes directory of 1k and 10k
+ * classes, one in a hundred being a controller. headerScan is the current
+ * ComponentScanner, loadEveryClass the previous approach of calling
+ * Class.forName on every class, with a new class loader per run so the
+ * classes are really loaded and initialized.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 2, jvmArgsAppend = {"-Xms256m", "-Xmx256m"})
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+    private static final String PACKAGE = "co/edu/escuelaing/microspringboot/fixture/";
+
+    @Param({"1000", "10000"})
+    public int classes;
+
+    private Path dir;
+    private List<String> names;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("scanner-fixture");
+        Files.createDirectories(dir.resolve(PACKAGE));
+        names = new ArrayList<>(classes);
+        for (int i = 0; i < classes; i++) {
+            String name = PACKAGE + "Fixture" + i;
+            Files.write(dir.resolve(name + ".class"), classFile(name, i % 100 == 0));
+            names.add(name.replace('/', '.'));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<String> headerScan() throws IOException {
+        return ComponentScanner.findClassesInDirectory(dir, "co.edu.escuelaing.microspringboot");
+    }
+
+    @Benchmark
+    public List<Class<?>> loadEveryClass() throws Exception {
+        List<Class<?>> controllers = new ArrayList<>();
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()},
+                ScannerBenchmark.class.getClassLoader())) {
+            for (String name : names) {
+                Class<?> c = Class.forName(name, true, loader);
+                if (c.isAnnotationPresent(RestController.class)) {
+                    controllers.add(c);
+                }
+            }
+        }
+        return controllers;
+    }
+
+    /**
+     * Writes an empty public class annotated with @RestController, or with
+     * @Deprecated so the annotation attribute is parsed for every fixture.
+     */
+    private static byte[] classFile(String internalName, boolean controller) throws IOException {
+        String annotation = controller ? ComponentScanner.REST_CONTROLLER : "Ljava/lang/Deprecated;";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(61);
+        out.writeShort(7);
+        out.writeByte(1);
+        out.writeUTF(internalName);
+        out.writeByte(7);
+        out.writeShort(1);
+        out.writeByte(1);
+        out.writeUTF("java/lang/Object");
+        out.writeByte(7);
+        out.writeShort(3);
+        out.writeByte(1);
+        out.writeUTF("RuntimeVisibleAnnotations");
+        out.writeByte(1);
+        out.writeUTF(annotation);
+        // public super, this class, super class, no interfaces, fields or methods
+        out.writeShort(0x0021);
+        out.writeShort(2);
+        out.writeShort(4);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(1);
+        out.writeShort(5);
+        out.writeInt(6);
+        out.writeShort(1);
+        out.writeShort(6);
+        out.writeShort(0);
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,64 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * End to end request handling without sockets: a controller call through
+ * invokeService and static files from webroot through handleRequest.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms256m", "-Xmx256m"})
+@State(Scope.Thread)
+public class ServerBenchmark {
+
+    /**
+     * One static resource per run, so only handleStatic is parameterized.
+     */
+    @State(Scope.Thread)
+    public static class StaticFile {
+        @Param({"/index.html", "/style.css", "/time.jpg"})
+        public String path;
+
+        URI uri;
+        ByteArrayOutputStream output;
+
+        @Setup
+        public void setUp() throws Exception {
+            uri = new URI(path);
+            output = new ByteArrayOutputStream(64 * 1024);
+        }
+    }
+
+    private URI serviceUri;
+
+    @Setup
+    public void setUp() throws Exception {
+        // Keep the benchmark output free of the server's request logging
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        HttpServer.services.clear();
+        HttpServer.loadComponent(GreetingController.class);
+        serviceUri = new URI("/greeting?name=bench");
+    }
+
+    @Benchmark
+    public String invokeService() {
+        return HttpServer.invokeService(serviceUri);
+    }
+
+    @Benchmark
+    public int handleStatic(StaticFile file) throws IOException {
+        file.output.reset();
+        HttpServer.handleRequest(file.uri, file.output, true);
+        return file.output.size();
+    }
+}
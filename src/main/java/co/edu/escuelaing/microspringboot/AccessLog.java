@@ -0,0 +1,342 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous access log. Request threads fill preallocated records in a
+ * bounded lock-free ring and never wait: when the ring is full the record is
+ * dropped and counted. A single background thread formats the records and
+ * writes them in batches, so workers no longer contend on the System.out lock.
+ * <p>
+ * Configured through {@link ServerConfig} with ACCESS_LOG_LEVEL (OFF, INFO or
+ * DEBUG), ACCESS_LOG_SAMPLE (fraction of requests logged at INFO, 1 by default),
+ * ACCESS_LOG_BUFFER (ring size) and ACCESS_LOG_FILE (stdout when unset).
+ *
+ * @author daniel.aldana-b
+ */
+public final class AccessLog {
+
+    /**
+     * How much is logged. INFO writes one line per sampled request, DEBUG also
+     * writes the request heads and handler traces.
+     */
+    public enum Level { OFF, INFO, DEBUG }
+
+    private static final int BATCH = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * A slot of the ring. The sequence tells whether the slot is free for the
+     * producer of a position or holds a record ready for the writer.
+     */
+    private static final class Record {
+        volatile long sequence;
+        long timestamp;
+        Level level;
+        String method;
+        String path;
+        int status;
+        long bytes;
+        long durationNanos;
+        String thread;
+        String message;
+    }
+
+    private final Level level;
+    private final double sampleRate;
+    private final Record[] ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Only read and written by the writer thread
+    private long head;
+    private long reportedDrops;
+    private final LongAdder dropped = new LongAdder();
+    private final Writer out;
+    private final StringBuilder batch = new StringBuilder(BATCH * 96);
+    private volatile boolean running;
+    private Thread writer;
+
+    /**
+     * Creates a log without starting its writer thread.
+     *
+     * @param level      the most detailed level written
+     * @param sampleRate the fraction of requests logged at INFO, from 0 to 1
+     * @param capacity   the number of records the ring holds, rounded up to a power of two
+     * @param out        where the formatted lines are written
+     */
+    public AccessLog(Level level, double sampleRate, int capacity, Writer out) {
+        this.level = level;
+        this.sampleRate = sampleRate;
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new Record[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Record();
+            ring[i].sequence = i;
+        }
+        this.out = out;
+    }
+
+    /**
+     * Creates and starts the log described by the server configuration.
+     * @param config the settings, for the ACCESS_LOG_* values
+     * @return the running log
+     */
+    static AccessLog fromConfig(ServerConfig config) {
+        Level level = Level.INFO;
+        try {
+            level = Level.valueOf(config.getAccessLogLevel().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Variable ACCESS_LOG_LEVEL is not OFF, INFO or DEBUG using INFO.");
+        }
+        Writer writer = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        String file = config.getAccessLogFile();
+        if (file != null) {
+            try {
+                writer = Files.newBufferedWriter(Path.of(file), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("Could not open ACCESS_LOG_FILE " + file + " using stdout.");
+            }
+        }
+        AccessLog log = new AccessLog(level, config.getAccessLogSample(), config.getAccessLogBuffer(), writer);
+        if (level != Level.OFF) {
+            log.start();
+        }
+        return log;
+    }
+
+    /**
+     * Starts the background writer.
+     */
+    public synchronized void start() {
+        if (writer != null) {
+            return;
+        }
+        running = true;
+        writer = new Thread(this::run, "HttpServer-AccessLog");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stops the writer after it has written every queued record.
+     */
+    public void close() {
+        Thread t;
+        synchronized (this) {
+            t = writer;
+            running = false;
+        }
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Decides whether the current request is logged at INFO.
+     * @return true if the level allows it and the request falls in the sample
+     */
+    public boolean sample() {
+        if (level == Level.OFF) {
+            return false;
+        }
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * Tells whether DEBUG records are kept, so callers can skip building them.
+     * @return true at the DEBUG level
+     */
+    public boolean isDebugEnabled() {
+        return level == Level.DEBUG;
+    }
+
+    /**
+     * Queues the access record of a served request.
+     *
+     * @param method        the request method
+     * @param path          the request path, without the query
+     * @param status        the response status code, 0 if unknown
+     * @param bytes         the bytes written for the response
+     * @param durationNanos the time spent serving the request
+     */
+    public void access(String method, String path, int status, long bytes, long durationNanos) {
+        Record r = claim();
+        if (r == null) {
+            return;
+        }
+        r.level = Level.INFO;
+        r.method = method;
+        r.path = path;
+        r.status = status;
+        r.bytes = bytes;
+        r.durationNanos = durationNanos;
+        r.message = null;
+        publish(r);
+    }
+
+    /**
+     * Queues a DEBUG message. Ignored at other levels.
+     * @param message the text, line breaks are escaped when written
+     */
+    public void debug(String message) {
+        if (level != Level.DEBUG) {
+            return;
+        }
+        Record r = claim();
+        if (r == null) {
+            return;
+        }
+        r.level = Level.DEBUG;
+        r.method = null;
+        r.path = null;
+        r.message = message;
+        publish(r);
+    }
+
+    /**
+     * Gets the number of records lost because the ring was full.
+     * @return the drop count
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Reserves the next slot, or counts a drop when the writer is behind.
+     */
+    private Record claim() {
+        long pos = tail.get();
+        while (true) {
+            Record r = ring[(int) (pos & mask)];
+            long diff = r.sequence - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    r.timestamp = System.currentTimeMillis();
+                    r.thread = Thread.currentThread().getName();
+                    return r;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                // The slot still holds a record from the previous lap
+                dropped.increment();
+                return null;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    private void publish(Record r) {
+        // The volatile write makes the fields visible to the writer
+        r.sequence = r.sequence + 1;
+    }
+
+    private void run() {
+        while (true) {
+            boolean stop = !running;
+            int n;
+            try {
+                n = drain();
+            } catch (IOException e) {
+                // Nowhere left to report it, keep the request threads unaffected
+                n = 0;
+            }
+            if (n == 0) {
+                if (stop) {
+                    return;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Writes up to one batch of queued records. Only the writer thread may call it
+     * once the log is started.
+     *
+     * @return the number of records written
+     * @throws IOException if the output fails
+     */
+    int drain() throws IOException {
+        batch.setLength(0);
+        int n = 0;
+        while (n < BATCH) {
+            Record r = ring[(int) (head & mask)];
+            if (r.sequence != head + 1) {
+                break;
+            }
+            format(r, batch);
+            r.message = null;
+            r.sequence = head + ring.length;
+            head++;
+            n++;
+        }
+        long drops = dropped.sum();
+        if (drops > reportedDrops) {
+            batch.append(Instant.now()).append(" WARN dropped=").append(drops - reportedDrops)
+                    .append(" total_dropped=").append(drops).append('\n');
+            reportedDrops = drops;
+        }
+        if (batch.length() > 0) {
+            out.write(batch.toString());
+            out.flush();
+        }
+        return n;
+    }
+
+    private static void format(Record r, StringBuilder line) {
+        line.append(Instant.ofEpochMilli(r.timestamp)).append(' ').append(r.level);
+        if (r.level == Level.INFO) {
+            // The method and the decoded path come from the client, they must not start a new line
+            line.append(" method=");
+            escape(r.method, line);
+            line.append(" path=");
+            escape(r.path, line);
+            line.append(" status=").append(r.status)
+                    .append(" bytes=").append(r.bytes)
+                    .append(" duration_us=").append(r.durationNanos / 1000)
+                    .append(" thread=").append(r.thread);
+        } else {
+            line.append(" thread=").append(r.thread).append(' ');
+            escape(r.message, line);
+        }
+        line.append('\n');
+    }
+
+    private static void escape(String text, StringBuilder line) {
+        if (text == null) {
+            line.append("null");
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                line.append("\\n");
+            } else if (c == '\r') {
+                line.append("\\r");
+            } else {
+                line.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * The body of a request, read with Content-Length or chunked framing from the
+ * connection as the controller consumes it. Nothing is read before the first
+ * call, so an endpoint that streams an upload never holds it in memory, and
+ * reading stops at the end of the body, so the next pipelined request is left
+ * in the buffer. The decoded size is limited to MAX_BODY_SIZE.
+ *
+ * @author daniel.aldana-b
+ */
+final class BodyInputStream extends InputStream {
+    static final BodyInputStream EMPTY = new BodyInputStream(null, 0, null, null);
+    // Framing returned by length for a chunked body
+    static final long CHUNKED = -1;
+    static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ConnectionInput input;
+    private final Chunks chunks;
+    // Bytes left of a fixed length body
+    private long remaining;
+    // Where 100 Continue is sent before the first read, null if the client did not ask for it
+    private OutputStream interim;
+    private boolean failed;
+
+    private BodyInputStream(ConnectionInput input, long length, Chunks chunks, OutputStream interim) {
+        this.input = input;
+        this.remaining = length;
+        this.chunks = chunks;
+        this.interim = interim;
+    }
+
+    /**
+     * Opens the body of a request whose head was just parsed.
+     *
+     * @param head    the parsed head
+     * @param input   the connection buffer, positioned at the end of the head
+     * @param maxSize the maximum decoded body size
+     * @param interim the stream 100 Continue is written to when the client expects it,
+     *                null if the body has already been received
+     * @return the body, {@link #EMPTY} when the request has none
+     * @throws HttpParseException if the framing headers are invalid or the body is too large
+     */
+    static BodyInputStream open(HttpRequestParser head, ConnectionInput input, long maxSize, OutputStream interim)
+            throws HttpParseException {
+        long length = length(head, maxSize);
+        if (length == 0) {
+            return EMPTY;
+        }
+        OutputStream expect = interim != null && expectsContinue(head) ? interim : null;
+        return new BodyInputStream(input, length == CHUNKED ? 0 : length,
+                length == CHUNKED ? new Chunks(maxSize) : null, expect);
+    }
+
+    /**
+     * Reads the framing headers of a request.
+     *
+     * @param head    the parsed head
+     * @param maxSize the maximum decoded body size
+     * @return the body length, 0 when there is no body, or {@link #CHUNKED}
+     * @throws HttpParseException 400 for invalid or conflicting framing, 413 for a
+     *                            declared length over maxSize, 501 for other transfer codings
+     */
+    static long length(HttpRequestParser head, long maxSize) throws HttpParseException {
+        List<String> encodings = head.getHeaders("Transfer-Encoding");
+        List<String> lengths = head.getHeaders("Content-Length");
+        if (!encodings.isEmpty()) {
+            if (!lengths.isEmpty()) {
+                // Both framings at once is how requests are smuggled past proxies
+                throw new HttpParseException("400 Bad Request", "Both Transfer-Encoding and Content-Length");
+            }
+            if (encodings.size() > 1 || !encodings.get(0).equalsIgnoreCase("chunked")) {
+                throw new HttpParseException("501 Not Implemented", "Only chunked transfer coding is supported");
+            }
+            return CHUNKED;
+        }
+        if (lengths.isEmpty()) {
+            return 0;
+        }
+        String value = lengths.get(0);
+        for (String other : lengths) {
+            if (!other.equals(value)) {
+                throw new HttpParseException("400 Bad Request", "Conflicting Content-Length");
+            }
+        }
+        if (value.isEmpty() || value.length() > 18) {
+            throw new HttpParseException("400 Bad Request", "Invalid Content-Length");
+        }
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new HttpParseException("400 Bad Request", "Invalid Content-Length");
+            }
+            length = length * 10 + (c - '0');
+        }
+        if (length > maxSize) {
+            throw tooLarge(maxSize);
+        }
+        return length;
+    }
+
+    static boolean expectsContinue(HttpRequestParser head) {
+        return head.isVersion("HTTP/1.1") && head.headerEquals("Expect", "100-continue");
+    }
+
+    static HttpParseException tooLarge(long maxSize) {
+        return new HttpParseException("413 Content Too Large", "Request body exceeds " + maxSize + " bytes");
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (failed) {
+            throw new IOException("Request body is incomplete");
+        }
+        sendContinue();
+        try {
+            if (chunks == null) {
+                if (remaining == 0) {
+                    return -1;
+                }
+                int n = input.read(b, off, (int) Math.min(len, remaining));
+                if (n < 0) {
+                    throw new EOFException("Request body ended early");
+                }
+                remaining -= n;
+                return n;
+            }
+            while (!chunks.inData()) {
+                if (chunks.isDone()) {
+                    return -1;
+                }
+                int c = input.read();
+                if (c < 0) {
+                    throw new EOFException("Request body ended early");
+                }
+                chunks.step((byte) c);
+            }
+            int n = input.read(b, off, (int) Math.min(len, chunks.chunkRemaining()));
+            if (n < 0) {
+                throw new EOFException("Request body ended early");
+            }
+            chunks.skipData(n);
+            return n;
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    private void sendContinue() throws IOException {
+        if (interim != null) {
+            OutputStream out = interim;
+            interim = null;
+            out.write(CONTINUE);
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads and drops what the controller left of the body, so the connection
+     * can serve the next request.
+     *
+     * @param limit the most bytes worth reading, a longer rest closes the connection instead
+     * @return true if the whole body has been consumed
+     */
+    boolean skipRemaining(long limit) {
+        if (this == EMPTY) {
+            return true;
+        }
+        if (failed || interim != null) {
+            // 100 Continue was not sent, the client may never send the body
+            return false;
+        }
+        if (chunks == null && remaining > limit) {
+            return false;
+        }
+        byte[] scratch = new byte[4096];
+        long skipped = 0;
+        try {
+            int n;
+            while ((n = read(scratch, 0, scratch.length)) >= 0) {
+                skipped += n;
+                if (skipped > limit) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The chunked framing of a request body, one byte at a time. Used both to
+     * decode the body as it is read and by the nio engine to find where a
+     * buffered body ends. Chunk extensions and trailers are skipped.
+     */
+    static final class Chunks {
+        private static final int SIZE = 0;
+        private static final int EXTENSION = 1;
+        private static final int DATA = 2;
+        private static final int DATA_END = 3;
+        private static final int TRAILER_START = 4;
+        private static final int TRAILER = 5;
+        private static final int DONE = 6;
+        // Longest chunk size line or trailer section accepted
+        private static final int MAX_LINE = 8192;
+
+        private final long maxSize;
+        private int state = SIZE;
+        private long chunk;
+        private int digits;
+        private int lineLength;
+        // A CR was read and the next byte must be LF
+        private boolean cr;
+        private long total;
+        // Next byte to scan when the framing is scanned in a buffer
+        private int scanned = -1;
+
+        Chunks(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        boolean inData() {
+            return state == DATA;
+        }
+
+        boolean isDone() {
+            return state == DONE;
+        }
+
+        long chunkRemaining() {
+            return chunk;
+        }
+
+        void skipData(long n) {
+            chunk -= n;
+            if (chunk == 0) {
+                state = DATA_END;
+            }
+        }
+
+        /**
+         * Consumes one framing byte.
+         * @throws HttpParseException if the framing is malformed or the body exceeds the maximum size
+         */
+        void step(byte c) throws HttpParseException {
+            // CR is only accepted directly before LF, stray CRs are a request smuggling vector
+            if (cr) {
+                if (c != '\n') {
+                    throw malformed();
+                }
+                cr = false;
+            } else if (c == '\r') {
+                if (state == SIZE && digits == 0) {
+                    throw malformed();
+                }
+                cr = true;
+                return;
+            }
+            switch (state) {
+                case SIZE -> {
+                    int digit = Character.digit(c, 16);
+                    if (digit >= 0 && digits < 15) {
+                        chunk = chunk << 4 | digit;
+                        digits++;
+                    } else if ((c == ';' || c == ' ' || c == '\t') && digits > 0) {
+                        state = EXTENSION;
+                    } else if (c == '\n' && digits > 0) {
+                        endSizeLine();
+                    } else {
+                        throw malformed();
+                    }
+                }
+                case EXTENSION -> {
+                    if (c == '\n') {
+                        endSizeLine();
+                    } else if (++lineLength > MAX_LINE) {
+                        throw malformed();
+                    }
+                }
+                case DATA_END -> {
+                    if (c == '\n') {
+                        state = SIZE;
+                    } else {
+                        throw malformed();
+                    }
+                }
+                case TRAILER_START -> {
+                    if (c == '\n') {
+                        state = DONE;
+                    } else {
+                        state = TRAILER;
+                        lineLength++;
+                    }
+                }
+                case TRAILER -> {
+                    if (c == '\n') {
+                        state = TRAILER_START;
+                    } else if (++lineLength > MAX_LINE) {
+                        throw malformed();
+                    }
+                }
+                default -> throw new IllegalStateException("No framing byte expected");
+            }
+        }
+
+        private void endSizeLine() throws HttpParseException {
+            lineLength = 0;
+            digits = 0;
+            if (chunk == 0) {
+                state = TRAILER_START;
+                return;
+            }
+            total += chunk;
+            if (total > maxSize) {
+                throw tooLarge(maxSize);
+            }
+            state = DATA;
+        }
+
+        /**
+         * Scans the bytes received so far, resuming where the previous call stopped.
+         *
+         * @param b     the buffer
+         * @param start the first byte of the body, must not change between calls
+         * @param end   the end of the received bytes
+         * @return the offset just past the body, or -1 if more bytes are needed
+         * @throws HttpParseException if the framing is malformed or the body exceeds the maximum size
+         */
+        int scan(byte[] b, int start, int end) throws HttpParseException {
+            if (scanned < start) {
+                scanned = start;
+            }
+            while (scanned < end && state != DONE) {
+                if (state == DATA) {
+                    int n = (int) Math.min(chunk, end - scanned);
+                    scanned += n;
+                    skipData(n);
+                } else {
+                    step(b[scanned++]);
+                }
+            }
+            return state == DONE ? scanned : -1;
+        }
+
+        private static HttpParseException malformed() {
+            return new HttpParseException("400 Bad Request", "Malformed chunked body");
+        }
+    }
+}
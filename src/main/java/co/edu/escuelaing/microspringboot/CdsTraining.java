@@ -0,0 +1,100 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Training run for the AppCDS archive. Starts the server, loads the
+ * controllers, serves a warmup request set over real sockets and exits, so a
+ * JVM started with -XX:ArchiveClassesAtExit dumps every class a normal start
+ * and the first requests need. Used by the appcds Maven profile and the Dockerfile.
+ *
+ * @author daniel.aldana-b
+ */
+public final class CdsTraining {
+    // Controllers, static files from the cache, metrics and a miss
+    static final String[] WARMUP = {
+        "/hello",
+        "/greeting?name=cds",
+        "/user?name=cds&age=1",
+        "/userInfo?name=cds",
+        "/app/helloget?name=cds",
+        "/",
+        "/index.html",
+        "/style.css",
+        "/script.js",
+        "/time.jpg",
+        "/metrics",
+        "/no-such-file.txt",
+    };
+    private static final int ROUNDS = 20;
+
+    private CdsTraining() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = HttpServer.config.getPort();
+        Thread server = new Thread(() -> {
+            try {
+                HttpServer.runServer(args);
+            } catch (Exception e) {
+                e.printStackTrace();
+                System.exit(1);
+            }
+        }, "CdsTraining-Server");
+        server.setDaemon(true);
+        server.start();
+
+        byte[] buffer = new byte[8192];
+        long bytes = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (String path : WARMUP) {
+                bytes += get(port, path, buffer, round == 0 && path.equals(WARMUP[0]));
+            }
+        }
+        System.err.println("CDS training served " + ROUNDS * WARMUP.length + " requests, " + bytes + " bytes.");
+        // Runs the shutdown hook, the archive is written when the JVM exits
+        System.exit(0);
+    }
+
+    /**
+     * Sends one GET with Connection: close and reads the whole response.
+     * @return the response size in bytes
+     */
+    private static long get(int port, String path, byte[] buffer, boolean waitForServer) throws Exception {
+        try (Socket socket = connect(port, waitForServer)) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            long total = 0;
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                total += n;
+            }
+            return total;
+        }
+    }
+
+    private static Socket connect(int port, boolean waitForServer) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress("localhost", port));
+                return socket;
+            } catch (ConnectException e) {
+                socket.close();
+                if (!waitForServer || attempt >= 200) {
+                    throw new IOException("Server did not start on port " + port, e);
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+}
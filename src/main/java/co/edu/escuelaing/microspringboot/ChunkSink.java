@@ -0,0 +1,20 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+
+/**
+ * An output that buffers a whole response, like the nio engine's, but can
+ * send what it holds before the response is complete. Streaming bodies call
+ * it for every chunk, so the chunk reaches the client before the next one
+ * is produced.
+ *
+ * @author daniel.aldana-b
+ */
+interface ChunkSink {
+
+    /**
+     * Sends everything written so far and waits until the connection took it.
+     * @throws IOException if the connection is closed or the write times out
+     */
+    void flushChunk() throws IOException;
+}
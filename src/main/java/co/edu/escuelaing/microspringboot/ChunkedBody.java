@@ -0,0 +1,249 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.function.Supplier;
+
+/**
+ * Writes streaming controller results with Transfer-Encoding: chunked.
+ * Written bytes are collected into chunks of up to {@link #CHUNK_SIZE} bytes;
+ * a flush sends the pending chunk right away. Every full chunk is pushed to a
+ * {@link ChunkSink} as soon as it is written, so a body that never flushes
+ * still reaches the client while it is produced. The terminating chunk is only
+ * written by close(), so a body that fails halfway is never mistaken for a
+ * complete one.
+ *
+ * @author daniel.aldana-b
+ */
+final class ChunkedBody extends OutputStream {
+    static final int CHUNK_SIZE = 8192;
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[CHUNK_SIZE];
+    private int count;
+    private boolean closed;
+
+    ChunkedBody(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Tells whether a controller result is sent as a stream.
+     * @param result the value returned by the controller
+     * @return true for a StreamingBody, a Supplier or a Flow.Publisher
+     */
+    static boolean isStreaming(Object result) {
+        return result instanceof StreamingBody || result instanceof Supplier || result instanceof Flow.Publisher;
+    }
+
+    /**
+     * Writes a response with a streaming body, using the status and headers set on
+     * the controller's response. What the controller already wrote to the response
+     * goes first. HTTP/1.0 clients do not understand chunks, they get the raw body
+     * and the connection is closed.
+     *
+     * @param result    a streaming controller result
+     * @param response  the response injected into the controller, with its status and headers
+     * @param output    the stream the response is written to
+     * @param keepAlive false to include connection: close
+     * @param chunked   false for HTTP/1.0 clients, keepAlive must be false then
+     * @throws IOException if the client disconnects or the body fails, the connection must be closed
+     */
+    static void write(Object result, HttpResponse response, OutputStream output, boolean keepAlive, boolean chunked)
+            throws IOException {
+        write(result, response, output, keepAlive, chunked, false);
+    }
+
+    /**
+     * Writes a streaming response, or only its head for a HEAD request. The
+     * result is not consumed then, so the producer never runs.
+     *
+     * @param headOnly true to leave out the body
+     * @see #write(Object, HttpResponse, OutputStream, boolean, boolean)
+     */
+    static void write(Object result, HttpResponse response, OutputStream output, boolean keepAlive, boolean chunked,
+                      boolean headOnly) throws IOException {
+        if (headOnly) {
+            response.writeStreamingHead(output, keepAlive, chunked, OutputStream.nullOutputStream());
+            output.flush();
+            return;
+        }
+        try {
+            if (chunked) {
+                ChunkedBody body = new ChunkedBody(output);
+                response.writeStreamingHead(output, keepAlive, true, body);
+                stream(result, body);
+                body.close();
+            } else {
+                response.writeStreamingHead(output, keepAlive, false, output);
+                stream(result, output);
+                output.flush();
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Streaming body failed", e);
+        }
+    }
+
+    /**
+     * Reads a whole streaming result, for callers that need the body as text.
+     * @param result a streaming controller result
+     * @return the body decoded as UTF-8
+     * @throws IOException if the body fails
+     */
+    static String collect(Object result) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        stream(result, body);
+        return body.toString(StandardCharsets.UTF_8);
+    }
+
+    private static void stream(Object result, OutputStream body) throws IOException {
+        if (result instanceof StreamingBody callback) {
+            callback.writeTo(body);
+        } else if (result instanceof Supplier<?> supplier) {
+            Object chunk;
+            while ((chunk = supplier.get()) != null) {
+                body.write(bytes(chunk));
+                body.flush();
+            }
+        } else {
+            subscribe((Flow.Publisher<?>) result, body);
+        }
+    }
+
+    /**
+     * Writes the items of a publisher, requesting the next one only after the
+     * previous one was sent, and cancels the subscription if the client is gone.
+     */
+    @SuppressWarnings("unchecked")
+    private static void subscribe(Flow.Publisher<?> publisher, OutputStream body) throws IOException {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        ((Flow.Publisher<Object>) publisher).subscribe(new Flow.Subscriber<Object>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(Object item) {
+                if (done.isDone()) {
+                    return;
+                }
+                try {
+                    body.write(bytes(item));
+                    body.flush();
+                    subscription.request(1);
+                } catch (IOException | RuntimeException e) {
+                    subscription.cancel();
+                    done.completeExceptionally(e);
+                }
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                done.completeExceptionally(error);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while streaming");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Publisher failed", e.getCause());
+        }
+    }
+
+    private static byte[] bytes(Object chunk) {
+        return chunk instanceof byte[] b ? b : chunk.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            writeChunk(buffer, 0, count);
+            count = 0;
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len >= buffer.length) {
+            // Large writes become one chunk without going through the buffer
+            writeBuffered();
+            writeChunk(b, off, len);
+            return;
+        }
+        if (len > buffer.length - count) {
+            writeBuffered();
+        }
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    /**
+     * Sends the pending chunk to the client.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBuffered();
+        if (out instanceof ChunkSink sink) {
+            sink.flushChunk();
+        } else {
+            out.flush();
+        }
+    }
+
+    /**
+     * Sends the pending chunk and the terminating chunk. Does not close the connection.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        writeBuffered();
+        closed = true;
+        out.write(LAST_CHUNK);
+        out.flush();
+    }
+
+    private void writeBuffered() throws IOException {
+        if (count > 0) {
+            writeChunk(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void writeChunk(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Body already closed");
+        }
+        out.write((Integer.toHexString(len) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(b, off, len);
+        out.write(CRLF);
+        if (out instanceof ChunkSink sink) {
+            // Without this the nio engine would hold the whole body until it ends
+            sink.flushChunk();
+        }
+    }
+}
@@ -1,32 +1,134 @@
 package co.edu.escuelaing.microspringboot;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.CodeSource;
 import java.util.*;
-import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.net.URISyntaxException;
 import java.nio.file.*;
 import java.util.stream.Collectors;
 
+/**
+ * Finds the @RestController classes of the application.
+ * The route index written by RouteIndexProcessor at compile time is used when
+ * the application runs from a jar and every indexed class is still a controller;
+ * scanning the classes directory or jar is the fallback. A classes directory is
+ * always scanned, since IDE and incremental builds rewrite the index with only
+ * the controllers they recompiled.
+ * Neither path runs the static initializers of the classes it looks at.
+ *
+ * @author daniel.aldana-b
+ */
 public class ComponentScanner {
+    /** Classpath resource generated by RouteIndexProcessor */
+    public static final String INDEX = "META-INF/microspringboot/controllers.idx";
+    // Descriptor of @RestController as it appears in class files
+    static final String REST_CONTROLLER = "L" + RestController.class.getName().replace('.', '/') + ";";
 
-    public static List<Class<?>> scanForControllers(String basePackage) throws IOException, ClassNotFoundException {
-        List<Class<?>> classes = loadClasses(basePackage);
+    /**
+     * Gets the controllers of a package from the route index, or by scanning
+     * when the classes are in a directory or the index is missing or stale.
+     *
+     * @param basePackage the package the controllers are in
+     * @return the controller classes
+     * @throws IOException if the classpath cannot be read
+     * @throws ClassNotFoundException if a scanned class cannot be loaded
+     */
+    public static List<Class<?>> findControllers(String basePackage) throws IOException, ClassNotFoundException {
+        ClassLoader loader = ComponentScanner.class.getClassLoader();
+        if (loader.getResource("") == null) {
+            List<Class<?>> indexed = loadIndex(basePackage, loader);
+            if (indexed != null) {
+                return indexed;
+            }
+        }
+        return scanForControllers(basePackage);
+    }
 
-        return classes.stream()
-                .filter(c -> c.isAnnotationPresent(RestController.class))
-                .toList();
+    /**
+     * Loads the controllers listed in every route index on the classpath.
+     * Classes are loaded without running their static initializers.
+     *
+     * @param basePackage the package the controllers are in
+     * @param loader      the class loader to read the index and classes from
+     * @return the controller classes, or null if there is no index or it lists a
+     *         class that is missing or no longer a @RestController
+     * @throws IOException if an index cannot be read
+     */
+    static List<Class<?>> loadIndex(String basePackage, ClassLoader loader) throws IOException {
+        Enumeration<URL> indexes = loader.getResources(INDEX);
+        if (!indexes.hasMoreElements()) {
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        while (indexes.hasMoreElements()) {
+            URL index = indexes.nextElement();
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(index.openStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.isBlank() || line.startsWith("#")) {
+                        continue;
+                    }
+                    // Route lines start with the class name followed by a tab
+                    int tab = line.indexOf('\t');
+                    String className = tab < 0 ? line.trim() : line.substring(0, tab);
+                    if (className.startsWith(basePackage)) {
+                        names.add(className);
+                    }
+                }
+            }
+        }
+        List<Class<?>> classes = new ArrayList<>(names.size());
+        for (String name : names) {
+            Class<?> type;
+            try {
+                type = Class.forName(name, false, loader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                type = null;
+            }
+            if (type == null || !type.isAnnotationPresent(RestController.class)) {
+                System.err.println("Route index lists " + name + ", which is not a controller anymore, scanning instead.");
+                return null;
+            }
+            classes.add(type);
+        }
+        return classes;
     }
 
-    private static List<Class<?>> loadClasses(String basePackage) throws IOException, ClassNotFoundException {
+    /**
+     * Scans the classes directory, or the jar, for controllers. Class files are
+     * only read, in parallel, and checked for @RestController in their header;
+     * just the matching classes are loaded, without running static initializers.
+     *
+     * @param basePackage the package the controllers are in
+     * @return the controller classes
+     * @throws IOException if the classpath cannot be read
+     * @throws ClassNotFoundException if a matching class cannot be loaded
+     */
+    public static List<Class<?>> scanForControllers(String basePackage) throws IOException, ClassNotFoundException {
+        ClassLoader loader = ComponentScanner.class.getClassLoader();
+        List<Class<?>> classes = new ArrayList<>();
+        for (String name : findControllerNames(basePackage)) {
+            classes.add(Class.forName(name, false, loader));
+        }
+        return classes;
+    }
+
+    private static List<String> findControllerNames(String basePackage) throws IOException {
         URL root = ComponentScanner.class.getClassLoader().getResource("");
         if (root != null) {
             try {
                 Path baseDir = Paths.get(root.toURI());
-                return findClassesInDirectory(baseDir, "", basePackage);
+                return findClassesInDirectory(baseDir, basePackage);
             } catch (URISyntaxException e) {
                 throw new IOException("Error resolving base directory", e);
             }
@@ -35,56 +137,177 @@ public class ComponentScanner {
         }
     }
 
-    private static List<Class<?>> findClassesInDirectory(Path dir, String currentPackage, String basePackage) throws IOException {
+    /**
+     * Finds the controllers under a classes directory.
+     * @return the names of the classes annotated with @RestController, sorted
+     */
+    static List<String> findClassesInDirectory(Path dir, String basePackage) throws IOException {
         if (!Files.exists(dir)) return Collections.emptyList();
 
+        List<Path> files;
         try (var stream = Files.walk(dir)) {
-            return stream
-                    .filter(Files::isRegularFile)
+            files = stream
                     .filter(p -> p.toString().endsWith(".class"))
-                    .map(path -> toClassName(dir, path, currentPackage))
-                    .filter(name -> name.startsWith(basePackage))
-                    .map(ComponentScanner::safeLoadClass)
-                    .filter(Objects::nonNull)
+                    .filter(p -> toClassName(dir, p).startsWith(basePackage))
+                    .collect(Collectors.toList());
+        }
+        try {
+            return files.parallelStream()
+                    .filter(path -> {
+                        try (InputStream in = Files.newInputStream(path)) {
+                            return hasAnnotation(in, REST_CONTROLLER);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .map(path -> toClassName(dir, path))
+                    .sorted()
                     .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
     }
 
-    private static String toClassName(Path rootDir, Path classFile, String currentPackage) {
-        Path relative = rootDir.relativize(classFile);
-        String joined = relative.toString().replace(File.separatorChar, '.');
-        return (currentPackage.isEmpty() ? "" : currentPackage + ".") + joined.replace(".class", "");
+    private static String toClassName(Path rootDir, Path classFile) {
+        String joined = rootDir.relativize(classFile).toString().replace(File.separatorChar, '.');
+        return joined.substring(0, joined.length() - ".class".length());
     }
 
-    private static List<Class<?>> findClassesInJar(String basePackage) throws IOException, ClassNotFoundException {
+    private static List<String> findClassesInJar(String basePackage) throws IOException {
         CodeSource codeSource = ComponentScanner.class.getProtectionDomain().getCodeSource();
         if (codeSource == null) return Collections.emptyList();
 
         String jarPath = codeSource.getLocation().getPath();
-        List<Class<?>> classes = new ArrayList<>();
-
+        String prefix = basePackage.replace('.', '/');
         try (JarFile jarFile = new JarFile(jarPath)) {
-            Enumeration<JarEntry> entries = jarFile.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                String name = entry.getName();
-                if (name.endsWith(".class")) {
-                    String className = name.replace('/', '.').replace(".class", "");
-                    if (className.startsWith(basePackage)) {
-                        classes.add(Class.forName(className));
+            // ZipFile allows concurrent reads of different entries
+            return jarFile.stream().parallel()
+                    .filter(entry -> entry.getName().endsWith(".class") && entry.getName().startsWith(prefix))
+                    .filter(entry -> {
+                        try (InputStream in = jarFile.getInputStream(entry)) {
+                            return hasAnnotation(in, REST_CONTROLLER);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .map(entry -> {
+                        String name = entry.getName();
+                        return name.substring(0, name.length() - ".class".length()).replace('/', '.');
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Tells whether a class file carries a runtime visible class annotation.
+     * Reads the constant pool and stops early when the descriptor is not in it,
+     * otherwise skips the fields and methods to reach the class attributes.
+     *
+     * @param classFile  the class file bytes
+     * @param descriptor the annotation type descriptor, e.g. "Lpkg/RestController;"
+     * @return true if the class is annotated with it
+     * @throws IOException if the stream fails or is not a class file
+     */
+    static boolean hasAnnotation(InputStream classFile, String descriptor) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(classFile, 8192));
+        if (in.readInt() != 0xCAFEBABE) {
+            throw new IOException("Not a class file");
+        }
+        in.skipNBytes(4);
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        int annotationsName = -1;
+        boolean present = false;
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1 -> {
+                    utf8[i] = in.readUTF();
+                    if (utf8[i].equals(descriptor)) {
+                        present = true;
+                    } else if (utf8[i].equals("RuntimeVisibleAnnotations")) {
+                        annotationsName = i;
                     }
                 }
+                case 7, 8, 16, 19, 20 -> in.skipNBytes(2);
+                case 15 -> in.skipNBytes(3);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipNBytes(4);
+                case 5, 6 -> {
+                    in.skipNBytes(8);
+                    // Long and double take two constant pool slots
+                    i++;
+                }
+                default -> throw new IOException("Unknown constant pool tag " + tag);
             }
         }
-        return classes;
+        if (!present || annotationsName < 0) {
+            return false;
+        }
+        // Access flags, this class and super class
+        in.skipNBytes(6);
+        in.skipNBytes(2L * in.readUnsignedShort());
+        for (int members = 0; members < 2; members++) {
+            int n = in.readUnsignedShort();
+            for (int i = 0; i < n; i++) {
+                in.skipNBytes(6);
+                skipAttributes(in);
+            }
+        }
+        int attributes = in.readUnsignedShort();
+        for (int a = 0; a < attributes; a++) {
+            int name = in.readUnsignedShort();
+            int length = in.readInt();
+            if (name != annotationsName) {
+                in.skipNBytes(length);
+                continue;
+            }
+            int annotations = in.readUnsignedShort();
+            for (int i = 0; i < annotations; i++) {
+                if (descriptor.equals(utf8[in.readUnsignedShort()])) {
+                    return true;
+                }
+                skipElementValuePairs(in);
+            }
+            return false;
+        }
+        return false;
     }
 
-    private static Class<?> safeLoadClass(String className) {
-        try {
-            return Class.forName(className);
-        } catch (ClassNotFoundException | NoClassDefFoundError e) {
-            System.err.println("Could not load class: " + className);
-            return null;
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int n = in.readUnsignedShort();
+        for (int i = 0; i < n; i++) {
+            in.skipNBytes(2);
+            in.skipNBytes(in.readInt() & 0xFFFFFFFFL);
+        }
+    }
+
+    private static void skipElementValuePairs(DataInputStream in) throws IOException {
+        int pairs = in.readUnsignedShort();
+        for (int i = 0; i < pairs; i++) {
+            in.skipNBytes(2);
+            skipElementValue(in);
+        }
+    }
+
+    private static void skipElementValue(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'e' -> in.skipNBytes(4);
+            case '@' -> {
+                in.skipNBytes(2);
+                skipElementValuePairs(in);
+            }
+            case '[' -> {
+                int n = in.readUnsignedShort();
+                for (int i = 0; i < n; i++) {
+                    skipElementValue(in);
+                }
+            }
+            // Constants and class literals are a single index
+            default -> in.skipNBytes(2);
         }
     }
 }
@@ -0,0 +1,126 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip content coding for responses, using only java.util.zip.
+ * Static files are compressed once at the best level when they are loaded,
+ * dynamic bodies at the default level and only above {@link #MIN_DYNAMIC_BYTES}.
+ *
+ * @author daniel.aldana-b
+ */
+final class Compression {
+    // Smaller dynamic bodies fit in a packet anyway and are sent as they are
+    static final int MIN_DYNAMIC_BYTES = 1024;
+
+    private Compression() {
+    }
+
+    /**
+     * Tells whether a content type benefits from compression.
+     * Images other than SVG are already compressed.
+     *
+     * @param contentType a value returned by HttpServer.getType, may include parameters
+     * @return true for text, JavaScript, JSON and SVG
+     */
+    static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        return contentType.startsWith("text/")
+                || contentType.startsWith("application/javascript")
+                || contentType.startsWith("application/json")
+                || contentType.startsWith("image/svg+xml");
+    }
+
+    /**
+     * Tells whether the client accepts gzip, honoring q=0 exclusions.
+     *
+     * @param acceptEncoding the Accept-Encoding header, or null
+     * @return true if gzip, or * without a gzip exclusion, has a non-zero weight
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String coding : acceptEncoding.split(",")) {
+            int semicolon = coding.indexOf(';');
+            String name = (semicolon < 0 ? coding : coding.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+            boolean accepted = semicolon < 0 || !isZeroWeight(coding.substring(semicolon + 1));
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return wildcard;
+    }
+
+    private static boolean isZeroWeight(String parameters) {
+        for (String parameter : parameters.split(";")) {
+            String p = parameter.trim();
+            if (p.startsWith("q=") || p.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(p.substring(2).trim()) == 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compresses a body into the gzip format.
+     *
+     * @param data  the uncompressed bytes
+     * @param level a Deflater level, e.g. Deflater.BEST_COMPRESSION
+     * @return the gzip bytes
+     */
+    static byte[] gzip(byte[] data, int level) {
+        return gzip(data, 0, data.length, level);
+    }
+
+    private static byte[] gzip(byte[] data, int offset, int length, int level) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 3));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(data, offset, length);
+        } catch (IOException e) {
+            // In-memory streams do not fail
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Compresses a dynamic body at the default level.
+     * @param data the uncompressed bytes
+     * @return the gzip bytes
+     */
+    static byte[] gzip(byte[] data) {
+        return gzip(data, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Compresses part of a buffer at the default level, so pooled response
+     * buffers do not need to be copied first.
+     * @param data   the buffer holding the body
+     * @param offset the first body byte
+     * @param length the body length
+     * @return the gzip bytes
+     */
+    static byte[] gzip(byte[] data, int offset, int length) {
+        return gzip(data, offset, length, Deflater.DEFAULT_COMPRESSION);
+    }
+}
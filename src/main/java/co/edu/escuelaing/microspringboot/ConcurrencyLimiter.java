@@ -0,0 +1,100 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive limit on the number of requests served at the same time, using
+ * additive increase and multiplicative decrease on the observed latency.
+ * While requests finish under the latency target and the limit is being used,
+ * it grows by one per request; a request over the target cuts it by 10%.
+ * Requests over the limit are shed with a 503 instead of queueing, so latency
+ * stays near the target when the server is overloaded.
+ * <p>
+ * Enabled with CONCURRENCY_LIMIT=aimd and tuned with LATENCY_TARGET_MS,
+ * CONCURRENCY_LIMIT_MIN and CONCURRENCY_LIMIT_MAX.
+ *
+ * @author daniel.aldana-b
+ */
+public final class ConcurrencyLimiter {
+    private static final double BACKOFF = 0.9;
+
+    private final int min;
+    private final int max;
+    private final long targetNanos;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * Creates a limiter.
+     *
+     * @param initial         the starting limit
+     * @param min             the lowest limit
+     * @param max             the highest limit
+     * @param latencyTargetMs requests slower than this shrink the limit
+     */
+    public ConcurrencyLimiter(int initial, int min, int max, long latencyTargetMs) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(latencyTargetMs);
+        this.limit = new AtomicInteger(Math.min(this.max, Math.max(this.min, initial)));
+    }
+
+    /**
+     * Creates the limiter described by the server configuration.
+     * @param config the settings, for the CONCURRENCY_LIMIT* and LATENCY_TARGET_MS values
+     * @return the limiter, or null when CONCURRENCY_LIMIT is not aimd
+     */
+    static ConcurrencyLimiter fromConfig(ServerConfig config) {
+        if (!config.isAdaptiveConcurrencyLimit()) {
+            return null;
+        }
+        int min = config.getConcurrencyLimitMin();
+        return new ConcurrencyLimiter(min * 4, min, config.getConcurrencyLimitMax(), config.getLatencyTargetMs());
+    }
+
+    /**
+     * Takes a slot for a request.
+     * @return false if the limit is reached and the request must be shed
+     */
+    public boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit.get()) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Returns the slot of a finished request and adapts the limit to its latency.
+     * @param latencyNanos the time the request took
+     */
+    public void release(long latencyNanos) {
+        int busy = inFlight.getAndDecrement();
+        if (latencyNanos > targetNanos) {
+            limit.updateAndGet(l -> Math.max(min, (int) (l * BACKOFF)));
+        } else if (busy * 2 >= limit.get()) {
+            // Only grow while the current limit is actually in use
+            limit.updateAndGet(l -> Math.min(max, l + 1));
+        }
+    }
+
+    /**
+     * Gets the current limit.
+     * @return the number of requests allowed at the same time
+     */
+    public int getLimit() {
+        return limit.get();
+    }
+
+    /**
+     * Gets the number of requests holding a slot.
+     * @return the in-flight count
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,113 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * The receive buffer of a connection. The request head is parsed in place at
+ * the start of the buffer and the body is read from the bytes after it, then
+ * from the socket. Refills never overwrite the head, which the parser decodes
+ * lazily while the request is served, and bytes read past the body stay in
+ * the buffer for the next pipelined request.
+ *
+ * @author daniel.aldana-b
+ */
+final class ConnectionInput {
+    // Reads at least this large go straight to the caller's array once the buffer is empty
+    private static final int DIRECT_READ = 2048;
+
+    private final InputStream in;
+    byte[] buffer;
+    // Next byte to read and end of the received bytes
+    int position;
+    int limit;
+    // End of the head of the current request, refills start here
+    private int mark;
+
+    /**
+     * @param in         the socket stream, or null when the whole request is already in the buffer
+     * @param buffer     the buffer
+     * @param limit      the end of the received bytes
+     */
+    ConnectionInput(InputStream in, byte[] buffer, int limit) {
+        this.in = in;
+        this.buffer = buffer;
+        this.limit = limit;
+    }
+
+    /**
+     * Reads more bytes of a request head after the ones received, growing the buffer when it is full.
+     * @return false at the end of the stream
+     */
+    boolean fillHead() throws IOException {
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    /**
+     * Starts reading the body of a request whose head ends at the given offset.
+     * @param headEnd the offset just past the head
+     */
+    void startBody(int headEnd) {
+        position = headEnd;
+        mark = headEnd;
+    }
+
+    int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    int read(byte[] b, int off, int len) throws IOException {
+        if (position == limit) {
+            if (len >= DIRECT_READ && in != null) {
+                return in.read(b, off, len);
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    private boolean fill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        position = mark;
+        limit = mark;
+        if (buffer.length - mark < DIRECT_READ) {
+            // The head filled most of the buffer, a copy keeps it intact for the parser
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n <= 0) {
+            return false;
+        }
+        limit += n;
+        return true;
+    }
+
+    /**
+     * Moves the unread bytes, the start of the next request, to the front of the buffer.
+     */
+    void compact() {
+        System.arraycopy(buffer, position, buffer, 0, limit - position);
+        limit -= position;
+        position = 0;
+        mark = 0;
+    }
+}
@@ -0,0 +1,67 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * Output wrapper that records the status code and the number of bytes of a
+ * response for the access log and the metrics. File regions and chunk
+ * flushes are passed through, so counting does not turn off transferTo or
+ * streaming on the nio engine.
+ *
+ * @author daniel.aldana-b
+ */
+final class CountingOutput extends OutputStream implements FileRegionSink, ChunkSink {
+    private final OutputStream delegate;
+    private long bytes;
+    private int status;
+
+    CountingOutput(OutputStream delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        delegate.write(b);
+        bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (bytes == 0 && len >= 12) {
+            // Every response starts with its status line, e.g. "HTTP/1.1 200 OK"
+            status = (b[off + 9] - '0') * 100 + (b[off + 10] - '0') * 10 + (b[off + 11] - '0');
+        }
+        delegate.write(b, off, len);
+        bytes += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void flushChunk() throws IOException {
+        if (delegate instanceof ChunkSink sink) {
+            sink.flushChunk();
+        } else {
+            delegate.flush();
+        }
+    }
+
+    @Override
+    public void sendFile(FileChannel file, long position, long count) throws IOException {
+        StaticDirectory.send(file, position, count, delegate);
+        bytes += count;
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    int getStatus() {
+        return status;
+    }
+}
@@ -6,16 +6,16 @@ import java.util.Map;
 
 @RestController
 public class ExampleController {
-    private static final Map<String, String> users = new HashMap<>();
+    private static final Map<String, Integer> users = new HashMap<>();
     @GetMapping("/user")
     public static String info(@RequestParam("name") String name,
-                             @RequestParam(value = "age", defaultValue = "0") String age) {
+                             @RequestParam(value = "age", defaultValue = "0") int age) {
         users.put(name, age);
         return "Hello " + name  + ", you are " + age + " years old";
     }
     @GetMapping("/userInfo")
     public static String getUser(@RequestParam("name") String name) {
-        String age = users.get(name);
+        Integer age = users.get(name);
         return (age != null) ? "User " + name + " retrieved value: age is " + age : "User data not found for " + name;
     }
 }
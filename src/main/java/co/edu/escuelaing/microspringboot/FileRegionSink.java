@@ -0,0 +1,25 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * An output that can send part of a file without copying it through the heap.
+ * Both engines hand handlers an OutputStream implementing this interface, so a
+ * file body can go from the page cache to the socket with FileChannel.transferTo.
+ *
+ * @author daniel.aldana-b
+ */
+interface FileRegionSink {
+
+    /**
+     * Sends a region of a file after everything written so far.
+     * The sink takes ownership of the channel and closes it once the region is sent.
+     *
+     * @param file     an open channel on the file
+     * @param position the offset of the first byte to send
+     * @param count    the number of bytes to send
+     * @throws IOException if the file cannot be read or the connection fails
+     */
+    void sendFile(FileChannel file, long position, long count) throws IOException;
+}
@@ -16,4 +16,15 @@ public class GreetingController {
     public static String greeting(@RequestParam(value="name", defaultValue="World") String name){
         return "Hola " + name;
     }
+    
+    @GetMapping("/greeting/json")
+    public static Greeting greetingJson(@RequestParam(value="name", defaultValue="World") String name){
+        return new Greeting(String.format(template, name));
+    }
+    
+    /**
+     * Written by the server as {"msg": "..."} with the name escaped.
+     */
+    public record Greeting(String msg) {
+    }
 }
@@ -0,0 +1,35 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+
+/**
+ * Signals a request head that cannot be parsed or exceeds the configured limits.
+ * Carries the status the server should answer with before closing the connection.
+ *
+ * @author daniel.aldana-b
+ */
+public class HttpParseException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    // Status code and reason phrase, e.g. "400 Bad Request"
+    private final String status;
+
+    /**
+     * Creates a new exception.
+     *
+     * @param status  the status line to answer with, e.g. "431 Request Header Fields Too Large"
+     * @param message a description of the problem
+     */
+    public HttpParseException(String status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    /**
+     * Gets the status the server should answer with.
+     * @return the status code and reason phrase
+     */
+    public String getStatus() {
+        return status;
+    }
+}
@@ -4,78 +4,156 @@
  */
 package co.edu.escuelaing.microspringboot;
 
+import java.io.InputStream;
 import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 /**
  * Represents an HTTP request with parsed query parameters.
- * This class wraps a URI and provides convenient access to query parameters
- * extracted from the request URL.
+ * This class wraps the request target and provides convenient access to query
+ * parameters extracted from the request URL. The query is decoded the first time a
+ * parameter is asked for, so endpoints without parameters never pay for it.
  * 
  * @author daniel.aldana-b
  */
 public class HttpRequest {
-    /** The original URI of the request */
-    private URI requri = null;
-    /** Map containing parsed query parameters (key-value pairs) */
-    private Map<String, String> queryParams = new HashMap<>();
+    /** The request target, or null if it could not be parsed */
+    private final RequestTarget target;
+    /** Decoded query parameters, null until the first lookup */
+    private QueryString queryParams;
+    /** The parsed request head, or null when the request was built from a URI only */
+    private HttpRequestParser head;
+    /** The request body, read from the connection as it is consumed */
+    private BodyInputStream body = BodyInputStream.EMPTY;
+    /** The route that served the request, used as the metrics label */
+    private String route;
     
     /**
      * Constructs a new HttpRequest with the specified URI.
-     * Automatically parses query parameters from the URI's query string.
      * 
      * @param uri the URI containing the request path and query parameters
      */
     public HttpRequest(URI uri) {
-        this.requri = uri;
-        parseQueryParams();
+        this.target = RequestTarget.of(uri);
     }
     
     /**
-     * Parses query parameters from the URI's query string.
-     * Extracts key-value pairs from the query string and stores them in the queryParams map.
-     * Query parameters should be in the format "key1=value1&key2=value2".
+     * Constructs a new HttpRequest from a parsed request head.
+     * Header values are decoded only when they are asked for.
+     * 
+     * @param uri  the URI containing the request path and query parameters
+     * @param head the parsed request head
+     */
+    public HttpRequest(URI uri, HttpRequestParser head) {
+        this(uri);
+        this.head = head;
+    }
+    
+    /**
+     * Constructs a new HttpRequest from a request target parsed from the request line.
+     * 
+     * @param target the parsed request target
+     * @param head   the parsed request head
+     */
+    public HttpRequest(RequestTarget target, HttpRequestParser head) {
+        this.target = target;
+        this.head = head;
+    }
+    
+    /**
+     * Decodes the raw query string on first use.
      */
-    private void parseQueryParams() {
-        if (requri != null && requri.getQuery() != null) {
-            String query = requri.getQuery();
-            String[] pairs = query.split("&");
-            for (String pair : pairs) {
-                String[] keyValue = pair.split("=");
-                if (keyValue.length == 2) {
-                    queryParams.put(keyValue[0], keyValue[1]);
-                }
-            }
+    private QueryString queryParams() {
+        if (queryParams == null) {
+            queryParams = QueryString.parse(target != null ? target.getQuery() : null);
         }
+        return queryParams;
     }
     
     /**
      * Retrieves the value of a query parameter by its name.
+     * When the parameter is repeated, the first value is returned.
      * 
      * @param paramName the name of the query parameter to retrieve
-     * @return the value of the parameter, or null if the parameter doesn't exist
+     * @return the value of the parameter, empty if it was sent without '=', or null if the parameter doesn't exist
      */
     public String getValue(String paramName) {
-        return queryParams.get(paramName);
+        return queryParams().get(paramName);
     }
     
     /**
-     * Retrieves the value of a query parameter by its name.
-     * This method is an alias for getValue() and provides the same functionality.
+     * Retrieves every value of a query parameter, e.g. ["a", "b"] for "?tag=a&amp;tag=b".
      * @param paramName the name of the query parameter to retrieve
-     * @return the value of the parameter, or null if the parameter doesn't exist
+     * @return the values in the order they were sent, empty if the parameter doesn't exist
      */
-    public String getValues(String paramName) {
-        return queryParams.get(paramName);
+    public List<String> getValues(String paramName) {
+        return queryParams().getAll(paramName);
     }
     
     /**
-     * Retrieves the path component of the request URI.
-     * Returns the path without query parameters or fragment.
-     * @return the path component of the URI, or an empty string if the URI is null
+     * Retrieves the path component of the request target.
+     * Returns the decoded and normalized path without query parameters or fragment.
+     * @return the path, or an empty string if the target could not be parsed
      */
     public String getPath() {
-        return requri != null ? requri.getPath() : "";
+        return target != null ? target.getPath() : "";
+    }
+    
+    /**
+     * Retrieves the request target.
+     * @return the target of the request, or null if it could not be parsed
+     */
+    public RequestTarget getTarget() {
+        return target;
+    }
+    
+    /**
+     * Retrieves the request method.
+     * @return the method, e.g. "GET", or "GET" when the request was built from a URI only
+     */
+    public String getMethod() {
+        return head != null ? head.getMethod() : "GET";
+    }
+    
+    /**
+     * Retrieves the protocol version of the request line.
+     * @return the version, e.g. "HTTP/1.1", or "HTTP/1.1" when the request was built from a URI only
+     */
+    public String getVersion() {
+        return head != null ? head.getVersion() : "HTTP/1.1";
+    }
+    
+    /**
+     * Retrieves a request header by name, ignoring case.
+     * @param name the header name
+     * @return the header value, or null if the header was not sent
+     */
+    public String getHeader(String name) {
+        return head != null ? head.getHeader(name) : null;
+    }
+
+    /**
+     * Retrieves the request body. It is read from the connection while the
+     * stream is consumed and can only be read once.
+     * @return the body, an empty stream if the request has none
+     */
+    public InputStream getBody() {
+        return body;
+    }
+
+    void setBody(BodyInputStream body) {
+        this.body = body;
+    }
+
+    /**
+     * Gets the route that served the request.
+     * @return the route template or a fixed label such as "static", null before routing
+     */
+    String getRoute() {
+        return route;
+    }
+
+    void setRoute(String route) {
+        this.route = route;
     }
 }
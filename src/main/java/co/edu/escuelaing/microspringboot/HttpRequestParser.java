@@ -0,0 +1,369 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental HTTP/1.1 request head parser that works directly on a byte buffer.
+ * The parser only records offsets while scanning, so a request head costs no
+ * allocation until a caller asks for the method, target or a header value.
+ * It can be fed the same buffer again after more bytes arrive and continues
+ * where it stopped, which makes requests split across TCP segments safe.
+ * <p>
+ * The buffer contents between the head start and the returned end must not
+ * change until {@link #reset()} is called, since the accessors read from it.
+ *
+ * @author daniel.aldana-b
+ */
+public class HttpRequestParser {
+    // Default maximum length of the request line, in bytes
+    public static final int MAX_REQUEST_LINE = 8 * 1024;
+    // Default maximum length of the whole head (request line + headers), in bytes
+    public static final int MAX_HEAD_SIZE = 16 * 1024;
+    // Maximum number of header fields
+    public static final int MAX_HEADERS = 100;
+
+    private static final int REQUEST_LINE = 0;
+    private static final int HEADERS = 1;
+    private static final int DONE = 2;
+
+    private final int maxRequestLine;
+    private final int maxHeadSize;
+
+    private byte[] buf;
+    private int state = REQUEST_LINE;
+    private int headStart;
+    // Next byte to scan and start of the line being scanned
+    private int pos;
+    private int lineStart;
+
+    private int methodStart, methodEnd;
+    private int targetStart, targetEnd;
+    private int versionStart, versionEnd;
+    // name start, name end, value start, value end for each header
+    private final int[] headers = new int[MAX_HEADERS * 4];
+    private int headerCount;
+
+    private String method;
+    private String target;
+    private String version;
+
+    /**
+     * Creates a parser with the default limits.
+     */
+    public HttpRequestParser() {
+        this(MAX_REQUEST_LINE, MAX_HEAD_SIZE);
+    }
+
+    /**
+     * Creates a parser with custom limits.
+     *
+     * @param maxRequestLine the maximum request line length in bytes
+     * @param maxHeadSize    the maximum size of the request head in bytes
+     */
+    public HttpRequestParser(int maxRequestLine, int maxHeadSize) {
+        this.maxRequestLine = maxRequestLine;
+        this.maxHeadSize = maxHeadSize;
+    }
+
+    /**
+     * Scans the bytes received so far.
+     *
+     * @param buffer the buffer holding the request, may be a grown copy of the previous one
+     * @param start  the offset where this request head starts, must not change until reset
+     * @param end    the offset just past the last received byte
+     * @return the offset just past the head when it is complete, or -1 if more bytes are needed
+     * @throws HttpParseException if the head is malformed or exceeds a limit
+     */
+    public int parse(byte[] buffer, int start, int end) throws HttpParseException {
+        if (state == DONE) {
+            return pos;
+        }
+        buf = buffer;
+        if (pos < start) {
+            headStart = start;
+            pos = start;
+            lineStart = start;
+        }
+        while (pos < end) {
+            if (buf[pos++] != '\n') {
+                continue;
+            }
+            int lineEnd = pos - 1;
+            if (lineEnd > lineStart && buf[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (state == REQUEST_LINE) {
+                if (lineEnd == lineStart) {
+                    // Ignore empty lines before the request line, they still count against the head size
+                    lineStart = pos;
+                    continue;
+                }
+                parseRequestLine(lineStart, lineEnd);
+                state = HEADERS;
+            } else if (lineEnd == lineStart) {
+                if (pos - headStart > maxHeadSize) {
+                    throw new HttpParseException("431 Request Header Fields Too Large",
+                            "Request head exceeds " + maxHeadSize + " bytes");
+                }
+                state = DONE;
+                return pos;
+            } else {
+                parseHeader(lineStart, lineEnd);
+            }
+            lineStart = pos;
+        }
+        if (state == REQUEST_LINE && end - lineStart > maxRequestLine) {
+            throw new HttpParseException("414 URI Too Long", "Request line exceeds " + maxRequestLine + " bytes");
+        }
+        if (end - headStart > maxHeadSize) {
+            throw new HttpParseException("431 Request Header Fields Too Large",
+                    "Request head exceeds " + maxHeadSize + " bytes");
+        }
+        return -1;
+    }
+
+    private void parseRequestLine(int from, int to) throws HttpParseException {
+        if (to - from > maxRequestLine) {
+            throw new HttpParseException("414 URI Too Long", "Request line exceeds " + maxRequestLine + " bytes");
+        }
+        int sp1 = indexOf(' ', from, to);
+        int sp2 = sp1 < 0 ? -1 : indexOf(' ', sp1 + 1, to);
+        if (sp1 <= from || sp2 <= sp1 + 1 || sp2 + 1 >= to || indexOf(' ', sp2 + 1, to) >= 0) {
+            throw new HttpParseException("400 Bad Request", "Malformed request line");
+        }
+        methodStart = from;
+        methodEnd = sp1;
+        targetStart = sp1 + 1;
+        targetEnd = sp2;
+        versionStart = sp2 + 1;
+        versionEnd = to;
+    }
+
+    private void parseHeader(int from, int to) throws HttpParseException {
+        if (buf[from] == ' ' || buf[from] == '\t') {
+            throw new HttpParseException("400 Bad Request", "Obsolete header line folding");
+        }
+        if (headerCount == MAX_HEADERS) {
+            throw new HttpParseException("431 Request Header Fields Too Large", "Too many header fields");
+        }
+        int colon = indexOf(':', from, to);
+        if (colon <= from) {
+            throw new HttpParseException("400 Bad Request", "Malformed header field");
+        }
+        // RFC 9112 section 5.1: whitespace before the colon must be rejected, proxies may read the name differently
+        if (indexOf(' ', from, colon) >= 0 || indexOf('\t', from, colon) >= 0) {
+            throw new HttpParseException("400 Bad Request", "Whitespace in header field name");
+        }
+        int valueStart = colon + 1;
+        while (valueStart < to && (buf[valueStart] == ' ' || buf[valueStart] == '\t')) {
+            valueStart++;
+        }
+        int valueEnd = to;
+        while (valueEnd > valueStart && (buf[valueEnd - 1] == ' ' || buf[valueEnd - 1] == '\t')) {
+            valueEnd--;
+        }
+        int i = headerCount * 4;
+        headers[i] = from;
+        headers[i + 1] = colon;
+        headers[i + 2] = valueStart;
+        headers[i + 3] = valueEnd;
+        headerCount++;
+    }
+
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Prepares the parser for the next request on the same connection.
+     */
+    public void reset() {
+        state = REQUEST_LINE;
+        pos = 0;
+        lineStart = 0;
+        headStart = 0;
+        headerCount = 0;
+        method = null;
+        target = null;
+        version = null;
+    }
+
+    /**
+     * Tells whether a complete head has been parsed.
+     * @return true once parse returned the end of the head
+     */
+    public boolean isComplete() {
+        return state == DONE;
+    }
+
+    /**
+     * Gets the request method, decoded on first use.
+     * @return the method, e.g. "GET"
+     */
+    public String getMethod() {
+        if (method == null) {
+            method = ascii(methodStart, methodEnd);
+        }
+        return method;
+    }
+
+    /**
+     * Gets the raw request target, decoded on first use.
+     * @return the target as sent by the client, e.g. "/user?name=ana"
+     */
+    public String getTarget() {
+        if (target == null) {
+            target = ascii(targetStart, targetEnd);
+        }
+        return target;
+    }
+
+    /**
+     * Parses the request target straight from the buffer.
+     * @return the target with its normalized path and raw query
+     * @throws HttpParseException with 400 Bad Request if the target is malformed
+     */
+    public RequestTarget getRequestTarget() throws HttpParseException {
+        return RequestTarget.parse(buf, targetStart, targetEnd);
+    }
+
+    /**
+     * Gets the protocol version, decoded on first use.
+     * @return the version, e.g. "HTTP/1.1"
+     */
+    public String getVersion() {
+        if (version == null) {
+            version = ascii(versionStart, versionEnd);
+        }
+        return version;
+    }
+
+    /**
+     * Gets the path part of the request target without allocating the full target.
+     * @return the path, e.g. "/user"
+     */
+    public String getPath() {
+        int q = indexOf('?', targetStart, targetEnd);
+        return ascii(targetStart, q < 0 ? targetEnd : q);
+    }
+
+    /**
+     * Gets the query part of the request target.
+     * @return the raw query without the '?', or null if there is none
+     */
+    public String getQuery() {
+        int q = indexOf('?', targetStart, targetEnd);
+        return q < 0 ? null : ascii(q + 1, targetEnd);
+    }
+
+    /**
+     * Gets the number of header fields.
+     * @return the header count
+     */
+    public int getHeaderCount() {
+        return headerCount;
+    }
+
+    /**
+     * Gets the name of a header field.
+     * @param index the position of the header, from 0 to getHeaderCount() - 1
+     * @return the header name as sent by the client
+     */
+    public String getHeaderName(int index) {
+        return ascii(headers[index * 4], headers[index * 4 + 1]);
+    }
+
+    /**
+     * Gets the value of a header field.
+     * @param index the position of the header, from 0 to getHeaderCount() - 1
+     * @return the header value without surrounding whitespace
+     */
+    public String getHeaderValue(int index) {
+        return ascii(headers[index * 4 + 2], headers[index * 4 + 3]);
+    }
+
+    /**
+     * Finds a header by name, ignoring case. Only the matching value is decoded.
+     * @param name the header name
+     * @return the value of the first header with that name, or null if absent
+     */
+    public String getHeader(String name) {
+        int index = indexOfHeader(name);
+        return index < 0 ? null : getHeaderValue(index);
+    }
+
+    /**
+     * Finds every header with a name, ignoring case, for fields whose repetitions
+     * must be checked such as Content-Length.
+     * @param name the header name
+     * @return the values in the order they were sent, empty if the header is absent
+     */
+    public List<String> getHeaders(String name) {
+        List<String> values = List.of();
+        for (int i = 0; i < headerCount; i++) {
+            if (regionEquals(headers[i * 4], headers[i * 4 + 1], name)) {
+                if (values.isEmpty()) {
+                    values = new ArrayList<>(2);
+                }
+                values.add(getHeaderValue(i));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Checks a header value without decoding it, ignoring case.
+     * @param name  the header name
+     * @param value the expected value
+     * @return true if the first header with that name has the given value
+     */
+    public boolean headerEquals(String name, String value) {
+        int index = indexOfHeader(name);
+        return index >= 0 && regionEquals(headers[index * 4 + 2], headers[index * 4 + 3], value);
+    }
+
+    /**
+     * Compares the protocol version without decoding it.
+     * @param expected the version, e.g. "HTTP/1.1"
+     * @return true if the request uses that version
+     */
+    public boolean isVersion(String expected) {
+        return regionEquals(versionStart, versionEnd, expected);
+    }
+
+    private int indexOfHeader(String name) {
+        for (int i = 0; i < headerCount; i++) {
+            if (regionEquals(headers[i * 4], headers[i * 4 + 1], name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean regionEquals(int from, int to, String s) {
+        if (to - from != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (lower(buf[from + i]) != lower((byte) s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? b + 32 : b;
+    }
+
+    private String ascii(int from, int to) {
+        return new String(buf, from, to - from, StandardCharsets.ISO_8859_1);
+    }
+}
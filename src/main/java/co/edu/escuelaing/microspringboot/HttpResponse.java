@@ -4,48 +4,215 @@
  */
 package co.edu.escuelaing.microspringboot;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
 /**
  * Represents an HTTP response with configurable status code, status message, and content type.
- * This class provides a way to configure HTTP response properties before sending the response
- * to the client.
- * 
+ * A controller method receives it by declaring an HttpResponse parameter, sets the
+ * status and headers and writes the body, or returns a value that is appended to the body.
+ * The body is kept in a byte buffer taken from a shared pool, and the server writes
+ * the status line and headers straight as bytes in front of it.
+ *
  * @author daniel.aldana-b
  */
 public class HttpResponse {
+    // Buffers handed out to responses, bodies that grew past MAX_POOLED_SIZE are not kept
+    private static final int POOLED_SIZE = 4096;
+    private static final int MAX_POOLED_SIZE = 64 * 1024;
+    private static final ArrayBlockingQueue<byte[]> POOL = new ArrayBlockingQueue<>(64);
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final byte[] HTTP_1_1 = ascii("HTTP/1.1 ");
+    private static final byte[] CONTENT_TYPE = ascii("content-type: ");
+    private static final byte[] CONTENT_LENGTH = ascii("content-length: ");
+    private static final byte[] CONNECTION_CLOSE = ascii("connection: close\r\n");
+    private static final byte[] TRANSFER_ENCODING = ascii("transfer-encoding: chunked\r\n");
+    private static final byte[] VARY = ascii("vary: Accept-Encoding\r\n");
+    private static final byte[] CONTENT_ENCODING = ascii("content-encoding: gzip\r\n");
+    // Largest head without the status message, content type and extra headers
+    private static final int HEAD_FIXED_SIZE = HTTP_1_1.length + 4 + 2 + CONTENT_TYPE.length + 2
+            + CONTENT_LENGTH.length + 12 + TRANSFER_ENCODING.length + CONNECTION_CLOSE.length + VARY.length
+            + CONTENT_ENCODING.length + 2;
+
     //The MIME type and character encoding of the response body
     private String contentType = "text/plain; charset=utf-8";
     // The HTTP status code (e.g., 200, 404, 500)
     private int statusCode = 200;
     // The HTTP status message (e.g., "OK", "Not Found", "Internal Server Error")
     private String statusMessage = "OK";
-    
+    // Extra headers as name, value pairs
+    private final List<String> headers = new ArrayList<>(4);
+    // The body, null until something is written
+    private byte[] body;
+    private int count;
+
     /**
      * Sets the content type of the HTTP response.
      * The content type specifies the MIME type and character encoding of the response body.
      * @param contentType the MIME type and optional character encoding
      */
     public void setContentType(String contentType) {
-        this.contentType = contentType;
+        this.contentType = checkValue(contentType);
     }
-    
+
     /**
-     * Sets the HTTP status code of the response.
-     * Common status codes
+     * Sets the HTTP status code of the response, and the status message to the
+     * standard reason phrase of the code.
      * @param statusCode the HTTP status code to set
+     * @throws IllegalArgumentException if the code does not have three digits
      */
     public void setStatusCode(int statusCode) {
+        if (statusCode < 100 || statusCode > 999) {
+            throw new IllegalArgumentException("Invalid status code: " + statusCode);
+        }
         this.statusCode = statusCode;
+        this.statusMessage = reasonPhrase(statusCode);
     }
-    
+
     /**
      * Sets the HTTP status message of the response.
      * The status message provides a human-readable description of the status code.
      * @param statusMessage the HTTP status message to set
      */
     public void setStatusMessage(String statusMessage) {
-        this.statusMessage = statusMessage;
+        this.statusMessage = checkValue(statusMessage);
     }
-    
+
+    /**
+     * Sets a response header, replacing a previous value with the same name.
+     * content-length, transfer-encoding and connection are managed by the server.
+     * A controller that sets content-encoding sends an already encoded body,
+     * which the server then never compresses again.
+     * @param name  the header name
+     * @param value the header value
+     * @throws IllegalArgumentException if the header is managed by the server, the name is not
+     * a single token or the value contains a line break
+     */
+    public void setHeader(String name, String value) {
+        if (name.equalsIgnoreCase("content-length") || name.equalsIgnoreCase("transfer-encoding")
+                || name.equalsIgnoreCase("connection")) {
+            throw new IllegalArgumentException("Header set by the server: " + name);
+        }
+        if (name.equalsIgnoreCase("content-type")) {
+            setContentType(value);
+            return;
+        }
+        checkName(name);
+        checkValue(value);
+        for (int i = 0; i < headers.size(); i += 2) {
+            if (headers.get(i).equalsIgnoreCase(name)) {
+                headers.set(i + 1, value);
+                return;
+            }
+        }
+        headers.add(name);
+        headers.add(value);
+    }
+
+    /**
+     * Gets a header set with {@link #setHeader}.
+     * @param name the header name, ignoring case
+     * @return the value, or null if the header was not set
+     */
+    public String getHeader(String name) {
+        for (int i = 0; i < headers.size(); i += 2) {
+            if (headers.get(i).equalsIgnoreCase(name)) {
+                return headers.get(i + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Appends text to the body, encoded as UTF-8.
+     * @param text the text to append
+     */
+    public void write(String text) {
+        int length = text.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                // Non-ASCII text, the JDK encodes the rest
+                write(text.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            body[count++] = (byte) c;
+        }
+    }
+
+    /**
+     * Appends bytes to the body.
+     * @param bytes the bytes to append
+     */
+    public void write(byte[] bytes) {
+        write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Appends part of an array to the body.
+     * @param bytes  the source array
+     * @param offset the first byte to append
+     * @param length the number of bytes to append
+     */
+    public void write(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, body, count, length);
+        count += length;
+    }
+
+    /**
+     * Appends one byte to the body, for writers that encode straight into the buffer.
+     * @param b the byte, only the low 8 bits are used
+     */
+    void writeByte(int b) {
+        ensureCapacity(1);
+        body[count++] = (byte) b;
+    }
+
+    /**
+     * Makes room for more body bytes, for writers that fill the buffer directly.
+     * The bytes are added to the body with {@link #advance}.
+     * @param extra the number of bytes about to be written
+     * @return the body buffer, valid until the next write
+     */
+    byte[] reserve(int extra) {
+        ensureCapacity(extra);
+        return body;
+    }
+
+    /**
+     * Adds bytes written into the buffer returned by {@link #reserve} to the body.
+     * @param n the number of bytes written after the current body length
+     */
+    void advance(int n) {
+        count += n;
+    }
+
+    /**
+     * Gets a stream that appends to the body, for code that writes to an OutputStream.
+     * @return a stream over the body buffer, closing it has no effect
+     */
+    public OutputStream getOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+                writeByte(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                HttpResponse.this.write(b, off, len);
+            }
+        };
+    }
+
     /**
      * Gets the current content type of the HTTP response.
      * @return the MIME type and character encoding of the response
@@ -53,7 +220,7 @@ public class HttpResponse {
     public String getContentType() {
         return contentType;
     }
-    
+
     /**
      * Gets the current HTTP status code of the response.
      * @return the HTTP status code
@@ -61,13 +228,255 @@ public class HttpResponse {
     public int getStatusCode() {
         return statusCode;
     }
-    
+
     /**
      * Gets the current HTTP status message of the response.
-     * 
+     *
      * @return the HTTP status message
      */
     public String getStatusMessage() {
         return statusMessage;
     }
+
+    /**
+     * Gets the number of body bytes written so far.
+     * @return the body length
+     */
+    public int getBodyLength() {
+        return count;
+    }
+
+    /**
+     * Decodes the body written so far, for callers that need it as text.
+     * @return the body decoded as UTF-8
+     */
+    String getBodyAsString() {
+        return body == null ? "" : new String(body, 0, count, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the status line, the headers and the body. The head is serialized
+     * once into a byte array, bodies of at least {@link Compression#MIN_DYNAMIC_BYTES}
+     * with a compressible type carry vary: Accept-Encoding and are gzipped when accepted,
+     * unless the controller set its own content-encoding.
+     *
+     * @param output      the stream the response is written to
+     * @param keepAlive   false to include connection: close
+     * @param acceptsGzip true if the client accepts gzip
+     * @throws IOException if the response cannot be written
+     */
+    void writeTo(OutputStream output, boolean keepAlive, boolean acceptsGzip) throws IOException {
+        writeTo(output, keepAlive, acceptsGzip, false);
+    }
+
+    /**
+     * Writes the response, or only its status line and headers for a HEAD request.
+     * The head is the same either way, content-length included.
+     *
+     * @param output      the stream the response is written to
+     * @param keepAlive   false to include connection: close
+     * @param acceptsGzip true if the client accepts gzip
+     * @param headOnly    true to leave out the body
+     * @throws IOException if the response cannot be written
+     */
+    void writeTo(OutputStream output, boolean keepAlive, boolean acceptsGzip, boolean headOnly) throws IOException {
+        byte[] data = body == null ? EMPTY : body;
+        // 204 and 304 responses never have a body
+        boolean noBody = statusCode == 204 || statusCode == 304;
+        int length = noBody ? 0 : count;
+        // A body the controller already encoded is sent as it is
+        boolean vary = length >= Compression.MIN_DYNAMIC_BYTES && Compression.isCompressible(contentType)
+                && getHeader("content-encoding") == null;
+        boolean gzip = vary && acceptsGzip;
+        if (gzip) {
+            data = Compression.gzip(data, 0, length);
+            length = data.length;
+        }
+
+        byte[] head = new byte[headSize()];
+        int p = putHead(head, noBody ? -1 : length, keepAlive, false, vary, gzip);
+
+        output.write(head, 0, p);
+        if (!headOnly) {
+            output.write(data, 0, length);
+        }
+        output.flush();
+    }
+
+    /**
+     * Writes the status line and headers of a body streamed after them, which has
+     * no content-length, followed by what was already written to the body.
+     *
+     * @param output    the stream the response is written to
+     * @param keepAlive false to include connection: close
+     * @param chunked   true to include transfer-encoding: chunked
+     * @param body      the stream the body written so far goes to, e.g. the chunk encoder
+     * @throws IOException if the response cannot be written
+     */
+    void writeStreamingHead(OutputStream output, boolean keepAlive, boolean chunked, OutputStream body)
+            throws IOException {
+        byte[] head = new byte[headSize()];
+        int p = putHead(head, -1, keepAlive, chunked, false, false);
+        output.write(head, 0, p);
+        if (count > 0) {
+            body.write(this.body, 0, count);
+        }
+    }
+
+    private int headSize() {
+        int size = HEAD_FIXED_SIZE + statusMessage.length() + contentType.length();
+        for (String header : headers) {
+            size += header.length() + 2;
+        }
+        return size;
+    }
+
+    /**
+     * Serializes the status line and headers.
+     * @param contentLength the content-length to send, or -1 for none
+     * @return the head length
+     */
+    private int putHead(byte[] head, int contentLength, boolean keepAlive, boolean chunked, boolean vary,
+                        boolean gzip) {
+        int p = put(head, 0, HTTP_1_1);
+        head[p++] = (byte) ('0' + statusCode / 100);
+        head[p++] = (byte) ('0' + statusCode / 10 % 10);
+        head[p++] = (byte) ('0' + statusCode % 10);
+        head[p++] = ' ';
+        p = putLine(head, p, statusMessage);
+        p = put(head, p, CONTENT_TYPE);
+        p = putLine(head, p, contentType);
+        for (int i = 0; i < headers.size(); i += 2) {
+            p = putAscii(head, p, headers.get(i));
+            head[p++] = ':';
+            head[p++] = ' ';
+            p = putLine(head, p, headers.get(i + 1));
+        }
+        if (contentLength >= 0) {
+            p = put(head, p, CONTENT_LENGTH);
+            p = putDigits(head, p, contentLength);
+            head[p++] = '\r';
+            head[p++] = '\n';
+        }
+        if (chunked) {
+            p = put(head, p, TRANSFER_ENCODING);
+        }
+        if (!keepAlive) {
+            p = put(head, p, CONNECTION_CLOSE);
+        }
+        if (vary) {
+            p = put(head, p, VARY);
+        }
+        if (gzip) {
+            p = put(head, p, CONTENT_ENCODING);
+        }
+        head[p++] = '\r';
+        head[p++] = '\n';
+        return p;
+    }
+
+    /**
+     * Gives the body buffer back to the pool. The response must not be written afterwards.
+     */
+    void release() {
+        byte[] buffer = body;
+        body = null;
+        count = 0;
+        if (buffer != null && buffer.length <= MAX_POOLED_SIZE) {
+            POOL.offer(buffer);
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (body == null) {
+            byte[] pooled = extra <= POOLED_SIZE ? POOL.poll() : null;
+            body = pooled != null ? pooled : new byte[Math.max(POOLED_SIZE, extra)];
+        } else if (count + extra > body.length) {
+            body = Arrays.copyOf(body, Math.max(body.length * 2, count + extra));
+        }
+    }
+
+    private static void checkName(String name) {
+        if (name.isEmpty()) {
+            throw new IllegalArgumentException("Empty header name");
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            // A colon or whitespace would let the name end early and smuggle a second header
+            if (c <= ' ' || c == ':' || c >= 0x7f) {
+                throw new IllegalArgumentException("Invalid character in header name: " + name);
+            }
+        }
+    }
+
+    private static String checkValue(String value) {
+        if (value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Line break in header value");
+        }
+        return value;
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static int put(byte[] head, int p, byte[] bytes) {
+        System.arraycopy(bytes, 0, head, p, bytes.length);
+        return p + bytes.length;
+    }
+
+    private static int putAscii(byte[] head, int p, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            head[p++] = c < 0x100 ? (byte) c : (byte) '?';
+        }
+        return p;
+    }
+
+    private static int putLine(byte[] head, int p, String text) {
+        p = putAscii(head, p, text);
+        head[p++] = '\r';
+        head[p++] = '\n';
+        return p;
+    }
+
+    private static int putDigits(byte[] head, int p, int value) {
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = p + digits - 1; i >= p; i--) {
+            head[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return p + digits;
+    }
+
+    /**
+     * Gets the standard reason phrase of a status code.
+     */
+    static String reasonPhrase(int statusCode) {
+        return switch (statusCode) {
+            case 200 -> "OK";
+            case 201 -> "Created";
+            case 202 -> "Accepted";
+            case 204 -> "No Content";
+            case 301 -> "Moved Permanently";
+            case 302 -> "Found";
+            case 304 -> "Not Modified";
+            case 400 -> "Bad Request";
+            case 401 -> "Unauthorized";
+            case 403 -> "Forbidden";
+            case 404 -> "Not Found";
+            case 405 -> "Method Not Allowed";
+            case 409 -> "Conflict";
+            case 413 -> "Content Too Large";
+            case 415 -> "Unsupported Media Type";
+            case 429 -> "Too Many Requests";
+            case 500 -> "Internal Server Error";
+            case 501 -> "Not Implemented";
+            case 503 -> "Service Unavailable";
+            default -> "Unknown";
+        };
+    }
 }
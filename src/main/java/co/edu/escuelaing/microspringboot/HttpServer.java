@@ -6,9 +6,12 @@ package co.edu.escuelaing.microspringboot;
 
 import java.net.*;
 import java.io.*;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
@@ -24,15 +27,39 @@ import java.util.logging.Logger;
  * @author daniel.aldana-b
  */
 public class HttpServer {
-    //Map containing registered REST services mapped by their paths
-    public static final Map<String, Method> services = new HashMap<>();
-    public static final Map<String, List<Parameter>> requests = new HashMap<>();
+    // Tuning settings from system properties, the environment or server.properties
+    static final ServerConfig config = ServerConfig.load();
+    //Route table containing registered REST services mapped by their path templates
+    public static final RouteTable services = new RouteTable();
     // Root directory for serving static files
-    public static String ROOT_DIRECTORY = "target/classes/webroot";
+    public static String ROOT_DIRECTORY = config.getStaticDir() != null
+            ? config.getStaticDir() : "target/classes/webroot";
+    // True to serve ROOT_DIRECTORY from disk before falling back to the classpath webroot
+    static volatile boolean fileSystemStatic = config.getStaticDir() != null;
 
     // Simple thread pool for handling concurrent requests
     private static ExecutorService executor;
     private static volatile boolean running = true;
+    // Selector engine, only set when ENGINE=nio
+    private static NioEngine nioEngine;
+    private static final String TEXT_PLAIN = "text/plain; charset=utf-8";
+    // Largest unread body skipped to keep a connection open, longer ones close it
+    private static final long MAX_SKIPPED_BODY = 64 * 1024;
+    // Webroot files kept in memory after their first request
+    static final StaticFileCache staticFiles = new StaticFileCache("webroot", config.getStaticCacheBytes());
+    // Request log written by a background thread, see ACCESS_LOG_LEVEL
+    static final AccessLog accessLog = AccessLog.fromConfig(config);
+    // Per-route counters and latency histograms served at /metrics
+    static final Metrics metrics = new Metrics();
+    // Adaptive limit on concurrent requests, null unless CONCURRENCY_LIMIT=aimd
+    static volatile ConcurrencyLimiter limiter = ConcurrencyLimiter.fromConfig(config);
+    // Sent when a connection or request is shed, the client may retry after a second
+    static final byte[] SERVICE_UNAVAILABLE = ("HTTP/1.1 503 Service Unavailable\r\n"
+            + "content-type: " + TEXT_PLAIN + "\r\n"
+            + "content-length: 19\r\n"
+            + "retry-after: 1\r\n"
+            + "connection: close\r\n"
+            + "\r\nService Unavailable").getBytes(StandardCharsets.US_ASCII);
 
     /**
      * Starts the HTTP server and begins listening for incoming connections.
@@ -44,17 +71,27 @@ public class HttpServer {
      * @throws URISyntaxException if there's an error parsing request URIs
      */
     public static void runServer(String[] args) throws IOException, URISyntaxException {
-        // Initialize simple thread pool
-        executor = Executors.newFixedThreadPool(10);
+        // Initialize the worker executor for the configured execution mode
+        executor = createExecutor();
         
         // Register shutdown hook for graceful shutdown
         registerShutdownHook();
         
-        ServerSocket serverSocket = null;
+        if (config.isNioEngine()) {
+            loadComponents(args);
+            nioEngine = new NioEngine(config, executor);
+            nioEngine.start();
+            return;
+        }
+        
+        // A blocking channel, so file bodies can be sent with transferTo
+        ServerSocketChannel serverSocket = null;
         try {
-            serverSocket = new ServerSocket(getPort());
+            serverSocket = ServerSocketChannel.open();
+            config.applyToServer(serverSocket);
+            serverSocket.bind(new InetSocketAddress(config.getPort()), config.getBacklog());
         } catch (IOException e) {
-            System.err.println("Could not listen on port: 35000.");
+            System.err.println("Could not listen on port: " + config.getPort() + ".");
             System.exit(1);
         }
         
@@ -62,16 +99,28 @@ public class HttpServer {
         
         while (running) {
             try {
-                Socket clientSocket = serverSocket.accept();
+                SocketChannel clientSocket = serverSocket.accept();
                 
                 // Submit each connection to the thread pool for concurrent processing
-                executor.submit(() -> {
+                Runnable task = () -> {
                     try {
                         handleClient(clientSocket);
                     } catch (Exception e) {
                         Logger.getLogger(HttpServer.class.getName()).log(Level.SEVERE, null, e);
                     }
-                });
+                };
+                try {
+                    // A full thread-per-task executor sheds the connection instead of stalling accepts
+                    if (executor instanceof ThreadPerTaskExecutor perTask) {
+                        perTask.tryExecute(task);
+                    } else {
+                        executor.execute(task);
+                    }
+                } catch (RejectedExecutionException e) {
+                    // The work queue is full, answer right away instead of letting the client time out
+                    metrics.recordRejected(Metrics.QUEUE_FULL);
+                    shed(clientSocket);
+                }
                 
             } catch (IOException e) {
                 if (running) {
@@ -87,57 +136,347 @@ public class HttpServer {
     }
     
     /**
-     * Handles an incoming HTTP request and generates the appropriate response.
-     * This method routes requests to the appropriate handler based on the URI path:
+     * Answers 503 on a connection the workers cannot take and closes it.
+     * Runs on the acceptor thread, the response fits in the socket send buffer.
+     */
+    static void shed(SocketChannel channel) {
+        try (channel) {
+            channel.write(ByteBuffer.wrap(SERVICE_UNAVAILABLE));
+            channel.shutdownOutput();
+        } catch (IOException e) {
+            // The client is gone, nothing to answer
+        }
+    }
+
+    /**
+     * Handles an incoming HTTP request and closes the connection afterwards.
      * @param uri    the request URI containing the path and query parameters
-     * @param out    the writer to send responses to the client
-     * @param socket the client socket used for file streaming
+     * @param output the stream the response is written to
      * @throws IOException if an I/O error occurs when handling the request
      */
-    public static void handleRequest(URI uri, PrintWriter out, Socket socket) throws IOException {
-        
-        if(uri != null && uri.getPath().startsWith("/app/helloget")){
-            String output = greetingService(uri, false);
-            invokeService(uri);
-            out.println(output);
-        }else if(uri != null && uri.getPath().startsWith("/app/hellopost")) {
-            String output = greetingService(uri, true);
-            out.println(output);
+    public static void handleRequest(URI uri, OutputStream output) throws IOException {
+        handleRequest(new HttpRequest(uri), output, false);
+    }
+
+    /**
+     * Handles an incoming HTTP request built from a URI only.
+     * @param uri       the request URI containing the path and query parameters
+     * @param output    the stream the response is written to
+     * @param keepAlive false to tell the client the connection closes after this response
+     * @throws IOException if an I/O error occurs when handling the request
+     */
+    public static void handleRequest(URI uri, OutputStream output, boolean keepAlive) throws IOException {
+        handleRequest(new HttpRequest(uri), output, keepAlive);
+    }
+
+    /**
+     * Handles an incoming HTTP request and generates the appropriate response.
+     * This method routes requests to the appropriate handler based on the method and URI path.
+     * Every response carries a content-length so the connection can be reused.
+     * @param request   the request with its URI and headers
+     * @param output    the stream the response is written to
+     * @param keepAlive false to tell the client the connection closes after this response
+     * @throws HttpParseException if the request body is malformed or too large, nothing has been written then
+     * @throws IOException if an I/O error occurs when handling the request
+     */
+    public static void handleRequest(HttpRequest request, OutputStream output, boolean keepAlive) throws IOException {
+        String path = request.getPath();
+        String method = request.getMethod();
+        boolean get = method.equals("GET") || method.equals("HEAD");
+        // HEAD gets the head GET would send, with its content-length, and no body bytes
+        boolean head = method.equals("HEAD");
+        String response;
+        RouteTable.Match route;
+        String allowed;
+        if (request.getTarget() == null) {
+            request.setRoute(Metrics.INVALID);
+            response = response("400 Bad Request", TEXT_PLAIN, "Bad Request");
+        }
+        else if (Metrics.PATH.equals(path)) {
+            request.setRoute(Metrics.PATH);
+            response = get ? response("200 OK", Metrics.CONTENT_TYPE, metrics.render(executor, staticFiles, accessLog, limiter))
+                    : methodNotAllowed("GET, HEAD");
         }
         // Check for registered REST services
-        else if(uri != null && services.containsKey(uri.getPath())) {
-            String output = invokeService(uri);
-            out.println(output);
+        else if((route = services.match(method, path)) != null) {
+            request.setRoute(route.getTemplate());
+            HttpResponse res = new HttpResponse();
+            try {
+                Object result;
+                try {
+                    result = callService(request, res, route);
+                    if (result != null && !ChunkedBody.isStreaming(result)) {
+                        writeResult(result, res);
+                    }
+                } catch (ParameterBindingException ex) {
+                    writeResponse(output, response("400 Bad Request", TEXT_PLAIN, ex.getMessage()), keepAlive, false, head);
+                    return;
+                } catch (Error | HttpParseException ex) {
+                    throw ex;
+                } catch (Throwable ex) {
+                    writeResponse(output, serverError(ex), keepAlive, false, head);
+                    return;
+                }
+                if (ChunkedBody.isStreaming(result)) {
+                    // Chunks are sent as they are produced, HTTP/1.0 clients get the raw body
+                    boolean chunked = "HTTP/1.1".equals(request.getVersion());
+                    ChunkedBody.write(result, res, output, keepAlive && chunked, chunked, head);
+                    return;
+                }
+                res.writeTo(output, keepAlive, Compression.acceptsGzip(request.getHeader("Accept-Encoding")), head);
+            } finally {
+                res.release();
+            }
+            return;
         }
-        else if (uri != null){
+        else if ((allowed = services.allowed(path)) != null) {
+            // The path is mapped, but not for this method
+            request.setRoute(Metrics.INVALID);
+            response = methodNotAllowed(allowed);
+        }
+        else if(path.startsWith("/app/helloget")){
+            request.setRoute("/app/helloget");
+            if (get) {
+                response = greetingService(request.getValue("name"), false);
+                invokeService(request);
+            } else {
+                response = methodNotAllowed("GET, HEAD");
+            }
+        }else if(path.startsWith("/app/hellopost")) {
+            request.setRoute("/app/hellopost");
+            response = method.equals("POST") ? greetingService(formValue(request, "name"), true)
+                    : methodNotAllowed("POST");
+        }
+        else if (!get) {
+            request.setRoute(Metrics.STATIC);
+            response = methodNotAllowed("GET, HEAD");
+        }
+        else {
             // Handle static files
-            InputStream resource;
+            request.setRoute(Metrics.STATIC);
+            if (path.endsWith("/")) {
+                path += "index.html";
+            }
+            if (fileSystemStatic && StaticDirectory.serve(Path.of(ROOT_DIRECTORY), path, request, output, keepAlive)) {
+                return;
+            }
+            StaticFileCache.Entry file = staticFiles.get(path);
+            if (file != null) {
+                file = file.variant(Compression.acceptsGzip(request.getHeader("Accept-Encoding")));
+            }
+            if (file != null && file.isNotModified(request.getHeader("If-None-Match"),
+                    request.getHeader("If-Modified-Since"))) {
+                output.write(file.notModifiedHeader(keepAlive));
+                output.flush();
+                return;
+            }
+            if (file != null) {
+                output.write(file.header(keepAlive));
+                if (!head) {
+                    file.writeBody(output);
+                }
+                output.flush();
+                return;
+            }
+            response = response("404 Not Found", TEXT_PLAIN, "File not found: " + path);
+        }
+        writeResponse(output, response, keepAlive, false, head);
+    }
 
+    /**
+     * Builds a complete response with a content-length header.
+     * @param status      the status code and reason phrase, e.g. "200 OK"
+     * @param contentType the value of the content-type header
+     * @param body        the response body
+     * @return the status line, headers and body as a single string
+     */
+    static String response(String status, String contentType, String body) {
+        return "HTTP/1.1 " + status + "\r\n"
+                + "content-type: " + contentType + "\r\n"
+                + "content-length: " + body.getBytes(StandardCharsets.UTF_8).length + "\r\n"
+                + "\r\n" + body;
+    }
 
-            String path = uri.getPath();
+    /**
+     * Builds a 405 response listing the methods the path accepts.
+     * @param allow the value of the allow header, e.g. "GET, HEAD"
+     */
+    private static String methodNotAllowed(String allow) {
+        String body = "Method Not Allowed";
+        return "HTTP/1.1 405 Method Not Allowed\r\n"
+                + "allow: " + allow + "\r\n"
+                + "content-type: " + TEXT_PLAIN + "\r\n"
+                + "content-length: " + body.length() + "\r\n"
+                + "\r\n" + body;
+    }
 
+    /**
+     * Reads a field of an application/x-www-form-urlencoded body, falling back
+     * to the query string when the request has no body or the body lacks the field.
+     */
+    private static String formValue(HttpRequest request, String name) throws IOException {
+        byte[] form = request.getBody().readAllBytes();
+        String value = form.length == 0 ? null
+                : QueryString.parse(new String(form, StandardCharsets.UTF_8)).get(name);
+        return value != null ? value : request.getValue(name);
+    }
 
-            if (path.endsWith("/")) {
-                path += "index.html";
+    /**
+     * Writes a response built by {@link #response}, adding connection: close
+     * after the status line when the connection will not be reused.
+     */
+    static void writeResponse(OutputStream output, String response, boolean keepAlive) throws IOException {
+        writeResponse(output, response, keepAlive, false);
+    }
+
+    /**
+     * Writes a response built by {@link #response}, compressing text bodies of
+     * at least {@link Compression#MIN_DYNAMIC_BYTES} when the client accepts gzip.
+     * Those bodies always carry vary: Accept-Encoding, compressed or not.
+     */
+    static void writeResponse(OutputStream output, String response, boolean keepAlive, boolean acceptsGzip) throws IOException {
+        writeResponse(output, response, keepAlive, acceptsGzip, false);
+    }
+
+    /**
+     * Writes a response built by {@link #response}, or only its head, with the
+     * content-length of the body, when answering a HEAD request.
+     */
+    static void writeResponse(OutputStream output, String response, boolean keepAlive, boolean acceptsGzip,
+                              boolean headOnly) throws IOException {
+        int headEnd = response.indexOf("\r\n\r\n");
+        byte[] body = response.substring(headEnd + 4).getBytes(StandardCharsets.UTF_8);
+        StringBuilder head = new StringBuilder(headEnd + 64).append(response, 0, headEnd + 2);
+        if (!keepAlive) {
+            int statusEnd = response.indexOf("\r\n") + 2;
+            head.insert(statusEnd, "connection: close\r\n");
+        }
+        if (body.length >= Compression.MIN_DYNAMIC_BYTES && Compression.isCompressible(contentType(response, headEnd))) {
+            head.append("vary: Accept-Encoding\r\n");
+            if (acceptsGzip) {
+                body = Compression.gzip(body);
+                int length = head.indexOf("content-length: ");
+                head.replace(length, head.indexOf("\r\n", length), "content-length: " + body.length);
+                head.append("content-encoding: gzip\r\n");
             }
-            String resourcePath = "webroot" + path;
-            resource = HttpServer.class.getClassLoader().getResourceAsStream(resourcePath);
-            if (resource != null) {
-                String mime = getType(Path.of(path));
-                String header = "HTTP/1.1 200 OK\r\n" +
-                        "content-type: " + mime + "\r\n\r\n";
-                OutputStream outputStream = socket.getOutputStream();
-                outputStream.write(header.getBytes());
-                resource.transferTo(outputStream);
-                resource.close();
-            } else {
-                String outputLine = "HTTP/1.1 404 Not Found\r\n" +
-                        "content-type: text/plain; charset=utf-8\r\n\r\n" +
-                        "File not found: " + path;
-                out.println(outputLine);
+        }
+        output.write(head.append("\r\n").toString().getBytes(StandardCharsets.UTF_8));
+        if (!headOnly) {
+            output.write(body);
+        }
+        output.flush();
+    }
+
+    private static String contentType(String response, int headEnd) {
+        int start = response.indexOf("content-type: ");
+        if (start < 0 || start > headEnd) {
+            return null;
+        }
+        start += "content-type: ".length();
+        return response.substring(start, response.indexOf("\r\n", start));
+    }
+
+    /**
+     * Decides whether a connection stays open after the current request.
+     * HTTP/1.1 connections are persistent unless the client sends Connection: close,
+     * older versions are always closed.
+     * @param head the parsed request head
+     * @return true if the connection can serve another request
+     */
+    static boolean isKeepAlive(HttpRequestParser head) {
+        return head.isVersion("HTTP/1.1") && !head.headerEquals("Connection", "close");
+    }
+
+    /**
+     * Answers one parsed request without a body.
+     * @param head      the parsed request head
+     * @param output    the stream the response is written to
+     * @param keepAlive whether the connection stays open after this response
+     * @return false if the connection must be closed after this response
+     * @throws IOException if an I/O error occurs when handling the request
+     */
+    static boolean serve(HttpRequestParser head, OutputStream output, boolean keepAlive) throws IOException {
+        return serve(head, BodyInputStream.EMPTY, output, keepAlive);
+    }
+
+    /**
+     * Answers one parsed request. Shared by the blocking loop and the nio engine.
+     * What the handler leaves of the body is skipped afterwards, unless it is too
+     * long to be worth reading, then the connection is closed instead.
+     * @param head      the parsed request head
+     * @param body      the request body, read by the handler as it needs it
+     * @param output    the stream the response is written to
+     * @param keepAlive whether the connection stays open after this response
+     * @return false if the connection must be closed after this response
+     * @throws IOException if an I/O error occurs when handling the request
+     */
+    static boolean serve(HttpRequestParser head, BodyInputStream body, OutputStream output, boolean keepAlive)
+            throws IOException {
+        if (accessLog.isDebugEnabled()) {
+            accessLog.debug(describe(head));
+        }
+        ConcurrencyLimiter limit = limiter;
+        if (limit != null && !limit.tryAcquire()) {
+            metrics.recordRejected(Metrics.CONCURRENCY_LIMIT);
+            output.write(SERVICE_UNAVAILABLE);
+            output.flush();
+            return false;
+        }
+        long start = System.nanoTime();
+        CountingOutput counted = new CountingOutput(output);
+        HttpRequest request = null;
+        try {
+            RequestTarget target;
+            try {
+                target = head.getRequestTarget();
+            } catch (HttpParseException ex) {
+                writeError(counted, ex);
+                return false;
+            }
+            request = new HttpRequest(target, head);
+            request.setBody(body);
+            try {
+                handleRequest(request, counted, keepAlive);
+            } catch (HttpParseException ex) {
+                // The body is malformed or too large, the rest of it cannot be skipped
+                writeError(counted, ex);
+                return false;
+            }
+            return keepAlive && body.skipRemaining(MAX_SKIPPED_BODY);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (limit != null) {
+                limit.release(elapsed);
+            }
+            String route = request != null && request.getRoute() != null ? request.getRoute() : Metrics.INVALID;
+            metrics.record(route, counted.getStatus(), counted.getBytes(), elapsed);
+            if (accessLog.sample()) {
+                accessLog.access(head.getMethod(), head.getPath(), counted.getStatus(), counted.getBytes(), elapsed);
             }
         }
+    }
 
+    /**
+     * Renders a request head for DEBUG logging, one header per line.
+     */
+    private static String describe(HttpRequestParser head) {
+        StringBuilder text = new StringBuilder(256)
+                .append("Received: ").append(head.getMethod()).append(' ')
+                .append(head.getTarget()).append(' ').append(head.getVersion());
+        for (int i = 0; i < head.getHeaderCount(); i++) {
+            text.append('\n').append(head.getHeaderName(i)).append(": ").append(head.getHeaderValue(i));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Answers a request head that could not be parsed. The connection must be closed afterwards.
+     * @param output the stream the response is written to
+     * @param error  the parse error carrying the status to send
+     * @throws IOException if the response cannot be written
+     */
+    static void writeError(OutputStream output, HttpParseException error) throws IOException {
+        writeResponse(output, response(error.getStatus(), TEXT_PLAIN, error.getMessage()), false);
     }
     
     /**
@@ -184,18 +523,26 @@ public class HttpServer {
      * @return an HTTP response string with status, headers, and JSON body
      */
     public static String greetingService(URI uri, boolean time){
-        String user;
-        try{
-            user = uri.getQuery().split("=")[1];
-        } catch (Exception e) {
-            return "HTTP/1.1 400 Bad Request\r\n" + "content-type: text/plain; charset=utf-8\r\n"
-                    + "\r\n" + "{\"msg\": \"Name not found\"}";
-        }
-        String response = "HTTP/1.1 200 OK \r\n" + "content-type: application/json; charset=utf-8\r\n"
-                + "\r\n";
-        response = response + "{\"msg\": \"Hello " + user;
-        response = time? response + "today's date is" + LocalDate.now() + "\"}":response+ "\"}";
-        System.out.println(response);
+        return greetingService(new HttpRequest(uri).getValue("name"), time);
+    }
+
+    private static String greetingService(String user, boolean time){
+        if (user == null || user.isEmpty()) {
+            return response("400 Bad Request", TEXT_PLAIN, "{\"msg\": \"Name not found\"}");
+        }
+        String msg = time ? "Hello " + user + ", today's date is " + LocalDate.now() : "Hello " + user;
+        // The name comes from the client, the serializer escapes it
+        HttpResponse body = new HttpResponse();
+        String response;
+        try {
+            JsonWriter.write(Map.of("msg", msg), body);
+            response = response("200 OK", JsonWriter.CONTENT_TYPE, body.getBodyAsString());
+        } finally {
+            body.release();
+        }
+        if (accessLog.isDebugEnabled()) {
+            accessLog.debug(response);
+        }
         return response;
     }
     
@@ -203,21 +550,24 @@ public class HttpServer {
      * Registers a REST service endpoint with the specified path.
      * The service will be invoked when a request is made to the specified path.
      * 
-     * @param path the URL path for the service (e.g., "/hello", "/api/users")
+     * @param path the URL path for the service (e.g., "/hello", "/users/{id}")
      * @param s the service implementation to handle requests to this path
+     * @throws IllegalStateException if the path is already mapped to another method
      */
     public static void get(String path, Method s){
-        services.put(path,s);
+        services.register(path,s);
     }
     
     /**
-     * Sets the root directory for serving static files.
-     * The directory path is relative to the target/classes directory.
+     * Sets the root directory for serving static files and serves them from disk.
+     * The directory path is relative to the target/classes directory. Files that
+     * are not found there are still looked up in the classpath webroot.
      * 
      * @param localFilesPath the path to the static files directory
      */
     public static void staticfiles(String localFilesPath){
         ROOT_DIRECTORY = "target/classes" + localFilesPath;
+        fileSystemStatic = true;
     }
     
     /**
@@ -241,63 +591,99 @@ public class HttpServer {
      * @return a complete HTTP response string with headers and body, or a 404 error if service not found
      */
     public static String invokeService(URI uri){
-        String key = uri.getPath();
-        System.out.println("Invoking service for path: " + key);
-        Method s = services.get(key);
-        
-        if (s != null) {
-            try {
-                // Get parameters for this method
-                Parameter[] parameters = s.getParameters();
-                Object[] args = new Object[parameters.length];
-                
-                // Parse query parameters
-                HttpRequest httpRequest = new HttpRequest(uri);
-                
-                for (int i = 0; i < parameters.length; i++) {
-                    Parameter p = parameters[i];
-                    if (p.isAnnotationPresent(RequestParam.class)) {
-                        RequestParam param = p.getAnnotation(RequestParam.class);
-                        String value = httpRequest.getValue(param.value());
-                        // Use defaultValue if parameter is not provided
-                        if (value == null || value.isEmpty()) {
-                            value = param.defaultValue();
-                        }
-                        args[i] = value;
-                    } else {
-                        // For non-annotated parameters, pass null
-                        args[i] = null;
-                    }
-                }
-                
-                // Invoke the method
-                Object result = s.invoke(null, args);
-                
-                // Return HTTP response
-                return "HTTP/1.1 200 OK\r\n"
-                        + "content-type: text/plain; charset=utf-8\r\n"
-                        + "\r\n" + result.toString();
-                        
-            } catch (IllegalAccessException ex) {
-                Logger.getLogger(HttpServer.class.getName()).log(Level.SEVERE, null, ex);
-                return "HTTP/1.1 500 Internal Server Error\r\n"
-                        + "content-type: text/plain; charset=utf-8\r\n"
-                        + "\r\n" + "Internal Server Error: " + ex.getMessage();
-            } catch (InvocationTargetException ex) {
-                Logger.getLogger(HttpServer.class.getName()).log(Level.SEVERE, null, ex);
-                return "HTTP/1.1 500 Internal Server Error\r\n"
-                        + "content-type: text/plain; charset=utf-8\r\n"
-                        + "\r\n" + "Internal Server Error: " + ex.getTargetException().getMessage();
+        return invokeService(new HttpRequest(uri));
+    }
+    
+    /**
+     * Invokes the registered REST service for the given request.
+     * 
+     * @param httpRequest the request with its path and query parameters
+     * @return a complete HTTP response string with headers and body, or a 404 error if service not found
+     */
+    public static String invokeService(HttpRequest httpRequest){
+        return invokeService(httpRequest, services.match(httpRequest.getMethod(), httpRequest.getPath()));
+    }
+    
+    /**
+     * Invokes the service of an already resolved route.
+     * 
+     * @param httpRequest the request with its path and query parameters
+     * @param route       the route matched for the request path, or null
+     * @return a complete HTTP response string with headers and body, or a 404 error if service not found
+     */
+    private static String invokeService(HttpRequest httpRequest, RouteTable.Match route){
+        if (route == null || route.getInvoker() == null) {
+            return response("404 Not Found", TEXT_PLAIN, "Service not found");
+        }
+        HttpResponse res = new HttpResponse();
+        try {
+            Object result = callService(httpRequest, res, route);
+            if (ChunkedBody.isStreaming(result)) {
+                // Callers of this method need the whole body
+                res.write(ChunkedBody.collect(result));
+            } else if (result != null) {
+                writeResult(result, res);
             }
+            return response(res.getStatusCode() + " " + res.getStatusMessage(), res.getContentType(),
+                    res.getBodyAsString());
+        } catch (ParameterBindingException ex) {
+            return response("400 Bad Request", TEXT_PLAIN, ex.getMessage());
+        } catch (HttpParseException ex) {
+            return response(ex.getStatus(), TEXT_PLAIN, ex.getMessage());
+        } catch (Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            return serverError(ex);
+        } finally {
+            res.release();
         }
-        
-        return "HTTP/1.1 404 Not Found\r\n" + "content-type: text/plain; charset=utf-8\r\n"
-               + "\r\n" + "Service not found";
     }
 
+    /**
+     * Calls the controller method of a matched route.
+     * @return the value returned by the controller method
+     */
+    private static Object callService(HttpRequest httpRequest, HttpResponse response, RouteTable.Match route)
+            throws Throwable {
+        if (accessLog.isDebugEnabled()) {
+            accessLog.debug("Invoking service for path: " + httpRequest.getPath());
+        }
+        // Binders and call target were compiled when the route was registered
+        return route.getInvoker().invoke(httpRequest, response, route);
+    }
+
+    /**
+     * Appends a controller result to the body. Records, POJOs, maps, collections
+     * and arrays are serialized to JSON, and the content type becomes
+     * application/json unless the controller set another one; other values are
+     * written as their toString().
+     */
+    private static void writeResult(Object result, HttpResponse res) {
+        if (!JsonWriter.isJson(result)) {
+            res.write(result.toString());
+            return;
+        }
+        if (TEXT_PLAIN.equals(res.getContentType())) {
+            res.setContentType(JsonWriter.CONTENT_TYPE);
+        }
+        JsonWriter.write(result, res);
+    }
+
+    private static String serverError(Throwable ex) {
+        Logger.getLogger(HttpServer.class.getName()).log(Level.SEVERE, null, ex);
+        return response("500 Internal Server Error", TEXT_PLAIN, "Internal Server Error: " + ex.getMessage());
+    }
+
+    /**
+     * Scans the application package for controllers and compiles their
+     * mappings into the route table.
+     * 
+     * @param args command line arguments (not used)
+     * @throws IllegalStateException if two methods are mapped to the same route
+     */
     public static void loadComponents(String[] args) {
         try {
-            List<Class<?>> classes = ComponentScanner.scanForControllers("co.edu.escuelaing.microspringboot");
+            List<Class<?>> classes = ComponentScanner.findControllers("co.edu.escuelaing.microspringboot");
             for (Class<?> cl : classes){
                 loadComponent(cl);
             }
@@ -312,57 +698,101 @@ public class HttpServer {
         }
         Method[] methods = c.getDeclaredMethods();
         for(Method m : methods){
-            if(!m.isAnnotationPresent(GetMapping.class)){
+            String httpMethod;
+            String mapping;
+            if (m.isAnnotationPresent(GetMapping.class)) {
+                httpMethod = "GET";
+                mapping = m.getAnnotation(GetMapping.class).value();
+            } else if (m.isAnnotationPresent(PostMapping.class)) {
+                httpMethod = "POST";
+                mapping = m.getAnnotation(PostMapping.class).value();
+            } else if (m.isAnnotationPresent(PutMapping.class)) {
+                httpMethod = "PUT";
+                mapping = m.getAnnotation(PutMapping.class).value();
+            } else if (m.isAnnotationPresent(DeleteMapping.class)) {
+                httpMethod = "DELETE";
+                mapping = m.getAnnotation(DeleteMapping.class).value();
+            } else {
                 continue;
             }
-            String mapping = m.getAnnotation(GetMapping.class).value();
-            System.out.println(mapping);
-            services.put(mapping, m);
-            checkMethodParameters(m, mapping);
+            System.out.println(httpMethod + " " + mapping);
+            checkPathVariables(m, mapping);
+            services.register(httpMethod, mapping, m);
         }
     }
-    private static void checkMethodParameters(Method method, String mapping) {
-        Parameter[] params = method.getParameters();
-        for (Parameter p : params) {
-            if (p.isAnnotationPresent(RequestParam.class)) {
-                requests.computeIfAbsent(mapping, l -> new ArrayList<>()).add(p);
+
+    private static void checkPathVariables(Method method, String mapping) {
+        List<String> variables = RouteTable.variables(mapping);
+        for (Parameter p : method.getParameters()) {
+            PathVariable variable = p.getAnnotation(PathVariable.class);
+            if (variable != null && !variables.contains(variable.value())) {
+                throw new IllegalStateException("@PathVariable(\"" + variable.value() + "\") of "
+                        + method.getDeclaringClass().getSimpleName() + "." + method.getName()
+                        + " is not a variable of " + mapping);
             }
         }
     }
     /**
      * Handles a client connection in a separate thread.
-     * This method processes the HTTP request and sends the response.
+     * Requests are read into one reusable buffer and answered in order until the
+     * client closes the connection, asks for Connection: close, stays idle for
+     * IDLE_TIMEOUT_MS, takes longer than READ_TIMEOUT_MS to send a started
+     * request, stops reading a response for WRITE_TIMEOUT_MS or reaches
+     * MAX_KEEP_ALIVE_REQUESTS. Request bodies are read from
+     * the same buffer, then the socket, while the handler consumes them.
      */
-    private static void handleClient(Socket clientSocket) throws IOException, URISyntaxException {
-        PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
-        BufferedReader in = new BufferedReader(
-                new InputStreamReader(clientSocket.getInputStream()));
-        
-        String inputLine;
-        boolean firstLine = true;
-        URI requri = null;
-        
-        while ((inputLine = in.readLine()) != null) {
-            if (firstLine) {
-                requri = new URI(inputLine.split(" ")[1]);
-                System.out.println("Path: " + requri.getPath() + " - Thread: " + Thread.currentThread().getName());
-                firstLine = false;
-            }
-            System.out.println("Received: " + inputLine);
-            if (!in.ready()) {
-                break;
-            }
-        }
+    private static void handleClient(SocketChannel channel) throws IOException {
+        Socket clientSocket = channel.socket();
+        config.applyToConnection(channel);
+        // Blocking writes have no timeout of their own, the output enforces WRITE_TIMEOUT_MS
+        OutputStream out = new SocketChannelOutput(channel, config.getWriteTimeoutMs());
+        ConnectionInput input = new ConnectionInput(clientSocket.getInputStream(), new byte[4096], 0);
+        HttpRequestParser parser = config.newParser();
+        int maxRequests = config.getMaxKeepAliveRequests();
         
         try {
-            handleRequest(requri, out, clientSocket);
-        } catch (Exception ex) {
-            Logger.getLogger(HttpServer.class.getName()).log(Level.SEVERE, null, ex);
+            for (int served = 1; served <= maxRequests; served++) {
+                BodyInputStream body;
+                try {
+                    int headEnd;
+                    while ((headEnd = parser.parse(input.buffer, 0, input.limit)) < 0) {
+                        // Waiting for a new request is idle time, a partial one must finish sooner
+                        clientSocket.setSoTimeout(input.limit == 0 ? config.getIdleTimeoutMs() : config.getReadTimeoutMs());
+                        if (!input.fillHead()) {
+                            return;
+                        }
+                    }
+                    input.startBody(headEnd);
+                    body = BodyInputStream.open(parser, input, config.getMaxBodySize(), out);
+                } catch (HttpParseException e) {
+                    writeError(out, e);
+                    return;
+                }
+                // The body is part of the request, a slow upload is held to the read timeout
+                clientSocket.setSoTimeout(config.getReadTimeoutMs());
+                
+                boolean keepAlive = served < maxRequests && isKeepAlive(parser);
+                try {
+                    keepAlive = serve(parser, body, out, keepAlive);
+                } catch (SocketTimeoutException ex) {
+                    // A client too slow to send its body or to read the response
+                    throw ex;
+                } catch (Exception ex) {
+                    Logger.getLogger(HttpServer.class.getName()).log(Level.SEVERE, null, ex);
+                    break;
+                }
+                if (!keepAlive) {
+                    break;
+                }
+                // Keep any pipelined bytes for the next request
+                input.compact();
+                parser.reset();
+            }
+        } catch (SocketTimeoutException e) {
+            // Idle persistent connection or a client too slow to send its request, close it
+        } finally {
+            clientSocket.close();
         }
-        
-        out.close();
-        in.close();
-        clientSocket.close();
     }
     /**
      * Registers a shutdown hook to gracefully shut down the server.
@@ -372,6 +802,9 @@ public class HttpServer {
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             // Set running flag to false to stop accepting new connections
             running = false;
+            if (nioEngine != null) {
+                nioEngine.stop();
+            }
             
             // Shutdown thread pool gracefully
             if (executor != null) {
@@ -392,23 +825,24 @@ public class HttpServer {
                     Thread.currentThread().interrupt();
                 }
             }
+            // Write the records of the last requests
+            accessLog.close();
         }, "HttpServer-ShutdownHook"));
     }
     
     /**
-     * Gets the port number from environment variable or returns default.
-     * @return the port number to use for the server
+     * Creates the executor that runs handleClient for each connection.
+     * EXECUTION=virtual runs every connection on its own virtual thread, limited
+     * by MAX_CONCURRENCY. Any other value keeps the fixed pool of WORKERS threads.
+     * @return the executor for the configured mode
      */
-    private static int getPort() {
-        String portEnv = System.getenv("PORT");
-        if (portEnv != null) {
-            try {
-                return Integer.parseInt(portEnv);
-            } catch (NumberFormatException e) {
-                System.err.println("Variable PORT is not a number using default value 35000.");
-            }
+    static ExecutorService createExecutor() {
+        if (config.isVirtualExecution()) {
+            return new ThreadPerTaskExecutor(config.getMaxConcurrency());
         }
-        return 35000;
+        // Fixed pool with a bounded queue, connections beyond it are answered with 503
+        return new ThreadPoolExecutor(config.getWorkers(), config.getWorkers(), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getWorkerQueue()), new ThreadPoolExecutor.AbortPolicy());
     }
 
     public static void main(String[] args) throws IOException, URISyntaxException  {
@@ -0,0 +1,463 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Serializes controller results to JSON straight into the body buffer of an
+ * {@link HttpResponse}, without building a String first.
+ * Records are written with their components and other application classes
+ * with their public getters and fields. The properties of a class are found
+ * once: their names are encoded to bytes and their accessors turned into
+ * MethodHandles typed after the property, for the declared return types when a
+ * controller is loaded and for any other class the first time it is written. Maps become objects,
+ * collections and arrays become arrays, and JDK types without a JSON form,
+ * such as LocalDate or UUID, are written as their toString().
+ *
+ * @author daniel.aldana-b
+ */
+final class JsonWriter {
+    static final String CONTENT_TYPE = "application/json; charset=utf-8";
+    // Deeper values are almost always a cycle between objects
+    private static final int MAX_DEPTH = 64;
+
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] TRUE = ascii("true");
+    private static final byte[] FALSE = ascii("false");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+    private static final byte[] EMPTY_OBJECT = ascii("{}");
+
+    // JDK classes map to PLATFORM, so the name check runs once per class instead of once per value
+    private static final ObjectWriter PLATFORM = new ObjectWriter();
+    private static final ClassValue<ObjectWriter> WRITERS = new ClassValue<>() {
+        @Override
+        protected ObjectWriter computeValue(Class<?> type) {
+            return isPlatform(type) ? PLATFORM : new ObjectWriter(type);
+        }
+    };
+
+    private JsonWriter() {
+    }
+
+    /**
+     * Tells whether a controller result is written as JSON rather than as its toString().
+     * @param value the value returned by the controller
+     * @return true for maps, collections, arrays, records and application classes
+     */
+    static boolean isJson(Object value) {
+        if (value instanceof Map || value instanceof Iterable) {
+            return true;
+        }
+        Class<?> type = value.getClass();
+        return type.isArray() || !(type.isEnum() || isPlatform(type));
+    }
+
+    /**
+     * Finds the properties of a type and of the types they refer to, so the first
+     * request does not pay for it. Called for the return type of every endpoint.
+     * @param type a declared return or property type
+     * @throws IllegalStateException if a property of an application class cannot be accessed
+     */
+    static void prepare(Type type) {
+        prepare(type, new HashSet<>());
+    }
+
+    private static void prepare(Type type, Set<Class<?>> seen) {
+        if (type instanceof ParameterizedType parameterized) {
+            prepare(parameterized.getRawType(), seen);
+            for (Type argument : parameterized.getActualTypeArguments()) {
+                prepare(argument, seen);
+            }
+        } else if (type instanceof GenericArrayType array) {
+            prepare(array.getGenericComponentType(), seen);
+        } else if (type instanceof Class<?> c) {
+            if (c.isArray()) {
+                prepare(c.getComponentType(), seen);
+            } else if (!c.isPrimitive() && !c.isEnum() && !c.isInterface() && !isPlatform(c) && seen.add(c)) {
+                for (Type property : WRITERS.get(c).types) {
+                    prepare(property, seen);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the JSON form of a value to the body.
+     * @param value the value, may be null
+     * @param out   the response whose body receives the bytes
+     * @throws IllegalStateException if the value nests deeper than 64 levels, usually a cycle
+     */
+    static void write(Object value, HttpResponse out) {
+        write(value, out, 0);
+    }
+
+    private static void write(Object value, HttpResponse out, int depth) {
+        if (value == null) {
+            out.write(NULL);
+        } else if (value instanceof String s) {
+            writeString(s, out);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            writeLong(((Number) value).longValue(), out);
+        } else if (value instanceof Boolean b) {
+            out.write(b ? TRUE : FALSE);
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            // JSON has no NaN or Infinity
+            out.write(Double.isFinite(d) ? value.toString() : "null");
+        } else if (value instanceof Number) {
+            out.write(value.toString());
+        } else if (value instanceof Enum<?> e) {
+            writeString(e.name(), out);
+        } else if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nesting deeper than " + MAX_DEPTH + " levels, the value may contain a cycle");
+        } else if (value instanceof Map<?, ?> map) {
+            writeMap(map, out, depth + 1);
+        } else if (value instanceof Iterable<?> items) {
+            out.writeByte('[');
+            boolean first = true;
+            for (Object item : items) {
+                if (!first) {
+                    out.writeByte(',');
+                }
+                first = false;
+                write(item, out, depth + 1);
+            }
+            out.writeByte(']');
+        } else if (value instanceof Optional<?> optional) {
+            write(optional.orElse(null), out, depth);
+        } else if (value.getClass().isArray()) {
+            writeArray(value, out, depth + 1);
+        } else {
+            ObjectWriter writer = WRITERS.get(value.getClass());
+            if (writer == PLATFORM) {
+                writeString(value.toString(), out);
+            } else {
+                writer.write(value, out, depth + 1);
+            }
+        }
+    }
+
+    private static void writeMap(Map<?, ?> map, HttpResponse out, int depth) {
+        out.writeByte('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!first) {
+                out.writeByte(',');
+            }
+            first = false;
+            writeString(String.valueOf(entry.getKey()), out);
+            out.writeByte(':');
+            write(entry.getValue(), out, depth);
+        }
+        out.writeByte('}');
+    }
+
+    private static void writeArray(Object array, HttpResponse out, int depth) {
+        out.writeByte('[');
+        if (array instanceof int[] ints) {
+            for (int i = 0; i < ints.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                writeLong(ints[i], out);
+            }
+        } else if (array instanceof long[] longs) {
+            for (int i = 0; i < longs.length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                writeLong(longs[i], out);
+            }
+        } else {
+            int length = Array.getLength(array);
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    out.writeByte(',');
+                }
+                write(Array.get(array, i), out, depth);
+            }
+        }
+        out.writeByte(']');
+    }
+
+    /**
+     * Writes a quoted string, escaping quotes, backslashes and control
+     * characters, and encoding the rest as UTF-8.
+     */
+    static void writeString(String s, HttpResponse out) {
+        int length = s.length();
+        // Plain ASCII is copied straight into the buffer, the first other character ends the fast path
+        byte[] buffer = out.reserve(length + 2);
+        int start = out.getBodyLength();
+        int p = start;
+        buffer[p++] = '"';
+        int i = 0;
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x20 || c >= 0x80 || c == '"' || c == '\\') {
+                break;
+            }
+            buffer[p++] = (byte) c;
+        }
+        if (i == length) {
+            buffer[p++] = '"';
+            out.advance(p - start);
+            return;
+        }
+        out.advance(p - start);
+        for (; i < length; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                out.writeByte(c);
+            } else if (c == '"' || c == '\\') {
+                out.writeByte('\\');
+                out.writeByte(c);
+            } else if (c < 0x20) {
+                writeControl(c, out);
+            } else if (c < 0x800) {
+                out.writeByte(0xC0 | c >> 6);
+                out.writeByte(0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                out.writeByte(0xF0 | cp >> 18);
+                out.writeByte(0x80 | cp >> 12 & 0x3F);
+                out.writeByte(0x80 | cp >> 6 & 0x3F);
+                out.writeByte(0x80 | cp & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate, replaced like String.getBytes does
+                out.writeByte('?');
+            } else {
+                out.writeByte(0xE0 | c >> 12);
+                out.writeByte(0x80 | c >> 6 & 0x3F);
+                out.writeByte(0x80 | c & 0x3F);
+            }
+        }
+        out.writeByte('"');
+    }
+
+    private static void writeControl(char c, HttpResponse out) {
+        out.writeByte('\\');
+        switch (c) {
+            case '\n' -> out.writeByte('n');
+            case '\r' -> out.writeByte('r');
+            case '\t' -> out.writeByte('t');
+            case '\b' -> out.writeByte('b');
+            case '\f' -> out.writeByte('f');
+            default -> {
+                out.writeByte('u');
+                out.writeByte('0');
+                out.writeByte('0');
+                out.writeByte(HEX[c >> 4]);
+                out.writeByte(HEX[c & 0xF]);
+            }
+        }
+    }
+
+    private static void writeLong(long value, HttpResponse out) {
+        if (value == Long.MIN_VALUE) {
+            out.write("-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            out.writeByte('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        byte[] buffer = out.reserve(digits);
+        int end = out.getBodyLength() + digits;
+        for (int p = end - 1; p >= end - digits; p--) {
+            buffer[p] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        out.advance(digits);
+    }
+
+    /**
+     * Tells whether a class belongs to the JDK, where getters are not meant as JSON properties.
+     */
+    private static boolean isPlatform(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")
+                || name.startsWith("sun.") || name.startsWith("com.sun.");
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Writes the properties of one application class. Each property has its
+     * name already encoded, with the separator in front, and an accessor typed
+     * after the declared property type: int, long, boolean and String
+     * properties are read without boxing and written without the type checks
+     * of {@link JsonWriter#write}, other properties go through (Object)Object.
+     */
+    private static final class ObjectWriter {
+        private static final byte OBJECT = 0;
+        private static final byte INT = 1;
+        private static final byte LONG = 2;
+        private static final byte BOOLEAN = 3;
+        private static final byte STRING = 4;
+
+        private final byte[][] names;
+        private final MethodHandle[] accessors;
+        private final byte[] kinds;
+        // Generic property types, for prepare
+        private final Type[] types;
+
+        private ObjectWriter() {
+            names = new byte[0][];
+            accessors = new MethodHandle[0];
+            kinds = new byte[0];
+            types = new Type[0];
+        }
+
+        ObjectWriter(Class<?> type) {
+            // Sorted by name when the class is not a record, so the output does not depend on reflection order
+            Map<String, Object> members = new TreeMap<>();
+            List<String> order = new ArrayList<>();
+            if (type.isRecord()) {
+                for (RecordComponent component : type.getRecordComponents()) {
+                    members.put(component.getName(), component.getAccessor());
+                    order.add(component.getName());
+                }
+            } else {
+                for (Method m : type.getMethods()) {
+                    String property = propertyName(m);
+                    if (property != null) {
+                        members.put(property, m);
+                    }
+                }
+                for (Field f : type.getFields()) {
+                    if (!Modifier.isStatic(f.getModifiers())) {
+                        members.putIfAbsent(f.getName(), f);
+                    }
+                }
+                order.addAll(members.keySet());
+            }
+            names = new byte[order.size()][];
+            accessors = new MethodHandle[order.size()];
+            kinds = new byte[order.size()];
+            types = new Type[order.size()];
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            for (int i = 0; i < order.size(); i++) {
+                String name = order.get(i);
+                Object member = members.get(name);
+                // Java names never need escaping
+                names[i] = ((i == 0 ? "{\"" : ",\"") + name + "\":").getBytes(StandardCharsets.UTF_8);
+                try {
+                    MethodHandle accessor;
+                    if (member instanceof Method m) {
+                        m.trySetAccessible();
+                        accessor = lookup.unreflect(m);
+                        types[i] = m.getGenericReturnType();
+                    } else {
+                        Field f = (Field) member;
+                        f.trySetAccessible();
+                        accessor = lookup.unreflectGetter(f);
+                        types[i] = f.getGenericType();
+                    }
+                    kinds[i] = kind(accessor.type().returnType());
+                    Class<?> returned = switch (kinds[i]) {
+                        case INT -> int.class;
+                        case LONG -> long.class;
+                        case BOOLEAN -> boolean.class;
+                        case STRING -> String.class;
+                        default -> Object.class;
+                    };
+                    accessors[i] = accessor.asType(MethodType.methodType(returned, Object.class));
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Cannot serialize " + type.getName() + "." + name, e);
+                }
+            }
+        }
+
+        /**
+         * Gets the property read by a public getter: getName() or, for booleans, isName().
+         * @return the property name, or null if the method is not a getter
+         */
+        private static String propertyName(Method m) {
+            if (Modifier.isStatic(m.getModifiers()) || m.getParameterCount() != 0 || m.getDeclaringClass() == Object.class) {
+                return null;
+            }
+            String name = m.getName();
+            int prefix;
+            if (name.startsWith("get") && m.getReturnType() != void.class) {
+                prefix = 3;
+            } else if (name.startsWith("is") && m.getReturnType() == boolean.class) {
+                prefix = 2;
+            } else {
+                return null;
+            }
+            if (name.length() == prefix) {
+                return null;
+            }
+            return Character.toLowerCase(name.charAt(prefix)) + name.substring(prefix + 1);
+        }
+
+        private static byte kind(Class<?> type) {
+            if (type == int.class || type == short.class || type == byte.class) {
+                return INT;
+            } else if (type == long.class) {
+                return LONG;
+            } else if (type == boolean.class) {
+                return BOOLEAN;
+            } else if (type == String.class) {
+                return STRING;
+            }
+            return OBJECT;
+        }
+
+        void write(Object value, HttpResponse out, int depth) {
+            if (names.length == 0) {
+                out.write(EMPTY_OBJECT);
+                return;
+            }
+            try {
+                for (int i = 0; i < names.length; i++) {
+                    out.write(names[i]);
+                    MethodHandle accessor = accessors[i];
+                    switch (kinds[i]) {
+                        case INT -> writeLong((int) accessor.invokeExact(value), out);
+                        case LONG -> writeLong((long) accessor.invokeExact(value), out);
+                        case BOOLEAN -> out.write((boolean) accessor.invokeExact(value) ? TRUE : FALSE);
+                        case STRING -> {
+                            String s = (String) accessor.invokeExact(value);
+                            if (s == null) {
+                                out.write(NULL);
+                            } else {
+                                writeString(s, out);
+                            }
+                        }
+                        default -> JsonWriter.write((Object) accessor.invokeExact(value), out, depth);
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Getter failed while writing JSON", e);
+            }
+            out.writeByte('}');
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in the style of HdrHistogram. Values are kept in
+ * microseconds in log-linear buckets: four linear sub-buckets per power of two,
+ * so any recorded value is known within 25%. Bucket bounds are inclusive, like
+ * Prometheus {@code le} buckets: a value of exactly 2^e microseconds counts under
+ * the bound 2^e. Each bucket is a LongAdder, which
+ * keeps concurrent recordings on separate cells instead of one contended counter.
+ *
+ * @author daniel.aldana-b
+ */
+final class LatencyHistogram {
+    private static final int SUB_BITS = 2;
+    private static final int SUB = 1 << SUB_BITS;
+    // 2^37 microseconds is about 38 hours, slower requests share the last bucket
+    private static final int MAX_EXPONENT = 36;
+
+    private final LongAdder[] counts = new LongAdder[(MAX_EXPONENT - SUB_BITS + 2) * SUB];
+    private final LongAdder sumNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records one measurement.
+     * @param nanos the duration in nanoseconds
+     */
+    void record(long nanos) {
+        // Rounded up and shifted by one so [lower, upper) buckets hold (lower, upper] durations
+        long micros = (nanos + 999) / 1000;
+        counts[index(micros - 1)].increment();
+        sumNanos.add(nanos);
+    }
+
+    static int index(long micros) {
+        if (micros < SUB) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return (MAX_EXPONENT - SUB_BITS + 2) * SUB - 1;
+        }
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB - 1);
+        return (exponent - SUB_BITS + 1) * SUB + sub;
+    }
+
+    /**
+     * Counts the measurements up to a power of two.
+     * @param exponent the bound is 2^exponent microseconds, from 2 to 37
+     * @return the number of measurements less than or equal to the bound
+     */
+    long countAtMost(int exponent) {
+        int end = Math.min(counts.length, (exponent - SUB_BITS + 1) * SUB);
+        long total = 0;
+        for (int i = 0; i < end; i++) {
+            total += counts[i].sum();
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of measurements.
+     * @return the total count
+     */
+    long count() {
+        return countAtMost(MAX_EXPONENT + 2);
+    }
+
+    /**
+     * Gets the sum of the measurements.
+     * @return the total in nanoseconds
+     */
+    long sumNanos() {
+        return sumNanos.sum();
+    }
+}
@@ -0,0 +1,192 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request metrics exposed in the Prometheus text format.
+ * Requests are grouped by route template rather than by raw path, so the
+ * number of series stays bounded. Recording a request is a few LongAdder
+ * increments after two lock-free map lookups; all the formatting happens
+ * when /metrics is scraped.
+ *
+ * @author daniel.aldana-b
+ */
+public final class Metrics {
+    /** Route label for requests answered from the static files */
+    public static final String STATIC = "static";
+    /** Route label for requests rejected before routing */
+    public static final String INVALID = "invalid";
+    /** Path where the metrics are served */
+    public static final String PATH = "/metrics";
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    // Bucket bounds exposed to Prometheus: 2^5 to 2^25 microseconds, about 32 us to 33 s
+    private static final int FIRST_BUCKET = 5;
+    private static final int LAST_BUCKET = 25;
+    private static final String[] BUCKET_LABELS = new String[LAST_BUCKET + 1];
+
+    static {
+        for (int e = FIRST_BUCKET; e <= LAST_BUCKET; e++) {
+            BUCKET_LABELS[e] = BigDecimal.valueOf(1L << e).movePointLeft(6).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    /**
+     * Counters of one route.
+     */
+    private static final class RouteMetrics {
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        final LongAdder bytes = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    /** Rejection reason when the worker queue is full */
+    public static final String QUEUE_FULL = "queue_full";
+    /** Rejection reason when the adaptive concurrency limit is reached */
+    public static final String CONCURRENCY_LIMIT = "concurrency_limit";
+
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> rejected = new ConcurrentHashMap<>();
+
+    /**
+     * Records a served request.
+     *
+     * @param route  the route template or one of the fixed labels
+     * @param status the response status code, 0 if none was written
+     * @param bytes  the response size including headers
+     * @param nanos  the time spent serving the request
+     */
+    public void record(String route, int status, long bytes, long nanos) {
+        RouteMetrics metrics = routes.get(route);
+        if (metrics == null) {
+            metrics = routes.computeIfAbsent(route, r -> new RouteMetrics());
+        }
+        LongAdder count = metrics.statuses.get(status);
+        if (count == null) {
+            count = metrics.statuses.computeIfAbsent(status, s -> new LongAdder());
+        }
+        count.increment();
+        metrics.bytes.add(bytes);
+        metrics.latency.record(nanos);
+    }
+
+    /**
+     * Records a connection or request shed with a 503.
+     * @param reason {@link #QUEUE_FULL} or {@link #CONCURRENCY_LIMIT}
+     */
+    public void recordRejected(String reason) {
+        rejected.computeIfAbsent(reason, r -> new LongAdder()).increment();
+    }
+
+    /**
+     * Gets the number of rejections for a reason.
+     * @param reason {@link #QUEUE_FULL} or {@link #CONCURRENCY_LIMIT}
+     * @return the rejection count
+     */
+    public long getRejected(String reason) {
+        LongAdder count = rejected.get(reason);
+        return count != null ? count.sum() : 0;
+    }
+
+    /**
+     * Renders every metric in the Prometheus text exposition format.
+     *
+     * @param executor    the worker executor, for queue depth and active workers, may be null
+     * @param staticFiles the static file cache, may be null
+     * @param accessLog   the access log, for its drop count, may be null
+     * @param limiter     the adaptive concurrency limiter, may be null
+     * @return the metrics page
+     */
+    public String render(ExecutorService executor, StaticFileCache staticFiles, AccessLog accessLog,
+                         ConcurrencyLimiter limiter) {
+        StringBuilder out = new StringBuilder(4096);
+        Map<String, RouteMetrics> sorted = new TreeMap<>(routes);
+
+        header(out, "http_requests_total", "counter", "Requests served, by route and status code.");
+        for (Map.Entry<String, RouteMetrics> route : sorted.entrySet()) {
+            for (Map.Entry<Integer, LongAdder> status : new TreeMap<>(route.getValue().statuses).entrySet()) {
+                out.append("http_requests_total{route=\"").append(escape(route.getKey()))
+                        .append("\",status=\"").append(status.getKey()).append("\"} ")
+                        .append(status.getValue().sum()).append('\n');
+            }
+        }
+
+        header(out, "http_response_bytes_total", "counter", "Response bytes sent, headers included.");
+        for (Map.Entry<String, RouteMetrics> route : sorted.entrySet()) {
+            out.append("http_response_bytes_total{route=\"").append(escape(route.getKey())).append("\"} ")
+                    .append(route.getValue().bytes.sum()).append('\n');
+        }
+
+        header(out, "http_request_duration_seconds", "histogram", "Time spent serving a request.");
+        for (Map.Entry<String, RouteMetrics> route : sorted.entrySet()) {
+            String label = escape(route.getKey());
+            LatencyHistogram latency = route.getValue().latency;
+            for (int e = FIRST_BUCKET; e <= LAST_BUCKET; e++) {
+                out.append("http_request_duration_seconds_bucket{route=\"").append(label)
+                        .append("\",le=\"").append(BUCKET_LABELS[e]).append("\"} ")
+                        .append(latency.countAtMost(e)).append('\n');
+            }
+            long count = latency.count();
+            out.append("http_request_duration_seconds_bucket{route=\"").append(label)
+                    .append("\",le=\"+Inf\"} ").append(count).append('\n');
+            out.append("http_request_duration_seconds_sum{route=\"").append(label).append("\"} ")
+                    .append(latency.sumNanos() / 1e9).append('\n');
+            out.append("http_request_duration_seconds_count{route=\"").append(label).append("\"} ")
+                    .append(count).append('\n');
+        }
+
+        header(out, "http_rejected_total", "counter", "Connections or requests shed with a 503.");
+        for (String reason : new String[] {QUEUE_FULL, CONCURRENCY_LIMIT}) {
+            out.append("http_rejected_total{reason=\"").append(reason).append("\"} ")
+                    .append(getRejected(reason)).append('\n');
+        }
+        if (limiter != null) {
+            gauge(out, "http_concurrency_limit", "Current adaptive concurrency limit.", limiter.getLimit());
+            gauge(out, "http_inflight_requests", "Requests holding a concurrency slot.", limiter.getInFlight());
+        }
+        if (executor instanceof ThreadPoolExecutor pool) {
+            gauge(out, "http_executor_active_workers", "Workers running a task.", pool.getActiveCount());
+            gauge(out, "http_executor_queued_tasks", "Tasks waiting for a worker.", pool.getQueue().size());
+        } else if (executor instanceof ThreadPerTaskExecutor perTask) {
+            gauge(out, "http_executor_active_workers", "Workers running a task.", perTask.getActiveCount());
+            gauge(out, "http_executor_queued_tasks", "Tasks waiting for a worker.", perTask.getQueuedCount());
+        }
+        if (staticFiles != null) {
+            counter(out, "static_cache_hits_total", "Static files served from memory.", staticFiles.getHits());
+            counter(out, "static_cache_misses_total", "Static files loaded from the classpath.", staticFiles.getMisses());
+            counter(out, "static_cache_evictions_total", "Static files dropped to stay under the size bound.",
+                    staticFiles.getEvictions());
+            gauge(out, "static_cache_bytes", "Size of the cached static files.", staticFiles.getCachedBytes());
+        }
+        if (accessLog != null) {
+            counter(out, "access_log_dropped_total", "Access log records lost because the buffer was full.",
+                    accessLog.getDropped());
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n')
+                .append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, "gauge", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, "counter", help);
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,621 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Selector based engine for the HttpServer.
+ * One acceptor thread hands every accepted channel to one of N event loops.
+ * The event loops do non-blocking reads and writes and only dispatch complete
+ * requests to the worker executor, so idle connections cost a buffer and a
+ * selection key instead of a thread. A request body is received by the event
+ * loop, up to MAX_BODY_SIZE, before the request is dispatched.
+ *
+ * @author daniel.aldana-b
+ */
+public class NioEngine {
+    private static final int INITIAL_BUFFER = 1024;
+
+    private final ServerConfig config;
+    private final ExecutorService workers;
+    private final EventLoop[] loops;
+    private volatile boolean running = true;
+    private Selector acceptSelector;
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * Creates a new engine.
+     *
+     * @param port       the port to listen on
+     * @param eventLoops the number of selector threads, use 0 for one per core
+     * @param workers    the executor that runs the request handlers
+     */
+    public NioEngine(int port, int eventLoops, ExecutorService workers) {
+        this(ServerConfig.of(Map.of("server.port", Integer.toString(port),
+                "server.event.loops", Integer.toString(eventLoops))), workers);
+    }
+
+    /**
+     * Creates a new engine with the port, event loops, socket options, limits
+     * and timeouts of a configuration.
+     *
+     * @param config  the server settings
+     * @param workers the executor that runs the request handlers
+     */
+    public NioEngine(ServerConfig config, ExecutorService workers) {
+        this.config = config;
+        this.workers = workers;
+        int n = config.getEventLoops() > 0 ? config.getEventLoops() : Runtime.getRuntime().availableProcessors();
+        this.loops = new EventLoop[n];
+    }
+
+    /**
+     * Opens the server channel and runs the accept loop on the calling thread
+     * until {@link #stop()} is called.
+     *
+     * @throws IOException if the server channel cannot be opened
+     */
+    public void start() throws IOException {
+        serverChannel = ServerSocketChannel.open();
+        config.applyToServer(serverChannel);
+        serverChannel.bind(new InetSocketAddress(config.getPort()), config.getBacklog());
+        serverChannel.configureBlocking(false);
+        acceptSelector = Selector.open();
+        serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop(Selector.open());
+            Thread t = new Thread(loops[i], "HttpServer-EventLoop-" + i);
+            t.setDaemon(true);
+            t.start();
+        }
+
+        int next = 0;
+        try {
+            while (running) {
+                acceptSelector.select();
+                Iterator<SelectionKey> keys = acceptSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                    SocketChannel channel;
+                    while ((channel = serverChannel.accept()) != null) {
+                        channel.configureBlocking(false);
+                        config.applyToConnection(channel);
+                        loops[next].register(channel);
+                        next = (next + 1) % loops.length;
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // Expected during shutdown
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Stops accepting connections and closes every event loop.
+     */
+    public void stop() {
+        running = false;
+        if (acceptSelector != null) {
+            acceptSelector.wakeup();
+        }
+    }
+
+    private void close() throws IOException {
+        for (EventLoop loop : loops) {
+            if (loop != null) {
+                loop.shutdown();
+            }
+        }
+        if (acceptSelector != null) {
+            acceptSelector.close();
+        }
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+
+    /**
+     * Builds the response for a complete request head.
+     * Runs on a worker thread and never touches the channel.
+     */
+    static Response process(HttpRequestParser head, boolean keepAlive) {
+        return process(head, BodyInputStream.EMPTY, keepAlive, new Response());
+    }
+
+    private static Response process(HttpRequestParser head, BodyInputStream body, boolean keepAlive, Response output) {
+        try {
+            output.close = !HttpServer.serve(head, body, output, keepAlive);
+        } catch (Exception e) {
+            // The response may be incomplete, the connection cannot be reused
+            output.failed = true;
+            Logger.getLogger(NioEngine.class.getName()).log(Level.SEVERE, null, e);
+        }
+        return output;
+    }
+
+    /**
+     * Hands a chunk of a streaming response to the event loop.
+     */
+    @FunctionalInterface
+    private interface ChunkWriter {
+        void send(ByteBuffer chunk) throws IOException;
+    }
+
+    /**
+     * A response built in memory by a worker. A file body is not read: the
+     * region is kept and the event loop sends it with transferTo after the
+     * buffered bytes. Streaming bodies send their chunks early through
+     * flushChunk, which waits until the event loop has written them.
+     */
+    static final class Response extends ByteArrayOutputStream implements FileRegionSink, ChunkSink {
+        FileChannel file;
+        long position;
+        long remaining;
+        // Set when the worker failed and the bytes may not be a whole response
+        boolean failed;
+        // Set when the response is whole but the connection must be closed after it
+        boolean close;
+        // Null when the response is not attached to a connection
+        private ChunkWriter chunks;
+
+        @Override
+        public void flushChunk() throws IOException {
+            if (chunks == null || count == 0) {
+                return;
+            }
+            ByteBuffer chunk = ByteBuffer.wrap(toByteArray());
+            reset();
+            chunks.send(chunk);
+        }
+
+        @Override
+        public void sendFile(FileChannel file, long position, long count) throws IOException {
+            if (this.file != null) {
+                file.close();
+                throw new IOException("Only one file region per response");
+            }
+            this.file = file;
+            this.position = position;
+            this.remaining = count;
+        }
+
+        /**
+         * Wraps the buffered bytes without copying them.
+         * @return a buffer ready to be written
+         */
+        ByteBuffer head() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    /**
+     * Per connection state owned by a single event loop.
+     */
+    private static final class Connection {
+        ByteBuffer in = ByteBuffer.allocate(INITIAL_BUFFER);
+        ByteBuffer out;
+        // File region sent after out, owned by the connection until it is written
+        Response body;
+        final HttpRequestParser parser;
+        // End of the head being received or served, -1 until the head is complete
+        int headEnd = -1;
+        // Body framing of the current request, see BodyInputStream.length
+        long bodyLength;
+        // Finds the end of a chunked body, null for other framings
+        BodyInputStream.Chunks chunks;
+        // End of the request being served, the bytes after it belong to the next request
+        int requestEnd;
+        // True while a worker owns the current request
+        boolean busy;
+        // Completed once the chunk in out is written, while a worker streams a response
+        CompletableFuture<Void> chunkSent;
+        boolean keepAlive;
+        int served;
+        long lastActive = System.currentTimeMillis();
+
+        Connection(HttpRequestParser parser) {
+            this.parser = parser;
+        }
+    }
+
+    /**
+     * A selector thread. Registrations and finished responses from other
+     * threads are queued and applied on the loop thread after a wakeup.
+     */
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> pendingRegistrations = new ConcurrentLinkedQueue<>();
+        private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+        // Set once the loop has closed its connections, tasks then run on the caller
+        private volatile boolean closed;
+
+        EventLoop(Selector selector) {
+            this.selector = selector;
+        }
+
+        void register(SocketChannel channel) {
+            pendingRegistrations.add(channel);
+            selector.wakeup();
+        }
+
+        void execute(Runnable task) {
+            pendingTasks.add(task);
+            if (closed) {
+                // No loop left to run it, the tasks only see invalid keys and fail fast
+                runPendingTasks();
+            } else {
+                selector.wakeup();
+            }
+        }
+
+        void shutdown() {
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            long lastSweep = System.currentTimeMillis();
+            try {
+                while (running) {
+                    selector.select(1000);
+                    drainQueues();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        try {
+                            if (key.isReadable()) {
+                                read(key);
+                            } else if (key.isWritable()) {
+                                write(key);
+                            }
+                        } catch (IOException e) {
+                            closeQuietly(key);
+                        }
+                    }
+                    long now = System.currentTimeMillis();
+                    if (now - lastSweep >= 1000) {
+                        closeIdle(now);
+                        lastSweep = now;
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                if (running) {
+                    Logger.getLogger(NioEngine.class.getName()).log(Level.SEVERE, null, e);
+                }
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    closeQuietly(key);
+                }
+                try {
+                    selector.close();
+                } catch (IOException ignored) {
+                    // Shutting down anyway
+                }
+                // Workers still streaming or finishing a response must not wait for the loop
+                closed = true;
+                runPendingTasks();
+            }
+        }
+
+        private void drainQueues() {
+            SocketChannel channel;
+            while ((channel = pendingRegistrations.poll()) != null) {
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, new Connection(config.newParser()));
+                } catch (IOException e) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                        // Nothing else to release
+                    }
+                }
+            }
+            runPendingTasks();
+        }
+
+        private void runPendingTasks() {
+            Runnable task;
+            while ((task = pendingTasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        /**
+         * Closes connections that made no progress for their timeout: the idle
+         * timeout while waiting for a request, the read timeout once a head has
+         * started and the write timeout while a response is stuck.
+         */
+        private void closeIdle(long now) {
+            for (SelectionKey key : selector.keys()) {
+                Connection conn = (Connection) key.attachment();
+                if (conn == null) {
+                    continue;
+                }
+                long timeout;
+                if (!conn.busy) {
+                    timeout = conn.in.position() == 0 ? config.getIdleTimeoutMs() : config.getReadTimeoutMs();
+                } else if (conn.out != null) {
+                    timeout = config.getWriteTimeoutMs();
+                } else {
+                    // A worker is still building the response
+                    continue;
+                }
+                if (now - conn.lastActive > timeout) {
+                    closeQuietly(key);
+                }
+            }
+        }
+
+        private void read(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection conn = (Connection) key.attachment();
+            if (!conn.in.hasRemaining()) {
+                // Heads and bodies over their limits are rejected, and ServerConfig caps the body
+                // at NIO_MAX_BODY_SIZE, so growth stays well below the largest array
+                ByteBuffer bigger = ByteBuffer.allocate(conn.in.capacity() * 2);
+                conn.in.flip();
+                bigger.put(conn.in);
+                conn.in = bigger;
+            }
+            int n = channel.read(conn.in);
+            if (n < 0) {
+                closeQuietly(key);
+                return;
+            }
+            conn.lastActive = System.currentTimeMillis();
+            dispatch(key);
+        }
+
+        /**
+         * Hands the next complete request in the buffer to a worker. Bytes after
+         * the request stay in the buffer so pipelined requests are served in order.
+         */
+        private void dispatch(SelectionKey key) throws IOException {
+            Connection conn = (Connection) key.attachment();
+            try {
+                if (conn.headEnd < 0 && !receiveHead(key, conn)) {
+                    return;
+                }
+                conn.requestEnd = requestEnd(conn);
+            } catch (HttpParseException e) {
+                Response error = new Response();
+                try {
+                    HttpServer.writeError(error, e);
+                } catch (IOException ignored) {
+                    // Writing to memory does not fail
+                }
+                conn.keepAlive = false;
+                conn.busy = true;
+                respond(key, error);
+                return;
+            }
+            if (conn.requestEnd < 0) {
+                return;
+            }
+            conn.served++;
+            conn.keepAlive = conn.served < config.getMaxKeepAliveRequests()
+                    && HttpServer.isKeepAlive(conn.parser);
+            conn.busy = true;
+            boolean keepAlive = conn.keepAlive;
+            // Stop reading until the response has been written, the worker reads the head from the buffer
+            key.interestOps(0);
+            Response response = new Response();
+            response.chunks = chunk -> push(key, chunk);
+            // The whole body is in the buffer, the worker reads it without touching the channel
+            ConnectionInput input = new ConnectionInput(null, conn.in.array(), conn.requestEnd);
+            input.startBody(conn.headEnd);
+            BodyInputStream body = BodyInputStream.open(conn.parser, input, config.getMaxBodySize(), null);
+            Runnable task = () -> {
+                process(conn.parser, body, keepAlive, response);
+                execute(() -> respond(key, response));
+            };
+            try {
+                // The loop must never block: a full thread-per-task executor sheds the request instead of waiting
+                if (workers instanceof ThreadPerTaskExecutor perTask) {
+                    perTask.tryExecute(task);
+                } else {
+                    workers.execute(task);
+                }
+            } catch (RejectedExecutionException e) {
+                // Workers are saturated, shed the request with a 503
+                HttpServer.metrics.recordRejected(Metrics.QUEUE_FULL);
+                Response overloaded = new Response();
+                overloaded.writeBytes(HttpServer.SERVICE_UNAVAILABLE);
+                conn.keepAlive = false;
+                respond(key, overloaded);
+            }
+        }
+
+        /**
+         * Parses the head received so far and reads the framing of its body. A client
+         * that waits for 100 Continue gets it here, before the body is received.
+         * @return false if more bytes are needed
+         */
+        private boolean receiveHead(SelectionKey key, Connection conn) throws IOException {
+            int headEnd = conn.parser.parse(conn.in.array(), 0, conn.in.position());
+            if (headEnd < 0) {
+                return false;
+            }
+            conn.bodyLength = BodyInputStream.length(conn.parser, config.getMaxBodySize());
+            conn.chunks = conn.bodyLength == BodyInputStream.CHUNKED
+                    ? new BodyInputStream.Chunks(config.getMaxBodySize()) : null;
+            conn.headEnd = headEnd;
+            if (conn.bodyLength != 0 && conn.in.position() == headEnd && BodyInputStream.expectsContinue(conn.parser)) {
+                ByteBuffer interim = ByteBuffer.wrap(BodyInputStream.CONTINUE);
+                ((SocketChannel) key.channel()).write(interim);
+                if (interim.hasRemaining()) {
+                    // A fresh connection always has room for it
+                    throw new IOException("Could not send 100 Continue");
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Finds the end of the request whose head was received.
+         * @return the offset just past the body, or -1 if more bytes are needed
+         */
+        private int requestEnd(Connection conn) throws HttpParseException {
+            if (conn.chunks != null) {
+                return conn.chunks.scan(conn.in.array(), conn.headEnd, conn.in.position());
+            }
+            long end = conn.headEnd + conn.bodyLength;
+            return conn.in.position() >= end ? (int) end : -1;
+        }
+
+        /**
+         * Sends a chunk of a streaming response. Runs on the worker and blocks
+         * until the chunk is written, so a slow client slows the producer down.
+         * A stalled write is closed by closeIdle after the write timeout.
+         */
+        private void push(SelectionKey key, ByteBuffer chunk) throws IOException {
+            CompletableFuture<Void> sent = new CompletableFuture<>();
+            execute(() -> sendChunk(key, chunk, sent));
+            try {
+                sent.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while streaming");
+            } catch (ExecutionException e) {
+                throw new IOException("Connection closed while streaming", e.getCause());
+            }
+        }
+
+        private void sendChunk(SelectionKey key, ByteBuffer chunk, CompletableFuture<Void> sent) {
+            if (!key.isValid()) {
+                sent.completeExceptionally(new IOException("Connection closed"));
+                return;
+            }
+            Connection conn = (Connection) key.attachment();
+            conn.out = chunk;
+            conn.chunkSent = sent;
+            conn.lastActive = System.currentTimeMillis();
+            try {
+                write(key);
+            } catch (IOException e) {
+                closeQuietly(key);
+            }
+        }
+
+        private void respond(SelectionKey key, Response response) {
+            if (!key.isValid()) {
+                closeFile(response);
+                return;
+            }
+            Connection conn = (Connection) key.attachment();
+            if (response.failed || response.close) {
+                conn.keepAlive = false;
+            }
+            conn.out = response.head();
+            conn.body = response.file != null ? response : null;
+            conn.lastActive = System.currentTimeMillis();
+            try {
+                write(key);
+            } catch (IOException e) {
+                closeQuietly(key);
+            }
+        }
+
+        private void write(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection conn = (Connection) key.attachment();
+            long written = channel.write(conn.out);
+            if (!conn.out.hasRemaining() && conn.body != null) {
+                Response body = conn.body;
+                long n = body.file.transferTo(body.position, body.remaining, channel);
+                written += n;
+                body.position += n;
+                body.remaining -= n;
+                if (body.remaining == 0) {
+                    closeFile(body);
+                    conn.body = null;
+                } else if (n == 0 && body.position >= body.file.size()) {
+                    throw new IOException("File truncated while sending");
+                }
+            }
+            if (conn.out.hasRemaining() || conn.body != null) {
+                if (written > 0) {
+                    conn.lastActive = System.currentTimeMillis();
+                }
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (conn.chunkSent != null) {
+                // A streamed chunk is out, the worker produces the next one
+                CompletableFuture<Void> sent = conn.chunkSent;
+                conn.chunkSent = null;
+                conn.out = null;
+                key.interestOps(0);
+                sent.complete(null);
+            } else if (conn.keepAlive) {
+                conn.out = null;
+                conn.busy = false;
+                conn.in.flip();
+                conn.in.position(conn.requestEnd);
+                conn.in.compact();
+                conn.parser.reset();
+                conn.headEnd = -1;
+                conn.chunks = null;
+                conn.lastActive = System.currentTimeMillis();
+                key.interestOps(SelectionKey.OP_READ);
+                dispatch(key);
+            } else {
+                closeQuietly(key);
+            }
+        }
+
+        private void closeFile(Response response) {
+            if (response.file != null) {
+                try {
+                    response.file.close();
+                } catch (IOException ignored) {
+                    // Read-only channel, nothing is lost
+                }
+                response.file = null;
+            }
+        }
+
+        private void closeQuietly(SelectionKey key) {
+            Connection conn = (Connection) key.attachment();
+            if (conn != null && conn.body != null) {
+                closeFile(conn.body);
+                conn.body = null;
+            }
+            if (conn != null && conn.chunkSent != null) {
+                conn.chunkSent.completeExceptionally(new IOException("Connection closed"));
+                conn.chunkSent = null;
+            }
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException ignored) {
+                // The connection is gone either way
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package co.edu.escuelaing.microspringboot;
+
+/**
+ * Signals a request parameter that is missing or cannot be converted to the
+ * type declared by the controller method. The server answers 400 Bad Request
+ * with the message instead of calling the method.
+ *
+ * @author daniel.aldana-b
+ */
+public class ParameterBindingException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new exception.
+     * @param message a description of the problem, sent to the client
+     */
+    public ParameterBindingException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,161 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Converters from request parameter text to the declared parameter types.
+ * A converter is chosen once per parameter when the controller is loaded, so
+ * binding a request only runs the parse of the matching type. Supported types
+ * are String, int, long, double, boolean and their wrappers, enums, and
+ * Optional or List of any of them.
+ *
+ * @author daniel.aldana-b
+ */
+final class ParameterConverters {
+
+    /**
+     * Converts the text of one parameter value.
+     */
+    @FunctionalInterface
+    interface Converter {
+        /**
+         * @param name  the parameter name, for error messages
+         * @param value the text sent by the client, never null
+         * @return the converted value
+         * @throws ParameterBindingException if the text is not a valid value
+         */
+        Object convert(String name, String value);
+    }
+
+    private ParameterConverters() {
+    }
+
+    /**
+     * Chooses the converter of a single value type.
+     *
+     * @param type the parameter type, primitive or not
+     * @return the converter
+     * @throws IllegalStateException if the type is not supported
+     */
+    static Converter forType(Class<?> type) {
+        if (type == String.class) {
+            return (name, value) -> value;
+        }
+        if (type == int.class || type == Integer.class) {
+            return (name, value) -> {
+                try {
+                    return Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    throw invalid(name, value, "an integer");
+                }
+            };
+        }
+        if (type == long.class || type == Long.class) {
+            return (name, value) -> {
+                try {
+                    return Long.parseLong(value.trim());
+                } catch (NumberFormatException e) {
+                    throw invalid(name, value, "an integer");
+                }
+            };
+        }
+        if (type == double.class || type == Double.class) {
+            return (name, value) -> {
+                try {
+                    double d = Double.parseDouble(value.trim());
+                    if (!Double.isFinite(d)) {
+                        throw invalid(name, value, "a finite number");
+                    }
+                    return d;
+                } catch (NumberFormatException e) {
+                    throw invalid(name, value, "a number");
+                }
+            };
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return (name, value) -> {
+                String text = value.trim();
+                if (text.equalsIgnoreCase("true")) {
+                    return Boolean.TRUE;
+                }
+                if (text.equalsIgnoreCase("false")) {
+                    return Boolean.FALSE;
+                }
+                throw invalid(name, value, "true or false");
+            };
+        }
+        if (type.isEnum()) {
+            return enumConverter(type.asSubclass(Enum.class));
+        }
+        throw new IllegalStateException("Unsupported parameter type: " + type.getName());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Converter enumConverter(Class<? extends Enum> type) {
+        Enum<?>[] constants = type.getEnumConstants();
+        return (name, value) -> {
+            String text = value.trim();
+            for (Enum<?> constant : constants) {
+                if (constant.name().equalsIgnoreCase(text)) {
+                    return constant;
+                }
+            }
+            throw invalid(name, value, "one of " + List.of(constants));
+        };
+    }
+
+    /**
+     * Gets the element type of an Optional or List parameter.
+     *
+     * @param type the generic parameter type
+     * @return the type argument
+     * @throws IllegalStateException if the type argument is not a class
+     */
+    static Class<?> elementType(Type type) {
+        if (type instanceof ParameterizedType parameterized
+                && parameterized.getActualTypeArguments()[0] instanceof Class<?> element) {
+            return element;
+        }
+        throw new IllegalStateException("Unsupported parameter type: " + type.getTypeName());
+    }
+
+    /**
+     * Converts every value of a List parameter. A parameter can be repeated
+     * and each value can hold several elements separated by commas.
+     *
+     * @param converter the converter of the element type
+     * @param name      the parameter name
+     * @param values    the values sent by the client, empty elements such as in "1,,2" are skipped
+     * @return an unmodifiable list
+     */
+    static List<Object> convertAll(Converter converter, String name, List<String> values) {
+        List<Object> converted = new ArrayList<>();
+        for (String text : values) {
+            int start = 0;
+            while (start < text.length()) {
+                int comma = text.indexOf(',', start);
+                int end = comma < 0 ? text.length() : comma;
+                if (end > start) {
+                    converted.add(converter.convert(name, text.substring(start, end)));
+                }
+                start = end + 1;
+            }
+        }
+        return converted.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(converted);
+    }
+
+    static ParameterBindingException missing(String name) {
+        return new ParameterBindingException("Missing required parameter '" + name + "'");
+    }
+
+    private static ParameterBindingException invalid(String name, String value, String expected) {
+        String shown = value.length() > 64 ? value.substring(0, 64) + "..." : value;
+        return new ParameterBindingException(String.format(Locale.ROOT,
+                "Invalid value '%s' for parameter '%s', expected %s", shown, name, expected));
+    }
+}
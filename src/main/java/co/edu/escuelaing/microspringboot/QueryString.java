@@ -0,0 +1,173 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decoded query parameters, in the order they were sent.
+ * The raw query is read once from left to right: pairs are split on '&amp;',
+ * the name ends at the first '=', '+' becomes a space and %XX escapes are
+ * decoded as UTF-8. Repeated names keep every value, a pair without '='
+ * has an empty value. Malformed escapes are kept as they are.
+ * Names and values live in two arrays searched linearly, and only the first
+ * {@link #MAX_PARAMETERS} pairs are kept, so a query full of colliding names
+ * costs no more than one with distinct names.
+ *
+ * @author daniel.aldana-b
+ */
+final class QueryString {
+    // Pairs beyond this count are ignored
+    static final int MAX_PARAMETERS = 256;
+    static final QueryString EMPTY = new QueryString(new String[0], new String[0], 0);
+
+    private final String[] names;
+    private final String[] values;
+    private final int size;
+
+    private QueryString(String[] names, String[] values, int size) {
+        this.names = names;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Decodes a raw query.
+     * @param rawQuery the query as sent, without the '?', may be null
+     * @return the parameters
+     */
+    static QueryString parse(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return EMPTY;
+        }
+        int capacity = 1;
+        for (int i = 0; i < rawQuery.length(); i++) {
+            if (rawQuery.charAt(i) == '&') {
+                capacity++;
+            }
+        }
+        capacity = Math.min(capacity, MAX_PARAMETERS);
+        String[] names = new String[capacity];
+        String[] values = new String[capacity];
+        int size = 0;
+        int length = rawQuery.length();
+        int start = 0;
+        while (start <= length && size < capacity) {
+            int end = start;
+            int equals = -1;
+            char c;
+            while (end < length && (c = rawQuery.charAt(end)) != '&') {
+                if (c == '=' && equals < 0) {
+                    equals = end;
+                }
+                end++;
+            }
+            if (end > start && equals != start) {
+                // A pair like "=x" has no name and is skipped
+                int nameEnd = equals < 0 ? end : equals;
+                names[size] = decode(rawQuery, start, nameEnd);
+                values[size] = equals < 0 ? "" : decode(rawQuery, equals + 1, end);
+                size++;
+            }
+            start = end + 1;
+        }
+        return new QueryString(names, values, size);
+    }
+
+    /**
+     * Decodes one name or value. Text without '+' or '%' is returned as a
+     * substring without any other copy.
+     */
+    static String decode(String raw, int start, int end) {
+        int first = start;
+        while (first < end && raw.charAt(first) != '+' && raw.charAt(first) != '%') {
+            first++;
+        }
+        if (first == end) {
+            return raw.substring(start, end);
+        }
+        byte[] bytes = new byte[end - start];
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            char c = raw.charAt(i);
+            int escaped;
+            if (c == '+') {
+                bytes[n++] = ' ';
+            } else if (c == '%' && (escaped = hex(raw, i + 1, end)) >= 0) {
+                bytes[n++] = (byte) escaped;
+                i += 2;
+            } else if (c < 0x80) {
+                bytes[n++] = (byte) c;
+            } else {
+                // Characters the client left unencoded, the whole run keeps surrogate pairs together
+                int runEnd = i + 1;
+                while (runEnd < end && raw.charAt(runEnd) >= 0x80) {
+                    runEnd++;
+                }
+                byte[] encoded = raw.substring(i, runEnd).getBytes(StandardCharsets.UTF_8);
+                if (n + encoded.length > bytes.length) {
+                    bytes = Arrays.copyOf(bytes, n + encoded.length + (end - runEnd));
+                }
+                System.arraycopy(encoded, 0, bytes, n, encoded.length);
+                n += encoded.length;
+                i = runEnd - 1;
+            }
+        }
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the two hex digits of an escape.
+     * @return the byte value, or -1 if the escape is incomplete or not hex
+     */
+    private static int hex(String raw, int i, int end) {
+        if (i + 1 >= end) {
+            return -1;
+        }
+        int high = Character.digit(raw.charAt(i), 16);
+        int low = Character.digit(raw.charAt(i + 1), 16);
+        return high < 0 || low < 0 ? -1 : high << 4 | low;
+    }
+
+    /**
+     * Gets the first value of a parameter.
+     * @param name the decoded parameter name
+     * @return the value, empty for a name sent without '=', or null if the name was not sent
+     */
+    String get(String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets every value of a parameter, in the order they were sent.
+     * @param name the decoded parameter name
+     * @return the values, empty if the name was not sent
+     */
+    List<String> getAll(String name) {
+        List<String> all = null;
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                if (all == null) {
+                    all = new ArrayList<>(2);
+                }
+                all.add(values[i]);
+            }
+        }
+        return all == null ? Collections.emptyList() : Collections.unmodifiableList(all);
+    }
+
+    /**
+     * Gets the number of decoded pairs.
+     * @return the pair count, at most {@link #MAX_PARAMETERS}
+     */
+    int size() {
+        return size;
+    }
+}
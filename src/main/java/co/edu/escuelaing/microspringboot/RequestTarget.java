@@ -0,0 +1,204 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The request target of a request line, parsed once from the raw bytes.
+ * Replaces java.net.URI on the request path: the path is percent-decoded and
+ * normalized, the query is kept raw for {@link QueryString}. A path made only
+ * of plain characters is copied once and not otherwise touched.
+ * Normalization removes empty and "." segments and resolves ".." segments;
+ * a ".." above the root is rejected, so handlers never see a path that leaves
+ * the served directory. Origin form ("/a?b") and absolute form
+ * ("http://host/a?b") are accepted, a fragment is ignored.
+ *
+ * @author daniel.aldana-b
+ */
+public final class RequestTarget {
+    private final String path;
+    private final String query;
+
+    private RequestTarget(String path, String query) {
+        this.path = path;
+        this.query = query;
+    }
+
+    /**
+     * Parses a request target.
+     *
+     * @param b     the buffer holding the request line
+     * @param start the first byte of the target
+     * @param end   the byte after the target
+     * @return the parsed target
+     * @throws HttpParseException with 400 Bad Request if the target is malformed or leaves the root
+     */
+    static RequestTarget parse(byte[] b, int start, int end) throws HttpParseException {
+        if (start >= end) {
+            throw badRequest("Empty request target");
+        }
+        int p = b[start] == '/' ? start : absoluteFormPath(b, start, end);
+        int query = -1;
+        boolean escaped = false;
+        boolean dots = false;
+        for (int i = p; i < end; i++) {
+            int c = b[i] & 0xFF;
+            if (c <= ' ' || c == 0x7F) {
+                throw badRequest("Invalid character in request target");
+            }
+            if (c == '#') {
+                end = i;
+                break;
+            }
+            if (query >= 0) {
+                continue;
+            }
+            if (c == '?') {
+                query = i;
+            } else if (c == '%') {
+                escaped = true;
+            } else if (c == '/' && i + 1 < end && (b[i + 1] == '/' || b[i + 1] == '.')) {
+                // "//", "/." and "/.." need normalizing
+                dots = true;
+            }
+        }
+        int pathEnd = query < 0 ? end : query;
+        String path;
+        if (p == pathEnd) {
+            path = "/";
+        } else if (!escaped && !dots) {
+            path = new String(b, p, pathEnd - p, StandardCharsets.UTF_8);
+        } else {
+            path = normalize(decode(b, p, pathEnd));
+        }
+        String rawQuery = query < 0 ? null : new String(b, query + 1, end - query - 1, StandardCharsets.UTF_8);
+        return new RequestTarget(path, rawQuery);
+    }
+
+    /**
+     * Parses the path and query of a URI, for requests built without a request line.
+     * @param uri the URI, may be null
+     * @return the parsed target, or null if the URI is null or not a valid target
+     */
+    static RequestTarget of(URI uri) {
+        if (uri == null) {
+            return null;
+        }
+        String rawPath = uri.getRawPath();
+        String rawQuery = uri.getRawQuery();
+        byte[] target = ((rawPath == null || rawPath.isEmpty() ? "/" : rawPath)
+                + (rawQuery != null ? "?" + rawQuery : "")).getBytes(StandardCharsets.UTF_8);
+        try {
+            return parse(target, 0, target.length);
+        } catch (HttpParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Skips the scheme and authority of an absolute-form target.
+     * @return the index of the path, or of the query or end when there is no path
+     */
+    private static int absoluteFormPath(byte[] b, int start, int end) throws HttpParseException {
+        int colon = start;
+        while (colon < end && b[colon] != ':' && b[colon] != '/') {
+            colon++;
+        }
+        String scheme = new String(b, start, colon - start, StandardCharsets.US_ASCII);
+        if (colon + 2 >= end || b[colon] != ':' || b[colon + 1] != '/' || b[colon + 2] != '/'
+                || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))) {
+            throw badRequest("Invalid request target");
+        }
+        int p = colon + 3;
+        while (p < end && b[p] != '/' && b[p] != '?' && b[p] != '#') {
+            p++;
+        }
+        return p;
+    }
+
+    /**
+     * Decodes the %XX escapes of a path as UTF-8. '+' is a plain character in paths.
+     */
+    private static String decode(byte[] b, int start, int end) throws HttpParseException {
+        byte[] out = new byte[end - start];
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            if (b[i] != '%') {
+                out[n++] = b[i];
+                continue;
+            }
+            int high = i + 2 < end ? Character.digit(b[i + 1], 16) : -1;
+            int low = i + 2 < end ? Character.digit(b[i + 2], 16) : -1;
+            if (high < 0 || low < 0) {
+                throw badRequest("Invalid escape in request path");
+            }
+            int value = high << 4 | low;
+            if (value == 0) {
+                throw badRequest("Invalid escape in request path");
+            }
+            out[n++] = (byte) value;
+            i += 2;
+        }
+        return new String(out, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Removes empty and "." segments and resolves ".." segments, keeping a trailing slash.
+     */
+    static String normalize(String path) throws HttpParseException {
+        String[] segments = path.split("/", -1);
+        String[] kept = new String[segments.length];
+        int depth = 0;
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (depth == 0) {
+                    throw badRequest("Request path leaves the root");
+                }
+                depth--;
+                continue;
+            }
+            kept[depth++] = segment;
+        }
+        if (depth == 0) {
+            return "/";
+        }
+        StringBuilder normalized = new StringBuilder(path.length());
+        for (int i = 0; i < depth; i++) {
+            normalized.append('/').append(kept[i]);
+        }
+        String last = segments[segments.length - 1];
+        if (last.isEmpty() || last.equals(".") || last.equals("..")) {
+            normalized.append('/');
+        }
+        return normalized.toString();
+    }
+
+    private static HttpParseException badRequest(String message) {
+        return new HttpParseException("400 Bad Request", message);
+    }
+
+    /**
+     * Gets the decoded and normalized path.
+     * @return the path, always starting with '/', e.g. "/users/ana"
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the query as sent by the client.
+     * @return the raw query without the '?', or null if there is none
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    @Override
+    public String toString() {
+        return query != null ? path + "?" + query : path;
+    }
+}
@@ -0,0 +1,398 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.lang.reflect.Method;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Route table that maps path templates such as "/users/{id}" to handler methods.
+ * Templates are compiled into a trie of path segments, so a lookup walks the
+ * request path once and compares segments in place without splitting it.
+ * Matches for templates without variables are preallocated; variables are kept
+ * as offsets into the path and only turned into strings when they are read.
+ * Each handler is compiled into a {@link ServiceInvoker} when it is registered.
+ * A template can have one handler per request method; HEAD requests use the GET handler.
+ * <p>
+ * The table is also a {@code Map<String, Method>} keyed by template, so code
+ * that registers or inspects services as a map keeps working. GET routes are
+ * keyed by their template alone and the others by method and template, e.g.
+ * "POST /users". Writes are synchronized and publish new child arrays, lookups take no lock.
+ *
+ * @author daniel.aldana-b
+ */
+public class RouteTable extends AbstractMap<String, Method> {
+    // Request methods a handler can be mapped to, in the order of Node.matches
+    static final String[] METHODS = {"GET", "POST", "PUT", "DELETE"};
+
+    private final Map<String, Method> entries = new LinkedHashMap<>();
+    private volatile Node root = new Node("");
+
+    /**
+     * Registers a GET template, failing if another method already owns the same route.
+     * Two templates conflict when they only differ in the names of their variables.
+     *
+     * @param template the path template, e.g. "/users/{id}"
+     * @param handler  the method that serves the route
+     * @throws IllegalStateException if the route is already mapped to a different method
+     */
+    public void register(String template, Method handler) {
+        register("GET", template, handler);
+    }
+
+    /**
+     * Registers a template for a request method, failing if another method already owns the same route.
+     *
+     * @param httpMethod the request method, one of GET, POST, PUT or DELETE
+     * @param template   the path template, e.g. "/users/{id}"
+     * @param handler    the method that serves the route
+     * @throws IllegalStateException if the route is already mapped to a different method
+     * @throws IllegalArgumentException if the request method is not supported
+     */
+    public synchronized void register(String httpMethod, String template, Method handler) {
+        int index = methodIndex(httpMethod);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unsupported request method " + httpMethod);
+        }
+        Node node = find(template);
+        Match existing = node == null ? null : node.matches[index];
+        if (existing != null && existing.handler != null && !existing.handler.equals(handler)) {
+            throw new IllegalStateException("Ambiguous mapping " + key(index, template) + " -> " + describe(handler)
+                    + ": " + existing.template + " is already mapped to " + describe(existing.handler));
+        }
+        put(index, template, handler);
+    }
+
+    /**
+     * Finds the GET route for a request path.
+     *
+     * @param path the decoded request path, e.g. "/users/42"
+     * @return the match with its path variables, or null if no route matches
+     */
+    public Match match(String path) {
+        return match("GET", path);
+    }
+
+    /**
+     * Finds the route of a request method for a request path.
+     *
+     * @param httpMethod the request method, HEAD is served by GET routes
+     * @param path       the decoded request path, e.g. "/users/42"
+     * @return the match with its path variables, or null if no route matches
+     */
+    public Match match(String httpMethod, String path) {
+        int index = methodIndex(httpMethod);
+        if (index < 0 || path == null || !path.startsWith("/")) {
+            return null;
+        }
+        Node node = walk(root, path, 1, null, 0, index);
+        if (node == null) {
+            return null;
+        }
+        Match match = node.matches[index];
+        if (match.names.length == 0) {
+            return match;
+        }
+        // Second walk only for templates with variables, to record their offsets
+        int[] offsets = new int[match.names.length * 2];
+        walk(root, path, 1, offsets, 0, index);
+        return new Match(match, path, offsets);
+    }
+
+    /**
+     * Lists the request methods mapped for a path, to answer 405 with an Allow header
+     * when the path exists for other methods.
+     *
+     * @param path the decoded request path
+     * @return the methods, e.g. "GET, HEAD, POST", or null if no route matches the path
+     */
+    public String allowed(String path) {
+        if (path == null || !path.startsWith("/")) {
+            return null;
+        }
+        StringBuilder allow = new StringBuilder();
+        for (int i = 0; i < METHODS.length; i++) {
+            if (walk(root, path, 1, null, 0, i) != null) {
+                allow.append(allow.length() == 0 ? "" : ", ").append(METHODS[i]).append(i == 0 ? ", HEAD" : "");
+            }
+        }
+        return allow.length() == 0 ? null : allow.toString();
+    }
+
+    /**
+     * Walks the trie from a node, preferring literal segments over variables.
+     * @return the node whose route for the method matches the rest of the path, or null
+     */
+    private static Node walk(Node node, String path, int from, int[] offsets, int variable, int method) {
+        if (from > path.length()) {
+            return node.matches[method] != null ? node : null;
+        }
+        int end = path.indexOf('/', from);
+        if (end < 0) {
+            end = path.length();
+        }
+        int len = end - from;
+        for (Node child : node.children) {
+            if (child.segment.length() == len && path.regionMatches(from, child.segment, 0, len)) {
+                Node found = walk(child, path, end + 1, offsets, variable, method);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        Node child = node.variable;
+        if (child != null && len > 0) {
+            Node found = walk(child, path, end + 1, offsets, variable + 1, method);
+            if (found != null && offsets != null) {
+                offsets[variable * 2] = from;
+                offsets[variable * 2 + 1] = end;
+            }
+            return found;
+        }
+        return null;
+    }
+
+    private Node find(String template) {
+        Node node = root;
+        for (String segment : segments(template)) {
+            node = isVariable(segment) ? node.variable : node.child(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Maps a template to a handler, replacing the previous one. Keys with a
+     * method prefix such as "POST /users" map that method, plain templates map GET.
+     */
+    @Override
+    public synchronized Method put(String key, Method handler) {
+        int space = key.indexOf(' ');
+        int index = space < 0 ? 0 : methodIndex(key.substring(0, space));
+        if (index < 0) {
+            throw new IllegalArgumentException("Unsupported request method in " + key);
+        }
+        return put(index, key.substring(space + 1), handler);
+    }
+
+    private Method put(int method, String template, Method handler) {
+        Node node = root;
+        List<String> names = new ArrayList<>();
+        for (String segment : segments(template)) {
+            if (isVariable(segment)) {
+                names.add(segment.substring(1, segment.length() - 1));
+                if (node.variable == null) {
+                    node.variable = new Node(segment);
+                }
+                node = node.variable;
+            } else {
+                Node next = node.child(segment);
+                if (next == null) {
+                    next = new Node(segment);
+                    Node[] grown = Arrays.copyOf(node.children, node.children.length + 1);
+                    grown[grown.length - 1] = next;
+                    node.children = grown;
+                }
+                node = next;
+            }
+        }
+        Match previous = node.matches[method];
+        if (previous != null && !previous.template.equals(template)) {
+            // Same route under different variable names replaces the old template
+            entries.remove(key(method, previous.template));
+        }
+        Match[] matches = node.matches.clone();
+        matches[method] = new Match(template, handler, names.toArray(new String[0]));
+        node.matches = matches;
+        return entries.put(key(method, template), handler);
+    }
+
+    @Override
+    public synchronized Method remove(Object key) {
+        if (!entries.containsKey(key)) {
+            return null;
+        }
+        String text = (String) key;
+        int space = text.indexOf(' ');
+        Node node = find(text.substring(space + 1));
+        Match[] matches = node.matches.clone();
+        matches[space < 0 ? 0 : methodIndex(text.substring(0, space))] = null;
+        node.matches = matches;
+        return entries.remove(key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        entries.clear();
+        root = new Node("");
+    }
+
+    @Override
+    public synchronized Method get(Object template) {
+        return entries.get(template);
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object template) {
+        return entries.containsKey(template);
+    }
+
+    @Override
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns a read-only snapshot of the registered templates.
+     */
+    @Override
+    public synchronized Set<Entry<String, Method>> entrySet() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(entries)).entrySet();
+    }
+
+    /**
+     * Gets the position of a request method in Node.matches.
+     * @return the index, or -1 if no handler can be mapped to the method
+     */
+    private static int methodIndex(String httpMethod) {
+        return switch (httpMethod) {
+            case "GET", "HEAD" -> 0;
+            case "POST" -> 1;
+            case "PUT" -> 2;
+            case "DELETE" -> 3;
+            default -> -1;
+        };
+    }
+
+    private static String key(int method, String template) {
+        return method == 0 ? template : METHODS[method] + " " + template;
+    }
+
+    /**
+     * Lists the variables of a template.
+     * @param template the path template, e.g. "/users/{id}"
+     * @return the variable names, e.g. [id]
+     */
+    static List<String> variables(String template) {
+        List<String> names = new ArrayList<>();
+        for (String segment : segments(template)) {
+            if (isVariable(segment)) {
+                names.add(segment.substring(1, segment.length() - 1));
+            }
+        }
+        return names;
+    }
+
+    private static String[] segments(String template) {
+        String path = template.startsWith("/") ? template.substring(1) : template;
+        return path.split("/", -1);
+    }
+
+    private static boolean isVariable(String segment) {
+        return segment.length() > 2 && segment.startsWith("{") && segment.endsWith("}");
+    }
+
+    private static String describe(Method m) {
+        return m == null ? "null" : m.getDeclaringClass().getSimpleName() + "." + m.getName();
+    }
+
+    /**
+     * A node of the trie. Child and match arrays are replaced, never changed in place,
+     * so a lookup always sees a consistent array.
+     */
+    private static final class Node {
+        final String segment;
+        volatile Node[] children = new Node[0];
+        volatile Node variable;
+        // The route of each request method, indexed like METHODS
+        volatile Match[] matches = new Match[METHODS.length];
+
+        Node(String segment) {
+            this.segment = segment;
+        }
+
+        Node child(String segment) {
+            for (Node child : children) {
+                if (child.segment.equals(segment)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * The result of a lookup: the handler and the values of its path variables.
+     */
+    public static final class Match {
+        private final String template;
+        private final Method handler;
+        private final ServiceInvoker invoker;
+        private final String[] names;
+        private final String path;
+        private final int[] offsets;
+
+        Match(String template, Method handler, String[] names) {
+            this.template = template;
+            this.handler = handler;
+            this.invoker = handler != null ? new ServiceInvoker(handler) : null;
+            this.names = names;
+            this.path = null;
+            this.offsets = null;
+        }
+
+        Match(Match route, String path, int[] offsets) {
+            this.template = route.template;
+            this.handler = route.handler;
+            this.invoker = route.invoker;
+            this.names = route.names;
+            this.path = path;
+            this.offsets = offsets;
+        }
+
+        /**
+         * Gets the template that matched.
+         * @return the template, e.g. "/users/{id}"
+         */
+        public String getTemplate() {
+            return template;
+        }
+
+        /**
+         * Gets the method that serves the route.
+         * @return the handler method, may be null for placeholder entries
+         */
+        public Method getHandler() {
+            return handler;
+        }
+
+        /**
+         * Gets the invoker compiled for the handler when the route was registered.
+         * @return the invoker, or null for placeholder entries
+         */
+        public ServiceInvoker getInvoker() {
+            return invoker;
+        }
+
+        /**
+         * Gets the value of a path variable.
+         * @param name the variable name as written in the template
+         * @return the value from the request path, or null if the template has no such variable
+         */
+        public String getPathVariable(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return path.substring(offsets[i * 2], offsets[i * 2 + 1]);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardSocketOptions;
+import java.nio.channels.NetworkChannel;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.function.Function;
+
+/**
+ * Tuning settings of the server, resolved once at startup.
+ * Every setting has a property key such as {@code server.worker.queue} and an
+ * environment variable derived from it, {@code WORKER_QUEUE}. A value is taken
+ * from, in order: the system property, the environment variable, the
+ * {@code server.properties} file on the classpath, and the default. Invalid
+ * values are reported and replaced by the default, so the container can be
+ * sized per instance type without rebuilding the image.
+ *
+ * @author daniel.aldana-b
+ */
+public final class ServerConfig {
+    /** Classpath file read for settings that are not in the environment */
+    public static final String PROPERTIES_FILE = "server.properties";
+    private static final String PREFIX = "server.";
+    /** Largest MAX_BODY_SIZE with ENGINE=nio, which keeps the head and body in one heap buffer */
+    public static final long NIO_MAX_BODY_SIZE = 512L * 1024 * 1024;
+
+    private final Function<String, String> source;
+
+    private final int port;
+    private final String engine;
+    private final String execution;
+    private final int workers;
+    private final int workerQueue;
+    private final int maxConcurrency;
+    private final int eventLoops;
+    private final int backlog;
+    private final int readTimeoutMs;
+    private final int writeTimeoutMs;
+    private final int idleTimeoutMs;
+    private final int maxKeepAliveRequests;
+    private final boolean tcpNoDelay;
+    private final boolean reuseAddress;
+    private final boolean reusePort;
+    private final int receiveBuffer;
+    private final int sendBuffer;
+    private final int maxRequestLine;
+    private final int maxHeaderSize;
+    private final long maxBodySize;
+    private final long staticCacheBytes;
+    private final String staticDir;
+    private final String accessLogLevel;
+    private final double accessLogSample;
+    private final int accessLogBuffer;
+    private final String accessLogFile;
+    private final String concurrencyLimit;
+    private final int concurrencyLimitMin;
+    private final int concurrencyLimitMax;
+    private final int latencyTargetMs;
+
+    private ServerConfig(Function<String, String> source) {
+        this.source = source;
+        port = intValue("server.port", 35000);
+        engine = stringValue("server.engine", "blocking");
+        execution = stringValue("server.execution", "pool");
+        workers = Math.max(1, intValue("server.workers", 10));
+        workerQueue = Math.max(1, intValue("server.worker.queue", 1000));
+        maxConcurrency = intValue("server.max.concurrency", 1000);
+        eventLoops = intValue("server.event.loops", 0);
+        backlog = intValue("server.backlog", 0);
+        readTimeoutMs = intValue("server.read.timeout.ms", 30000);
+        writeTimeoutMs = intValue("server.write.timeout.ms", 30000);
+        idleTimeoutMs = intValue("server.idle.timeout.ms", 5000);
+        maxKeepAliveRequests = Math.max(1, intValue("server.max.keep.alive.requests", 100));
+        tcpNoDelay = booleanValue("server.tcp.nodelay", true);
+        reuseAddress = booleanValue("server.so.reuseaddr", true);
+        reusePort = booleanValue("server.so.reuseport", false);
+        receiveBuffer = intValue("server.so.rcvbuf", 0);
+        sendBuffer = intValue("server.so.sndbuf", 0);
+        maxRequestLine = intValue("server.max.request.line", HttpRequestParser.MAX_REQUEST_LINE);
+        maxHeaderSize = intValue("server.max.header.size", HttpRequestParser.MAX_HEAD_SIZE);
+        maxBodySize = bodySizeValue();
+        staticCacheBytes = longValue("server.static.cache.bytes", 8L * 1024 * 1024);
+        staticDir = stringValue("server.static.dir", null);
+        accessLogLevel = stringValue("server.access.log.level", "INFO");
+        accessLogSample = Math.min(1, Math.max(0, doubleValue("server.access.log.sample", 1)));
+        accessLogBuffer = intValue("server.access.log.buffer", 8192);
+        accessLogFile = stringValue("server.access.log.file", null);
+        concurrencyLimit = stringValue("server.concurrency.limit", "off");
+        concurrencyLimitMin = intValue("server.concurrency.limit.min", 4);
+        concurrencyLimitMax = intValue("server.concurrency.limit.max", 1000);
+        latencyTargetMs = intValue("server.latency.target.ms", 200);
+    }
+
+    /**
+     * Resolves the settings from system properties, the environment and the
+     * classpath properties file.
+     * @return the configuration
+     */
+    public static ServerConfig load() {
+        Properties file = new Properties();
+        try (InputStream in = ServerConfig.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE)) {
+            if (in != null) {
+                file.load(in);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not read " + PROPERTIES_FILE + " using the environment and defaults.");
+        }
+        return new ServerConfig(key -> {
+            String value = System.getProperty(key);
+            if (value == null) {
+                value = System.getenv(environmentName(key));
+            }
+            return value != null ? value : file.getProperty(key);
+        });
+    }
+
+    /**
+     * Builds a configuration from explicit values, ignoring the environment.
+     * @param values settings by property key, e.g. "server.port"
+     * @return the configuration, with defaults for the missing keys
+     */
+    public static ServerConfig of(Map<String, String> values) {
+        Map<String, String> copy = new HashMap<>(values);
+        return new ServerConfig(copy::get);
+    }
+
+    /**
+     * Gets the environment variable name of a property key.
+     * @param key the property key, e.g. "server.worker.queue"
+     * @return the variable name, e.g. "WORKER_QUEUE"
+     */
+    static String environmentName(String key) {
+        return key.substring(PREFIX.length()).replace('.', '_').toUpperCase(Locale.ROOT);
+    }
+
+    private String stringValue(String key, String defaultValue) {
+        String value = source.apply(key);
+        return value != null && !value.isBlank() ? value.trim() : defaultValue;
+    }
+
+    private int intValue(String key, int defaultValue) {
+        String value = stringValue(key, null);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                System.err.println("Variable " + environmentName(key) + " is not a number using default value "
+                        + defaultValue + ".");
+            }
+        }
+        return defaultValue;
+    }
+
+    private long longValue(String key, long defaultValue) {
+        String value = stringValue(key, null);
+        if (value != null) {
+            try {
+                return Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                System.err.println("Variable " + environmentName(key) + " is not a number using default value "
+                        + defaultValue + ".");
+            }
+        }
+        return defaultValue;
+    }
+
+    private long bodySizeValue() {
+        long value = longValue("server.max.body.size", 10L * 1024 * 1024);
+        if (engine.equalsIgnoreCase("nio") && value > NIO_MAX_BODY_SIZE) {
+            System.err.println("Variable " + environmentName("server.max.body.size") + " is over the nio engine limit using "
+                    + NIO_MAX_BODY_SIZE + ".");
+            return NIO_MAX_BODY_SIZE;
+        }
+        return value;
+    }
+
+    private double doubleValue(String key, double defaultValue) {
+        String value = stringValue(key, null);
+        if (value != null) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                System.err.println("Variable " + environmentName(key) + " is not a number using default value "
+                        + defaultValue + ".");
+            }
+        }
+        return defaultValue;
+    }
+
+    private boolean booleanValue(String key, boolean defaultValue) {
+        String value = stringValue(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.equalsIgnoreCase("true") || value.equals("1")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase("false") || value.equals("0")) {
+            return false;
+        }
+        System.err.println("Variable " + environmentName(key) + " is not true or false using default value "
+                + defaultValue + ".");
+        return defaultValue;
+    }
+
+    /**
+     * Sets the options of a listening channel. SO_REUSEPORT is only set where
+     * the platform supports it.
+     *
+     * @param channel the server channel, before it is bound
+     * @throws IOException if an option cannot be set
+     */
+    public void applyToServer(NetworkChannel channel) throws IOException {
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, reuseAddress);
+        if (reusePort && channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+            channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        }
+        if (receiveBuffer > 0) {
+            // Set on the listener so accepted sockets get it before the handshake
+            channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBuffer);
+        }
+    }
+
+    /**
+     * Sets the options of an accepted connection.
+     * @param channel the accepted channel
+     * @throws IOException if an option cannot be set
+     */
+    public void applyToConnection(SocketChannel channel) throws IOException {
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, tcpNoDelay);
+        if (sendBuffer > 0) {
+            channel.setOption(StandardSocketOptions.SO_SNDBUF, sendBuffer);
+        }
+    }
+
+    /**
+     * Creates a request parser with the configured limits.
+     * @return a new parser
+     */
+    public HttpRequestParser newParser() {
+        return new HttpRequestParser(maxRequestLine, maxHeaderSize);
+    }
+
+    /** @return the listening port, PORT */
+    public int getPort() {
+        return port;
+    }
+
+    /** @return true when ENGINE=nio selects the selector engine */
+    public boolean isNioEngine() {
+        return engine.equalsIgnoreCase("nio");
+    }
+
+    /** @return true when EXECUTION=virtual selects a thread per connection */
+    public boolean isVirtualExecution() {
+        return execution.equalsIgnoreCase("virtual");
+    }
+
+    /** @return the fixed pool size, WORKERS */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /** @return the connections that may wait for a pool worker, WORKER_QUEUE */
+    public int getWorkerQueue() {
+        return workerQueue;
+    }
+
+    /** @return the running task limit in virtual mode, MAX_CONCURRENCY */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /** @return the selector threads, EVENT_LOOPS, 0 for one per core */
+    public int getEventLoops() {
+        return eventLoops;
+    }
+
+    /** @return the accept backlog, BACKLOG, 0 for the platform default */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /** @return the time allowed to receive the rest of a started request, READ_TIMEOUT_MS */
+    public int getReadTimeoutMs() {
+        return readTimeoutMs;
+    }
+
+    /** @return the time a response write may stall on either engine, WRITE_TIMEOUT_MS */
+    public int getWriteTimeoutMs() {
+        return writeTimeoutMs;
+    }
+
+    /** @return the time a persistent connection may wait for its next request, IDLE_TIMEOUT_MS */
+    public int getIdleTimeoutMs() {
+        return idleTimeoutMs;
+    }
+
+    /** @return the requests served on one connection, MAX_KEEP_ALIVE_REQUESTS */
+    public int getMaxKeepAliveRequests() {
+        return maxKeepAliveRequests;
+    }
+
+    /** @return TCP_NODELAY for accepted connections */
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /** @return SO_REUSEADDR for the listener */
+    public boolean isReuseAddress() {
+        return reuseAddress;
+    }
+
+    /** @return SO_REUSEPORT for the listener, where supported */
+    public boolean isReusePort() {
+        return reusePort;
+    }
+
+    /** @return SO_RCVBUF in bytes, 0 for the platform default */
+    public int getReceiveBuffer() {
+        return receiveBuffer;
+    }
+
+    /** @return SO_SNDBUF in bytes, 0 for the platform default */
+    public int getSendBuffer() {
+        return sendBuffer;
+    }
+
+    /** @return the request line limit, MAX_REQUEST_LINE */
+    public int getMaxRequestLine() {
+        return maxRequestLine;
+    }
+
+    /** @return the request head limit, MAX_HEADER_SIZE */
+    public int getMaxHeaderSize() {
+        return maxHeaderSize;
+    }
+
+    /** @return the largest request body accepted, MAX_BODY_SIZE */
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    /** @return the static file cache bound, STATIC_CACHE_BYTES */
+    public long getStaticCacheBytes() {
+        return staticCacheBytes;
+    }
+
+    /** @return the directory served from disk, STATIC_DIR, or null */
+    public String getStaticDir() {
+        return staticDir;
+    }
+
+    /** @return the access log level, ACCESS_LOG_LEVEL */
+    public String getAccessLogLevel() {
+        return accessLogLevel;
+    }
+
+    /** @return the fraction of requests logged, ACCESS_LOG_SAMPLE */
+    public double getAccessLogSample() {
+        return accessLogSample;
+    }
+
+    /** @return the access log ring size, ACCESS_LOG_BUFFER */
+    public int getAccessLogBuffer() {
+        return accessLogBuffer;
+    }
+
+    /** @return the access log file, ACCESS_LOG_FILE, or null for stdout */
+    public String getAccessLogFile() {
+        return accessLogFile;
+    }
+
+    /** @return true when CONCURRENCY_LIMIT=aimd */
+    public boolean isAdaptiveConcurrencyLimit() {
+        return concurrencyLimit.equalsIgnoreCase("aimd");
+    }
+
+    /** @return the lowest adaptive limit, CONCURRENCY_LIMIT_MIN */
+    public int getConcurrencyLimitMin() {
+        return concurrencyLimitMin;
+    }
+
+    /** @return the highest adaptive limit, CONCURRENCY_LIMIT_MAX */
+    public int getConcurrencyLimitMax() {
+        return concurrencyLimitMax;
+    }
+
+    /** @return the latency that shrinks the adaptive limit, LATENCY_TARGET_MS */
+    public int getLatencyTargetMs() {
+        return latencyTargetMs;
+    }
+}
@@ -0,0 +1,206 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Precompiled call target for a controller method.
+ * All annotation and reflection work happens once in the constructor: every
+ * parameter gets a binder with its name, default value and type converter resolved, and the
+ * method is turned into a MethodHandle that takes the argument array.
+ * HttpRequest and HttpResponse parameters receive the objects of the current call,
+ * and a @RequestBody parameter the body as byte[], String or InputStream.
+ * The JSON accessors of the declared return type are prepared here as well.
+ * Invoking an endpoint then only runs the binders and the handle.
+ *
+ * @author daniel.aldana-b
+ */
+public final class ServiceInvoker {
+
+    /**
+     * Produces the value of one method parameter for a request.
+     */
+    @FunctionalInterface
+    interface ParameterBinder {
+        Object bind(HttpRequest request, HttpResponse response, RouteTable.Match route) throws IOException;
+    }
+
+    private final Method method;
+    private final MethodHandle target;
+    private final ParameterBinder[] binders;
+
+    /**
+     * Compiles the invoker for a controller method.
+     *
+     * @param method the @GetMapping, @PostMapping, @PutMapping or @DeleteMapping method
+     * @throws IllegalStateException if the method cannot be accessed, its controller instantiated,
+     *                               a parameter has an unsupported type or the return type cannot be serialized
+     */
+    public ServiceInvoker(Method method) {
+        this.method = method;
+        JsonWriter.prepare(method.getGenericReturnType());
+        Parameter[] parameters = method.getParameters();
+        this.binders = new ParameterBinder[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            binders[i] = binderFor(parameters[i]);
+        }
+        try {
+            MethodHandle handle = MethodHandles.lookup().unreflect(method);
+            if (!Modifier.isStatic(method.getModifiers())) {
+                Object controller = method.getDeclaringClass().getDeclaredConstructor().newInstance();
+                handle = handle.bindTo(controller);
+            }
+            this.target = handle.asSpreader(Object[].class, parameters.length)
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot compile endpoint " + method, e);
+        }
+    }
+
+    private static ParameterBinder binderFor(Parameter p) {
+        if (p.isAnnotationPresent(RequestParam.class)) {
+            return requestParamBinder(p);
+        }
+        if (p.isAnnotationPresent(PathVariable.class)) {
+            String name = p.getAnnotation(PathVariable.class).value();
+            ParameterConverters.Converter converter = ParameterConverters.forType(p.getType());
+            return (request, response, route) -> {
+                String value = route != null ? route.getPathVariable(name) : null;
+                return value != null ? converter.convert(name, value) : null;
+            };
+        }
+        if (p.isAnnotationPresent(RequestBody.class)) {
+            return requestBodyBinder(p);
+        }
+        if (p.getType() == HttpResponse.class) {
+            return (request, response, route) -> response;
+        }
+        if (p.getType() == HttpRequest.class) {
+            return (request, response, route) -> request;
+        }
+        // For non-annotated parameters, pass null
+        return (request, response, route) -> null;
+    }
+
+    /**
+     * Builds the binder of a @RequestParam. A missing or empty value takes the
+     * default value; if that is empty too, Optional parameters get Optional.empty(),
+     * List parameters an empty list, wrappers null and primitives are rejected.
+     */
+    private static ParameterBinder requestParamBinder(Parameter p) {
+        RequestParam param = p.getAnnotation(RequestParam.class);
+        String name = param.value();
+        String defaultValue = param.defaultValue();
+        Class<?> type = p.getType();
+        if (type == String.class) {
+            // Use defaultValue if parameter is not provided
+            return (request, response, route) -> valueOrDefault(request.getValue(name), defaultValue);
+        }
+        if (type == Optional.class) {
+            ParameterConverters.Converter converter =
+                    ParameterConverters.forType(ParameterConverters.elementType(p.getParameterizedType()));
+            return (request, response, route) -> {
+                String value = valueOrDefault(request.getValue(name), defaultValue);
+                return value.isEmpty() ? Optional.empty() : Optional.of(converter.convert(name, value));
+            };
+        }
+        if (type == List.class) {
+            ParameterConverters.Converter converter =
+                    ParameterConverters.forType(ParameterConverters.elementType(p.getParameterizedType()));
+            List<String> defaults = defaultValue.isEmpty() ? List.of() : List.of(defaultValue);
+            return (request, response, route) -> {
+                List<String> values = request.getValues(name);
+                return ParameterConverters.convertAll(converter, name, values.isEmpty() ? defaults : values);
+            };
+        }
+        ParameterConverters.Converter converter = ParameterConverters.forType(type);
+        boolean primitive = type.isPrimitive();
+        return (request, response, route) -> {
+            String value = valueOrDefault(request.getValue(name), defaultValue);
+            if (value.isEmpty()) {
+                if (primitive) {
+                    throw ParameterConverters.missing(name);
+                }
+                return null;
+            }
+            return converter.convert(name, value);
+        };
+    }
+
+    /**
+     * Builds the binder of a @RequestBody. byte[] and String read the whole body,
+     * an InputStream parameter reads it from the connection as the method consumes it.
+     */
+    private static ParameterBinder requestBodyBinder(Parameter p) {
+        Class<?> type = p.getType();
+        if (type == byte[].class) {
+            return (request, response, route) -> request.getBody().readAllBytes();
+        }
+        if (type == String.class) {
+            return (request, response, route) -> new String(request.getBody().readAllBytes(), StandardCharsets.UTF_8);
+        }
+        if (type == InputStream.class) {
+            return (request, response, route) -> request.getBody();
+        }
+        throw new IllegalStateException("Unsupported @RequestBody type " + type.getName()
+                + " of " + p.getDeclaringExecutable() + ", use byte[], String or InputStream");
+    }
+
+    private static String valueOrDefault(String value, String defaultValue) {
+        return value == null || value.isEmpty() ? defaultValue : value;
+    }
+
+    /**
+     * Binds the parameters and calls the controller method with a fresh response,
+     * released once the method returns.
+     *
+     * @param request the current request
+     * @param route   the matched route carrying path variables, may be null
+     * @return the value returned by the controller method
+     * @throws Throwable whatever the controller method throws
+     */
+    public Object invoke(HttpRequest request, RouteTable.Match route) throws Throwable {
+        HttpResponse response = new HttpResponse();
+        try {
+            return invoke(request, response, route);
+        } finally {
+            response.release();
+        }
+    }
+
+    /**
+     * Binds the parameters and calls the controller method.
+     *
+     * @param request  the current request
+     * @param response the response injected into HttpResponse parameters
+     * @param route    the matched route carrying path variables, may be null
+     * @return the value returned by the controller method
+     * @throws ParameterBindingException if a parameter is missing or has an invalid value
+     * @throws IOException if the request body cannot be read, e.g. an HttpParseException when it is too large
+     * @throws Throwable whatever the controller method throws
+     */
+    public Object invoke(HttpRequest request, HttpResponse response, RouteTable.Match route) throws Throwable {
+        Object[] args = new Object[binders.length];
+        for (int i = 0; i < binders.length; i++) {
+            args[i] = binders[i].bind(request, response, route);
+        }
+        return target.invokeExact(args);
+    }
+
+    /**
+     * Gets the compiled method.
+     * @return the controller method
+     */
+    public Method getMethod() {
+        return method;
+    }
+}
@@ -0,0 +1,150 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffered output for a blocking socket channel. Headers go through the
+ * buffer, file bodies are flushed after them and sent with transferTo, which
+ * the JDK maps to sendfile on Linux. Blocking sockets have no write timeout,
+ * so each write to the channel arms a watchdog that closes it when the write
+ * makes no progress for WRITE_TIMEOUT_MS, and a client that stops reading
+ * cannot hold the worker forever.
+ *
+ * @author daniel.aldana-b
+ */
+final class SocketChannelOutput extends BufferedOutputStream implements FileRegionSink {
+    // Largest write made under one deadline, so a slow but steady client is not cut off
+    static final int SLICE = 64 * 1024;
+    // One daemon thread closes the channels of every stalled write
+    private static final ScheduledThreadPoolExecutor WATCHDOG = watchdog();
+
+    SocketChannelOutput(SocketChannel channel) {
+        this(channel, 0);
+    }
+
+    /**
+     * @param channel        the blocking client channel
+     * @param writeTimeoutMs the time a write may make no progress, 0 for no limit
+     */
+    SocketChannelOutput(SocketChannel channel, int writeTimeoutMs) {
+        super(new ChannelStream(channel, writeTimeoutMs));
+    }
+
+    private static ScheduledThreadPoolExecutor watchdog() {
+        ScheduledThreadPoolExecutor watchdog = new ScheduledThreadPoolExecutor(1, task -> {
+            Thread thread = new Thread(task, "write-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Almost every write finishes in time, cancelled deadlines must not pile up
+        watchdog.setRemoveOnCancelPolicy(true);
+        return watchdog;
+    }
+
+    @Override
+    public void sendFile(FileChannel file, long position, long count) throws IOException {
+        try (file) {
+            flush();
+            ((ChannelStream) out).transfer(file, position, count);
+        }
+    }
+
+    /**
+     * Writes to the channel in slices, each under the write deadline.
+     */
+    private static final class ChannelStream extends OutputStream {
+        private final SocketChannel channel;
+        private final int writeTimeoutMs;
+        // Set by the watchdog, so the failed write reports a timeout instead of a closed channel
+        private volatile boolean timedOut;
+
+        ChannelStream(SocketChannel channel, int writeTimeoutMs) {
+            this.channel = channel;
+            this.writeTimeoutMs = writeTimeoutMs;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                buffer.limit(Math.min(off + len, buffer.position() + SLICE));
+                ScheduledFuture<?> deadline = arm();
+                try {
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                } catch (IOException e) {
+                    throw timeout(e);
+                } finally {
+                    disarm(deadline);
+                }
+                buffer.limit(off + len);
+            }
+        }
+
+        void transfer(FileChannel file, long position, long count) throws IOException {
+            while (count > 0) {
+                ScheduledFuture<?> deadline = arm();
+                long n;
+                try {
+                    n = file.transferTo(position, Math.min(count, SLICE), channel);
+                } catch (IOException e) {
+                    throw timeout(e);
+                } finally {
+                    disarm(deadline);
+                }
+                if (n <= 0) {
+                    // The file shrank after its length was sent
+                    throw new IOException("File truncated while sending");
+                }
+                position += n;
+                count -= n;
+            }
+        }
+
+        private ScheduledFuture<?> arm() {
+            if (writeTimeoutMs <= 0) {
+                return null;
+            }
+            return WATCHDOG.schedule(this::expire, writeTimeoutMs, TimeUnit.MILLISECONDS);
+        }
+
+        private static void disarm(ScheduledFuture<?> deadline) {
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+        }
+
+        private void expire() {
+            timedOut = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // The client is gone either way
+            }
+        }
+
+        private IOException timeout(IOException e) {
+            if (!timedOut) {
+                return e;
+            }
+            SocketTimeoutException timeout = new SocketTimeoutException("Write timed out after " + writeTimeoutMs + " ms");
+            timeout.initCause(e);
+            return timeout;
+        }
+    }
+}
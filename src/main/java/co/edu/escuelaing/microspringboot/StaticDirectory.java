@@ -0,0 +1,224 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Serves static files from a directory on disk, such as a volume mounted in
+ * the Docker image. Files are never read into the heap: the body is sent with
+ * FileChannel.transferTo when the output is a {@link FileRegionSink}. Single
+ * byte ranges are answered with 206 Partial Content so media can be seeked.
+ * The ETag is built from the size and modification time, like most file servers,
+ * so large files are not hashed.
+ *
+ * @author daniel.aldana-b
+ */
+final class StaticDirectory {
+    // Returned by range() for a Range that starts past the end of the file
+    static final long[] UNSATISFIABLE = new long[0];
+
+    private StaticDirectory() {
+    }
+
+    /**
+     * Writes a file under a root directory.
+     *
+     * @param root      the directory the files are served from
+     * @param path      the request path, e.g. "/media/video.mp4"
+     * @param request   the request, for its method and its conditional and Range headers
+     * @param output    the stream the response is written to
+     * @param keepAlive false to include connection: close
+     * @return false if there is no regular file for the path, nothing is written then
+     * @throws IOException if the file cannot be read or the connection fails
+     */
+    static boolean serve(Path root, String path, HttpRequest request, OutputStream output, boolean keepAlive)
+            throws IOException {
+        Path file = resolve(root, path);
+        if (file == null) {
+            return false;
+        }
+        BasicFileAttributes attributes;
+        FileChannel channel;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return false;
+            }
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        try {
+            long length = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis() / 1000;
+            String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(attributes.lastModifiedTime().toMillis()) + "\"";
+            StringBuilder head = new StringBuilder(256);
+            if (StaticFileCache.isNotModified(etag, lastModified,
+                    request.getHeader("If-None-Match"), request.getHeader("If-Modified-Since"))) {
+                head.append("HTTP/1.1 304 Not Modified\r\n");
+                validators(head, etag, lastModified);
+                finish(head, output, keepAlive);
+                output.flush();
+                return true;
+            }
+
+            long[] range = range(request.getHeader("Range"), length);
+            if (range != null && !ifRangeMatches(request.getHeader("If-Range"), etag, lastModified)) {
+                range = null;
+            }
+            if (range == UNSATISFIABLE) {
+                head.append("HTTP/1.1 416 Range Not Satisfiable\r\n")
+                        .append("content-range: bytes */").append(length).append("\r\n")
+                        .append("content-length: 0\r\n");
+                finish(head, output, keepAlive);
+                output.flush();
+                return true;
+            }
+            long position = range != null ? range[0] : 0;
+            long count = range != null ? range[1] - range[0] + 1 : length;
+            head.append(range != null ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n")
+                    .append("content-type: ").append(HttpServer.getType(file)).append("\r\n")
+                    .append("content-length: ").append(count).append("\r\n");
+            if (range != null) {
+                head.append("content-range: bytes ").append(range[0]).append('-').append(range[1])
+                        .append('/').append(length).append("\r\n");
+            }
+            head.append("accept-ranges: bytes\r\n");
+            validators(head, etag, lastModified);
+            finish(head, output, keepAlive);
+            if ("HEAD".equals(request.getMethod())) {
+                // Same head as GET, the file is closed below without sending it
+                output.flush();
+                return true;
+            }
+            send(channel, position, count, output);
+            channel = null;
+            return true;
+        } finally {
+            if (channel != null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Maps a request path to a file, refusing paths that leave the root.
+     * @return the file, or null if the path escapes the root directory
+     */
+    static Path resolve(Path root, String path) {
+        Path base = root.toAbsolutePath().normalize();
+        Path file = base.resolve(path.startsWith("/") ? path.substring(1) : path).normalize();
+        return file.startsWith(base) ? file : null;
+    }
+
+    /**
+     * Parses a Range header with a single byte range.
+     * Multiple ranges and other units are ignored and the whole file is sent,
+     * which RFC 7233 allows.
+     *
+     * @param header the Range header, or null
+     * @param length the file length
+     * @return the first and last byte offsets, {@link #UNSATISFIABLE}, or null to send the whole file
+     */
+    static long[] range(String header, long length) {
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long first;
+            long last;
+            if (dash == 0) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix == 0) {
+                    return UNSATISFIABLE;
+                }
+                first = Math.max(0, length - suffix);
+                last = length - 1;
+            } else {
+                first = Long.parseLong(spec.substring(0, dash));
+                if (first >= length) {
+                    return UNSATISFIABLE;
+                }
+                last = dash == spec.length() - 1 ? length - 1 : Long.parseLong(spec.substring(dash + 1));
+                if (last < first) {
+                    return null;
+                }
+                last = Math.min(last, length - 1);
+            }
+            if (first >= length) {
+                return UNSATISFIABLE;
+            }
+            return new long[] {first, last};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Checks If-Range: a range is only honored while the client's copy is current.
+     */
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"")) {
+            // If-Range requires the strong comparison
+            return value.equals(etag);
+        }
+        Long date = StaticFileCache.parseHttpDate(value);
+        return date != null && date == lastModified;
+    }
+
+    private static void validators(StringBuilder head, String etag, long lastModified) {
+        head.append("etag: ").append(etag).append("\r\n")
+                .append("last-modified: ").append(StaticFileCache.httpDate(lastModified)).append("\r\n")
+                .append("cache-control: ").append(StaticFileCache.CACHE_CONTROL).append("\r\n");
+    }
+
+    private static void finish(StringBuilder head, OutputStream output, boolean keepAlive) throws IOException {
+        if (!keepAlive) {
+            head.append("connection: close\r\n");
+        }
+        output.write(head.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Sends a file region through a {@link FileRegionSink}, or copies it for plain streams.
+     * The channel is closed once the region is sent.
+     */
+    static void send(FileChannel channel, long position, long count, OutputStream output) throws IOException {
+        if (output instanceof FileRegionSink sink) {
+            sink.sendFile(channel, position, count);
+            return;
+        }
+        // Plain streams get a copy through a small buffer
+        try (channel) {
+            WritableByteChannel target = Channels.newChannel(output);
+            while (count > 0) {
+                long n = channel.transferTo(position, count, target);
+                if (n <= 0) {
+                    throw new IOException("File truncated while sending");
+                }
+                position += n;
+                count -= n;
+            }
+            output.flush();
+        }
+    }
+}
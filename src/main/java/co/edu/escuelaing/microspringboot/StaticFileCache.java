@@ -0,0 +1,469 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URISyntaxException;
+import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * In-memory cache for the static files under the webroot classpath folder.
+ * A file is read once on its first request and kept as a byte array together
+ * with its response headers, already encoded, so later hits skip the
+ * classloader lookup and the stream copy. Every file also carries a strong
+ * ETag and a Last-Modified date so repeat visits can be answered with 304,
+ * and text files keep a precompressed gzip copy when it fits in the cache.
+ * The cache is bounded by the total size of the cached bodies and evicts the
+ * least recently used files first.
+ * Files larger than the whole cache are never read into the heap: they are
+ * streamed from the classpath on every request, with an ETag built from their
+ * length and modification time as {@link StaticDirectory} does.
+ *
+ * @author daniel.aldana-b
+ */
+public class StaticFileCache {
+    // Browsers keep the file but revalidate it with the ETag on every use
+    static final String CACHE_CONTROL = "no-cache";
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+    // Fallback validator time for resources without a modification date
+    private static final long STARTUP_TIME = System.currentTimeMillis();
+
+    /**
+     * A static file ready to be written to the client, with the validators
+     * used to answer conditional requests. Compressible files also hold a
+     * gzip variant, built once when the file is loaded. Streamed entries only
+     * hold the metadata and read the body from the classpath when it is sent.
+     */
+    public static final class Entry {
+        private final byte[] body;
+        // Where a streamed body is read from, null when the body is in memory
+        private final URL source;
+        private final long length;
+        private final String contentType;
+        private final String etag;
+        // Last modification time in epoch seconds, the precision of the HTTP date
+        private final long lastModified;
+        private final Entry gzip;
+        private final byte[] keepAliveHeader;
+        private final byte[] closeHeader;
+        private final byte[] notModifiedKeepAlive;
+        private final byte[] notModifiedClose;
+
+        Entry(byte[] body, String contentType, long lastModifiedMillis) {
+            this(body, contentType, lastModifiedMillis, Long.MAX_VALUE);
+        }
+
+        /**
+         * Creates an in-memory entry that fits in a cache bound.
+         * @param maxSize the largest {@link #size()} allowed, the gzip variant is dropped when it would not fit
+         */
+        Entry(byte[] body, String contentType, long lastModifiedMillis, long maxSize) {
+            this.body = body;
+            this.source = null;
+            this.length = body.length;
+            this.contentType = contentType;
+            this.etag = computeEtag(body);
+            this.lastModified = lastModifiedMillis / 1000;
+            Entry gzip = null;
+            if (Compression.isCompressible(contentType) && body.length < maxSize) {
+                byte[] compressed = Compression.gzip(body, Deflater.BEST_COMPRESSION);
+                // Tiny files can grow when compressed
+                if (compressed.length < body.length && body.length + compressed.length <= maxSize) {
+                    gzip = new Entry(this, compressed);
+                }
+            }
+            this.gzip = gzip;
+            String encoding = gzip != null ? "vary: Accept-Encoding\r\n" : "";
+            this.keepAliveHeader = header(200, encoding, true);
+            this.closeHeader = header(200, encoding, false);
+            this.notModifiedKeepAlive = header(304, encoding, true);
+            this.notModifiedClose = header(304, encoding, false);
+        }
+
+        Entry(URL source, long length, String contentType, long lastModifiedMillis) {
+            this.body = null;
+            this.source = source;
+            this.length = length;
+            this.contentType = contentType;
+            this.etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModifiedMillis) + "\"";
+            this.lastModified = lastModifiedMillis / 1000;
+            this.gzip = null;
+            this.keepAliveHeader = header(200, "", true);
+            this.closeHeader = header(200, "", false);
+            this.notModifiedKeepAlive = header(304, "", true);
+            this.notModifiedClose = header(304, "", false);
+        }
+
+        private Entry(Entry identity, byte[] compressed) {
+            this.body = compressed;
+            this.source = null;
+            this.length = compressed.length;
+            this.contentType = identity.contentType;
+            // Each representation needs its own strong tag
+            this.etag = identity.etag.substring(0, identity.etag.length() - 1) + "-gz\"";
+            this.lastModified = identity.lastModified;
+            this.gzip = null;
+            String encoding = "content-encoding: gzip\r\nvary: Accept-Encoding\r\n";
+            this.keepAliveHeader = header(200, encoding, true);
+            this.closeHeader = header(200, encoding, false);
+            this.notModifiedKeepAlive = header(304, encoding, true);
+            this.notModifiedClose = header(304, encoding, false);
+        }
+
+        private byte[] header(int status, String encoding, boolean keepAlive) {
+            StringBuilder header = new StringBuilder(256);
+            if (status == 200) {
+                header.append("HTTP/1.1 200 OK\r\n")
+                        .append("content-type: ").append(contentType).append("\r\n")
+                        .append("content-length: ").append(length).append("\r\n");
+            } else {
+                // A 304 has no body, so it carries no content headers
+                header.append("HTTP/1.1 304 Not Modified\r\n");
+            }
+            header.append(encoding)
+                    .append("etag: ").append(etag).append("\r\n")
+                    .append("last-modified: ").append(httpDate(lastModified)).append("\r\n")
+                    .append("cache-control: ").append(CACHE_CONTROL).append("\r\n");
+            if (!keepAlive) {
+                header.append("connection: close\r\n");
+            }
+            return header.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * Picks the representation to send.
+         * @param acceptsGzip true if the client accepts the gzip coding
+         * @return the gzip variant when there is one and it is accepted, otherwise this entry
+         */
+        public Entry variant(boolean acceptsGzip) {
+            return acceptsGzip && gzip != null ? gzip : this;
+        }
+
+        /**
+         * Gets the gzip variant.
+         * @return the compressed entry, or null for files that are not compressed
+         */
+        public Entry gzip() {
+            return gzip;
+        }
+
+        /**
+         * Gets the memory used by the bodies of this entry and its variant.
+         * @return the size in bytes
+         */
+        public long size() {
+            return length + (gzip != null ? gzip.length : 0);
+        }
+
+        /**
+         * Gets the encoded status line and headers.
+         * @param keepAlive false to include connection: close
+         * @return the header bytes, including the blank line that ends them
+         */
+        public byte[] header(boolean keepAlive) {
+            return keepAlive ? keepAliveHeader : closeHeader;
+        }
+
+        /**
+         * Gets the encoded 304 response, which has no body.
+         * @param keepAlive false to include connection: close
+         * @return the status line and headers, including the blank line that ends them
+         */
+        public byte[] notModifiedHeader(boolean keepAlive) {
+            return keepAlive ? notModifiedKeepAlive : notModifiedClose;
+        }
+
+        /**
+         * Gets the file contents.
+         * @return the body bytes, must not be modified, or null for a streamed entry
+         */
+        public byte[] body() {
+            return body;
+        }
+
+        /**
+         * Writes the body after the header. Streamed files under a file: URL go
+         * through {@link StaticDirectory#send}, so they use transferTo when the
+         * output allows it, the others are copied through a small buffer.
+         *
+         * @param output the stream the response is written to
+         * @throws IOException if the file cannot be read or the connection fails
+         */
+        public void writeBody(OutputStream output) throws IOException {
+            if (body != null) {
+                output.write(body);
+                return;
+            }
+            if ("file".equals(source.getProtocol())) {
+                Path file;
+                try {
+                    file = Path.of(source.toURI());
+                } catch (URISyntaxException e) {
+                    throw new IOException("Invalid resource URL " + source, e);
+                }
+                StaticDirectory.send(FileChannel.open(file, StandardOpenOption.READ), 0, length, output);
+                return;
+            }
+            try (InputStream resource = source.openStream()) {
+                byte[] buffer = new byte[8192];
+                long remaining = length;
+                while (remaining > 0) {
+                    int n = resource.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (n < 0) {
+                        // The content-length is already sent
+                        throw new IOException("Resource truncated while sending");
+                    }
+                    output.write(buffer, 0, n);
+                    remaining -= n;
+                }
+            }
+        }
+
+        /**
+         * Tells whether the body is read from the classpath on every request.
+         * @return true for files larger than the cache
+         */
+        public boolean isStreamed() {
+            return source != null;
+        }
+
+        /**
+         * Gets the MIME type resolved with HttpServer.getType.
+         * @return the content type
+         */
+        public String contentType() {
+            return contentType;
+        }
+
+        /**
+         * Gets the strong entity tag of the contents.
+         * @return the quoted tag, e.g. "\"Xk2v...\""
+         */
+        public String etag() {
+            return etag;
+        }
+
+        /**
+         * Evaluates the conditional request headers. If-None-Match wins over
+         * If-Modified-Since when both are sent, as RFC 7232 requires.
+         *
+         * @param ifNoneMatch     the If-None-Match header, or null
+         * @param ifModifiedSince the If-Modified-Since header, or null
+         * @return true if the client copy is current and a 304 should be sent
+         */
+        public boolean isNotModified(String ifNoneMatch, String ifModifiedSince) {
+            return StaticFileCache.isNotModified(etag, lastModified, ifNoneMatch, ifModifiedSince);
+        }
+
+        private static String computeEtag(byte[] body) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+                return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 12)) + "\"";
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+            }
+        }
+    }
+
+    /**
+     * Evaluates the conditional request headers against a resource's validators.
+     * If-None-Match wins over If-Modified-Since when both are sent, as RFC 7232 requires.
+     *
+     * @param etag            the quoted entity tag of the resource
+     * @param lastModified    the modification time in epoch seconds
+     * @param ifNoneMatch     the If-None-Match header, or null
+     * @param ifModifiedSince the If-Modified-Since header, or null
+     * @return true if the client copy is current and a 304 should be sent
+     */
+    static boolean isNotModified(String etag, long lastModified, String ifNoneMatch, String ifModifiedSince) {
+        if (ifNoneMatch != null) {
+            return matchesEtag(etag, ifNoneMatch);
+        }
+        if (ifModifiedSince != null) {
+            Long since = parseHttpDate(ifModifiedSince);
+            return since != null && lastModified <= since;
+        }
+        return false;
+    }
+
+    /**
+     * Compares an entity tag with a list of tags using the weak comparison
+     * that GET requires, so W/ prefixes are ignored.
+     */
+    static boolean matchesEtag(String etag, String tags) {
+        for (String tag : tags.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Formats a time as an HTTP date, e.g. "Sun, 6 Nov 1994 08:49:37 GMT".
+     * @param epochSeconds the time in epoch seconds
+     * @return the formatted date
+     */
+    static String httpDate(long epochSeconds) {
+        return HTTP_DATE.format(Instant.ofEpochSecond(epochSeconds));
+    }
+
+    /**
+     * Parses an HTTP date.
+     * @param value the header value
+     * @return the time in epoch seconds, or null if the value is not a valid date
+     */
+    static Long parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value.trim(), HTTP_DATE).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            // Invalid dates are ignored
+            return null;
+        }
+    }
+
+    private final String root;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache for a classpath folder.
+     *
+     * @param root     the classpath folder with the files, e.g. "webroot"
+     * @param maxBytes the maximum total size of cached bodies, gzip copies included; larger files are streamed
+     */
+    public StaticFileCache(String root, long maxBytes) {
+        this.root = root;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Finds a static file, loading it on the first request.
+     *
+     * @param path the request path, e.g. "/index.html"
+     * @return the file, or null if there is no such resource
+     * @throws IOException if the resource exists but cannot be read
+     */
+    public Entry get(String path) throws IOException {
+        synchronized (this) {
+            Entry entry = entries.get(path);
+            if (entry != null) {
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+        URL url = StaticFileCache.class.getClassLoader().getResource(root + path);
+        if (url == null) {
+            return null;
+        }
+        URLConnection connection = url.openConnection();
+        long lastModified = connection.getLastModified();
+        if (lastModified <= 0) {
+            lastModified = STARTUP_TIME;
+        }
+        long length = connection.getContentLengthLong();
+        byte[] body;
+        try (InputStream resource = connection.getInputStream()) {
+            if (length > maxBytes) {
+                // Only the metadata is kept, the body is streamed when it is sent
+                return new Entry(url, length, HttpServer.getType(Path.of(path)), lastModified);
+            }
+            // Resources from directories and jars report their length, so only unknown ones are read blindly
+            body = resource.readAllBytes();
+        }
+        if (body.length > maxBytes) {
+            // Unknown length after all, sent as read and never compressed
+            return new Entry(body, HttpServer.getType(Path.of(path)), lastModified, 0);
+        }
+        // The gzip copy is only built when it is cached with the file, so it is never redone per request
+        Entry entry = new Entry(body, HttpServer.getType(Path.of(path)), lastModified, maxBytes);
+        put(path, entry);
+        return entry;
+    }
+
+    private synchronized void put(String path, Entry entry) {
+        Entry previous = entries.put(path, entry);
+        if (previous != null) {
+            cachedBytes -= previous.size();
+        }
+        cachedBytes += entry.size();
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (cachedBytes > maxBytes && eldest.hasNext()) {
+            cachedBytes -= eldest.next().getValue().size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Drops every cached file.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * Gets the number of requests served from memory.
+     * @return the hit count
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of requests that had to go to the classpath.
+     * @return the miss count
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the number of files dropped to stay under the size bound.
+     * @return the eviction count
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the total size of the cached bodies.
+     * @return the cached size in bytes
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+}
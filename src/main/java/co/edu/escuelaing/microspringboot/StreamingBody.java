@@ -0,0 +1,28 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A response body written by the controller while it is being sent.
+ * A controller returns one instead of a String when the result is large or
+ * produced over time; the server sends it with Transfer-Encoding: chunked.
+ * Every flush() of the stream sends what was written so far to the client.
+ * Writes block while the client is not reading, and fail with an IOException
+ * once it has disconnected, which ends the response.
+ * <p>
+ * Controllers may also return a {@code Supplier} of chunks, ending with null,
+ * or a {@code Flow.Publisher} of chunks. Chunks are byte arrays or text.
+ *
+ * @author daniel.aldana-b
+ */
+@FunctionalInterface
+public interface StreamingBody {
+
+    /**
+     * Writes the body.
+     * @param out the stream of the response body, closed by the server afterwards
+     * @throws IOException if the client disconnects
+     */
+    void writeTo(OutputStream out) throws IOException;
+}
@@ -0,0 +1,175 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executor that starts a new thread for every task, with an optional limit on
+ * how many tasks run at the same time.
+ * On Java 21+ the threads are virtual threads, so a handler that blocks on a
+ * downstream call only parks its own virtual thread. On older runtimes it
+ * falls back to platform threads with the same limit.
+ *
+ * @author daniel.aldana-b
+ */
+public class ThreadPerTaskExecutor extends AbstractExecutorService {
+    private final ThreadFactory factory;
+    private final Semaphore permits;
+    private final int limit;
+    private final Set<Thread> active = ConcurrentHashMap.newKeySet();
+    private volatile boolean shutdown = false;
+
+    /**
+     * Creates an executor that runs each task on its own virtual thread.
+     *
+     * @param maxConcurrency the maximum number of running tasks, 0 or less for no limit
+     */
+    public ThreadPerTaskExecutor(int maxConcurrency) {
+        this(virtualThreadFactory(), maxConcurrency);
+    }
+
+    ThreadPerTaskExecutor(ThreadFactory factory, int maxConcurrency) {
+        this.factory = factory;
+        this.limit = maxConcurrency > 0 ? maxConcurrency : Integer.MAX_VALUE;
+        this.permits = new Semaphore(limit);
+    }
+
+    /**
+     * Runs the task on a new thread. Blocks the caller while the concurrency
+     * limit is reached, which pushes back on the caller instead of queueing.
+     * The acceptor and the nio event loops call {@link #tryExecute} to shed instead.
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a permit", e);
+        }
+        start(task);
+    }
+
+    /**
+     * Runs the task on a new thread if the concurrency limit allows it, without
+     * blocking. Used by callers that must not wait, such as an event loop.
+     *
+     * @param task the task to run
+     * @throws RejectedExecutionException if the limit is reached or the executor is shut down
+     */
+    public void tryExecute(Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor is shut down");
+        }
+        if (!permits.tryAcquire()) {
+            throw new RejectedExecutionException("Concurrency limit of " + limit + " reached");
+        }
+        start(task);
+    }
+
+    private void start(Runnable task) {
+        Thread thread = factory.newThread(() -> {
+            active.add(Thread.currentThread());
+            try {
+                task.run();
+            } finally {
+                active.remove(Thread.currentThread());
+                permits.release();
+            }
+        });
+        thread.start();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        for (Thread t : active) {
+            t.interrupt();
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && permits.availablePermits() == limit;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        if (permits.tryAcquire(limit, timeout, unit)) {
+            permits.release(limit);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the number of tasks running.
+     * @return the running task count
+     */
+    public int getActiveCount() {
+        return limit == Integer.MAX_VALUE ? active.size() : limit - permits.availablePermits();
+    }
+
+    /**
+     * Gets the number of callers blocked waiting for a free slot.
+     * @return an estimate of the waiting submitters
+     */
+    public int getQueuedCount() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Looks up Thread.ofVirtual().factory() at runtime so the project still
+     * compiles for Java 17.
+     *
+     * @return a virtual thread factory, or a platform daemon thread factory if
+     * the runtime has no virtual threads
+     */
+    static ThreadFactory virtualThreadFactory() {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builder = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            MethodHandle ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(builder));
+            MethodHandle name = lookup.findVirtual(builder, "name",
+                    MethodType.methodType(builder, String.class, long.class));
+            MethodHandle factory = lookup.findVirtual(builder, "factory", MethodType.methodType(ThreadFactory.class));
+            Object b = ofVirtual.invoke();
+            b = name.invoke(b, "HttpServer-Virtual-", 0L);
+            return (ThreadFactory) factory.invoke(b);
+        } catch (Throwable e) {
+            Logger.getLogger(ThreadPerTaskExecutor.class.getName()).log(Level.WARNING,
+                    "Virtual threads not available, using platform threads");
+            return r -> {
+                Thread t = new Thread(r, "HttpServer-Worker");
+                t.setDaemon(true);
+                return t;
+            };
+        }
+    }
+}
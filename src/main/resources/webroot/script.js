@@ -21,9 +21,11 @@ function loadPostMsg(nameInput) {
         document.getElementById("postrespmsg").innerHTML = "Please enter a name.";
         return;
     }
-    const url = "/app/hellopost?name=" + encodeURIComponent(nameInput.value);
-
-    fetch(url, { method: 'POST' })
+    fetch("/app/hellopost", {
+        method: 'POST',
+        headers: { 'Content-Type': 'application/x-www-form-urlencoded' },
+        body: "name=" + encodeURIComponent(nameInput.value)
+    })
         .then(response => response.json())
         .then(msg => {
             document.getElementById("postrespmsg").innerHTML = msg.msg || msg;
@@ -0,0 +1,149 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Writes the route index read by ComponentScanner at startup, so the server
+ * does not walk the classpath and load every class to find the controllers.
+ * <p>
+ * The index has one line per controller, followed by one line per mapped method:
+ * <pre>
+ * co.edu.escuelaing.microspringboot.GreetingController
+ * co.edu.escuelaing.microspringboot.GreetingController	greeting	/greeting	name
+ * co.edu.escuelaing.microspringboot.GreetingController	rename	POST /greeting	name
+ * </pre>
+ * GET routes are written as the bare template, other methods prefix it like the route table keys.
+ * Annotations are matched by name because this processor is compiled before
+ * the classes it indexes.
+ *
+ * @author daniel.aldana-b
+ */
+@SupportedAnnotationTypes(RouteIndexProcessor.REST_CONTROLLER)
+public class RouteIndexProcessor extends AbstractProcessor {
+    static final String PACKAGE = "co.edu.escuelaing.microspringboot.";
+    static final String REST_CONTROLLER = PACKAGE + "RestController";
+    static final String GET_MAPPING = PACKAGE + "GetMapping";
+    // Mapping annotations of the other request methods, with the prefix of their routes
+    static final String[][] MAPPINGS = {
+            {PACKAGE + "PostMapping", "POST "},
+            {PACKAGE + "PutMapping", "PUT "},
+            {PACKAGE + "DeleteMapping", "DELETE "}};
+    static final String REQUEST_PARAM = PACKAGE + "RequestParam";
+    // Must match ComponentScanner.INDEX
+    static final String INDEX = "META-INF/microspringboot/controllers.idx";
+
+    // Binary class name to its route lines, sorted so the output is reproducible
+    private final Map<String, List<String>> controllers = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : round.getElementsAnnotatedWith(annotation)) {
+                if (element.getKind() == ElementKind.CLASS) {
+                    index((TypeElement) element);
+                }
+            }
+        }
+        if (round.processingOver()) {
+            write();
+        }
+        return false;
+    }
+
+    private void index(TypeElement type) {
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        List<String> routes = new ArrayList<>();
+        for (Element member : type.getEnclosedElements()) {
+            if (member.getKind() != ElementKind.METHOD) {
+                continue;
+            }
+            String mapping = annotationValue(member, GET_MAPPING);
+            for (int i = 0; i < MAPPINGS.length && mapping == null; i++) {
+                String value = annotationValue(member, MAPPINGS[i][0]);
+                mapping = value == null ? null : MAPPINGS[i][1] + value;
+            }
+            if (mapping == null) {
+                continue;
+            }
+            StringBuilder line = new StringBuilder(className).append('\t')
+                    .append(member.getSimpleName()).append('\t').append(mapping).append('\t');
+            String separator = "";
+            for (VariableElement parameter : ((ExecutableElement) member).getParameters()) {
+                String name = annotationValue(parameter, REQUEST_PARAM);
+                if (name != null) {
+                    line.append(separator).append(name);
+                    separator = ",";
+                }
+            }
+            routes.add(line.toString());
+        }
+        controllers.put(className, routes);
+    }
+
+    /**
+     * Gets the value() of an annotation by its qualified name.
+     * @return the value, or null if the element does not carry the annotation
+     */
+    private static String annotationValue(Element element, String annotationName) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (!type.getQualifiedName().contentEquals(annotationName)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value")) {
+                    return String.valueOf(entry.getValue().getValue());
+                }
+            }
+            return "";
+        }
+        return null;
+    }
+
+    private void write() {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+            try (Writer out = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                out.write("# Generated by RouteIndexProcessor, do not edit\n");
+                for (Map.Entry<String, List<String>> controller : controllers.entrySet()) {
+                    out.write(controller.getKey());
+                    out.write('\n');
+                    for (String route : controller.getValue()) {
+                        out.write(route);
+                        out.write('\n');
+                    }
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + INDEX + ": " + e);
+        }
+    }
+}
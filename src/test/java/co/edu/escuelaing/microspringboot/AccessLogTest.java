@@ -0,0 +1,113 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AccessLogTest {
+
+    @Test
+    void testRecordFormat() throws Exception {
+        StringWriter out = new StringWriter();
+        AccessLog log = new AccessLog(AccessLog.Level.DEBUG, 1, 16, out);
+
+        log.access("GET", "/hello", 200, 120, 57_000);
+        log.debug("Received: GET / HTTP/1.1\r\nHost: x");
+        assertEquals(2, log.drain());
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains(" INFO method=GET path=/hello status=200 bytes=120 duration_us=57 thread="));
+        // Los saltos de línea se escapan para tener un registro por línea
+        assertTrue(lines[1].contains(" DEBUG thread="));
+        assertTrue(lines[1].endsWith("Received: GET / HTTP/1.1\\r\\nHost: x"));
+    }
+
+    @Test
+    void testAccessRecordCannotForgeLines() throws Exception {
+        // Una ruta con %0d%0a decodificado no puede inventar otro registro
+        StringWriter out = new StringWriter();
+        AccessLog log = new AccessLog(AccessLog.Level.INFO, 1, 16, out);
+
+        log.access("GET\n", "/a\r\n2026-01-01T00:00:00Z INFO method=GET path=/admin", 200, 1, 1_000);
+        assertEquals(1, log.drain());
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(1, lines.length);
+        assertTrue(lines[0].contains(" method=GET\\n path=/a\\r\\n2026-01-01T00:00:00Z INFO method=GET path=/admin status=200"));
+    }
+
+    @Test
+    void testFullRingDropsInsteadOfBlocking() throws Exception {
+        StringWriter out = new StringWriter();
+        AccessLog log = new AccessLog(AccessLog.Level.INFO, 1, 4, out);
+
+        for (int i = 0; i < 10; i++) {
+            log.access("GET", "/" + i, 200, 0, 0);
+        }
+        assertEquals(6, log.getDropped());
+        assertEquals(4, log.drain());
+        assertTrue(out.toString().contains("WARN dropped=6 total_dropped=6"));
+        // Los espacios liberados se reutilizan en la siguiente vuelta
+        log.access("GET", "/again", 200, 0, 0);
+        assertEquals(1, log.drain());
+        assertTrue(out.toString().contains("path=/again"));
+    }
+
+    @Test
+    void testLevelsAndSampling() {
+        AccessLog off = new AccessLog(AccessLog.Level.OFF, 1, 16, new StringWriter());
+        assertFalse(off.sample());
+        assertFalse(off.isDebugEnabled());
+
+        AccessLog none = new AccessLog(AccessLog.Level.INFO, 0, 16, new StringWriter());
+        assertFalse(none.sample());
+        none.debug("ignored");
+        assertEquals(0, none.getDropped());
+
+        AccessLog all = new AccessLog(AccessLog.Level.INFO, 1, 16, new StringWriter());
+        assertTrue(all.sample());
+    }
+
+    @Test
+    void testConcurrentWritersLoseNothingUntilFull() throws Exception {
+        // Ningún registro se pierde ni se duplica con varios hilos escribiendo
+        StringWriter out = new StringWriter();
+        AccessLog log = new AccessLog(AccessLog.Level.INFO, 1, 1 << 16, out);
+        log.start();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    log.access("GET", "/load", 200, i, 0);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        log.close();
+
+        long lines = out.toString().lines().filter(l -> l.contains("path=/load")).count();
+        assertEquals(20_000, lines + log.getDropped());
+    }
+
+    @Test
+    void testCountingOutput() throws Exception {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        CountingOutput counted = new CountingOutput(target);
+        byte[] response = HttpServer.response("404 Not Found", "text/plain", "nope").getBytes(StandardCharsets.UTF_8);
+
+        counted.write(response, 0, response.length);
+        assertEquals(404, counted.getStatus());
+        assertEquals(response.length, counted.getBytes());
+        assertArrayEquals(response, target.toByteArray());
+    }
+}
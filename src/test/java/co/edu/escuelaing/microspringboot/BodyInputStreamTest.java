@@ -0,0 +1,144 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class BodyInputStreamTest {
+
+    private static final long MAX = 1024;
+
+    @Test
+    void testContentLengthLeavesPipelinedRequest() throws Exception {
+        // El cuerpo termina donde indica Content-Length, lo siguiente es otra petición
+        Request request = open("POST /a HTTP/1.1\r\nContent-Length: 5\r\n\r\nhelloGET /b HTTP/1.1\r\n\r\n", null);
+
+        assertEquals("hello", new String(request.body.readAllBytes(), StandardCharsets.US_ASCII));
+        assertEquals(-1, request.body.read());
+        request.input.compact();
+        HttpRequestParser next = new HttpRequestParser();
+        assertTrue(next.parse(request.input.buffer, 0, request.input.limit) > 0);
+        assertEquals("/b", next.getPath());
+    }
+
+    @Test
+    void testChunkedBodyIsDecoded() throws Exception {
+        // Las extensiones y los trailers se descartan
+        Request request = open("POST /a HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "5;name=value\r\nhello\r\n6\r\n world\r\n0\r\nChecksum: x\r\n\r\nnext", null);
+
+        assertEquals("hello world", new String(request.body.readAllBytes(), StandardCharsets.US_ASCII));
+        assertTrue(request.body.skipRemaining(0));
+        assertEquals('n', request.input.read());
+    }
+
+    @Test
+    void testChunksScanResumes() throws Exception {
+        // El motor nio encuentra el final del cuerpo aunque llegue byte a byte
+        byte[] body = "4\r\nwiki\r\n0\r\n\r\nGET".getBytes(StandardCharsets.US_ASCII);
+        BodyInputStream.Chunks chunks = new BodyInputStream.Chunks(MAX);
+        int end = -1;
+        for (int received = 1; received <= body.length && end < 0; received++) {
+            end = chunks.scan(body, 0, received);
+        }
+        assertEquals(body.length - 3, end);
+
+        BodyInputStream.Chunks tooLarge = new BodyInputStream.Chunks(MAX);
+        byte[] huge = "fffff\r\n".getBytes(StandardCharsets.US_ASCII);
+        HttpParseException e = assertThrows(HttpParseException.class, () -> tooLarge.scan(huge, 0, huge.length));
+        assertEquals("413 Content Too Large", e.getStatus());
+    }
+
+    @Test
+    void testStrayCarriageReturnIsRejected() throws Exception {
+        // Un CR solo se acepta justo antes de LF
+        for (String framing : new String[] {"1\r\r\r\nx\r\n0\r\n\r\n", "\r5\nhello\r\n0\r\n\r\n",
+                "1\rx\nx\r\n0\r\n\r\n", "1\r\nx\r\r\n0\r\n\r\n", "1;a=b\rc\r\nx\r\n0\r\n\r\n"}) {
+            byte[] bytes = framing.getBytes(StandardCharsets.US_ASCII);
+            BodyInputStream.Chunks chunks = new BodyInputStream.Chunks(MAX);
+            HttpParseException e = assertThrows(HttpParseException.class, () -> chunks.scan(bytes, 0, bytes.length),
+                    framing);
+            assertEquals("400 Bad Request", e.getStatus());
+        }
+        byte[] bareLineFeeds = "1\nx\n0\n\n".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(bareLineFeeds.length, new BodyInputStream.Chunks(MAX).scan(bareLineFeeds, 0, bareLineFeeds.length));
+    }
+
+    @Test
+    void testInvalidFraming() throws Exception {
+        assertStatus("400 Bad Request", "Transfer-Encoding: chunked\r\nContent-Length: 3\r\n");
+        assertStatus("400 Bad Request", "Content-Length: 3\r\nContent-Length: 4\r\n");
+        assertStatus("400 Bad Request", "Content-Length: -1\r\n");
+        assertStatus("413 Content Too Large", "Content-Length: 2048\r\n");
+        assertStatus("501 Not Implemented", "Transfer-Encoding: gzip, chunked\r\n");
+        assertEquals(0, BodyInputStream.length(parse("GET / HTTP/1.1\r\n\r\n"), MAX));
+        assertEquals(3, BodyInputStream.length(parse("POST / HTTP/1.1\r\nContent-Length: 3\r\ncontent-length: 3\r\n\r\n"), MAX));
+    }
+
+    @Test
+    void testContinueIsSentOnFirstRead() throws Exception {
+        // El cliente espera 100 Continue antes de enviar el cuerpo
+        ByteArrayOutputStream interim = new ByteArrayOutputStream();
+        Request request = open("POST /a HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: 2\r\n\r\nok", interim);
+        assertEquals(0, interim.size());
+        assertFalse(request.body.skipRemaining(MAX));
+
+        request = open("POST /a HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: 2\r\n\r\nok", interim);
+        assertEquals('o', request.body.read());
+        assertEquals("HTTP/1.1 100 Continue\r\n\r\n", interim.toString(StandardCharsets.US_ASCII));
+        assertTrue(request.body.skipRemaining(MAX));
+    }
+
+    @Test
+    void testLargeBodyIsStreamed() throws Exception {
+        // Un cuerpo más grande que el buffer se lee del socket sin reemplazar la cabecera
+        byte[] payload = new byte[100_000];
+        Arrays.fill(payload, (byte) 'x');
+        String head = "PUT /upload HTTP/1.1\r\nContent-Length: " + payload.length + "\r\n\r\n";
+        InputStream socket = new SequenceInputStream(
+                new ByteArrayInputStream(head.getBytes(StandardCharsets.US_ASCII)), new ByteArrayInputStream(payload));
+        ConnectionInput input = new ConnectionInput(socket, new byte[64], 0);
+        HttpRequestParser parser = new HttpRequestParser();
+        int headEnd;
+        while ((headEnd = parser.parse(input.buffer, 0, input.limit)) < 0) {
+            assertTrue(input.fillHead());
+        }
+        input.startBody(headEnd);
+        BodyInputStream body = BodyInputStream.open(parser, input, 1_000_000, null);
+
+        assertArrayEquals(payload, body.readAllBytes());
+        assertEquals("/upload", parser.getPath());
+        assertEquals(String.valueOf(payload.length), parser.getHeader("Content-Length"));
+    }
+
+    private static void assertStatus(String status, String headers) throws Exception {
+        HttpRequestParser head = parse("POST / HTTP/1.1\r\n" + headers + "\r\n");
+        HttpParseException e = assertThrows(HttpParseException.class, () -> BodyInputStream.length(head, MAX));
+        assertEquals(status, e.getStatus());
+    }
+
+    private static HttpRequestParser parse(String head) throws Exception {
+        HttpRequestParser parser = new HttpRequestParser();
+        byte[] bytes = head.getBytes(StandardCharsets.US_ASCII);
+        parser.parse(bytes, 0, bytes.length);
+        return parser;
+    }
+
+    private static Request open(String raw, ByteArrayOutputStream interim) throws Exception {
+        byte[] bytes = raw.getBytes(StandardCharsets.US_ASCII);
+        ConnectionInput input = new ConnectionInput(new ByteArrayInputStream(new byte[0]), bytes, bytes.length);
+        HttpRequestParser parser = new HttpRequestParser();
+        int headEnd = parser.parse(bytes, 0, bytes.length);
+        input.startBody(headEnd);
+        return new Request(input, BodyInputStream.open(parser, input, MAX, interim));
+    }
+
+    private record Request(ConnectionInput input, BodyInputStream body) {
+    }
+}
@@ -0,0 +1,127 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.function.Supplier;
+
+public class ChunkedBodyTest {
+
+    @Test
+    void testSupplierChunks() throws Exception {
+        Iterator<String> parts = List.of("hello", " ", "world").iterator();
+        Supplier<String> body = () -> parts.hasNext() ? parts.next() : null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ChunkedBody.write(body, new HttpResponse(), out, true, true);
+
+        String response = out.toString(StandardCharsets.US_ASCII);
+        assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(response.contains("transfer-encoding: chunked\r\n"));
+        assertFalse(response.contains("content-length"));
+        assertTrue(response.endsWith("\r\n\r\n5\r\nhello\r\n1\r\n \r\n5\r\nworld\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    void testPublisherChunks() throws Exception {
+        // Cada elemento se pide solo cuando el anterior ya se escribió
+        SubmissionPublisher<byte[]> publisher = new SubmissionPublisher<>();
+        Thread producer = new Thread(() -> {
+            while (publisher.getNumberOfSubscribers() == 0) {
+                Thread.onSpinWait();
+            }
+            publisher.submit("ab".getBytes(StandardCharsets.US_ASCII));
+            publisher.submit("cde".getBytes(StandardCharsets.US_ASCII));
+            publisher.close();
+        });
+        producer.start();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ChunkedBody.write(publisher, new HttpResponse(), out, false, true);
+
+        String response = out.toString(StandardCharsets.US_ASCII);
+        assertTrue(response.contains("connection: close\r\n"));
+        assertTrue(response.endsWith("\r\n\r\n2\r\nab\r\n3\r\ncde\r\n0\r\n\r\n"));
+        producer.join();
+    }
+
+    @Test
+    void testFullChunksReachTheSinkWithoutFlush() throws Exception {
+        // Un cuerpo que nunca llama a flush igual se envía por partes
+        class Sink extends ByteArrayOutputStream implements ChunkSink {
+            int chunks;
+
+            @Override
+            public void flushChunk() {
+                if (count > 0) {
+                    chunks++;
+                    reset();
+                }
+            }
+        }
+        Sink out = new Sink();
+        byte[] part = new byte[ChunkedBody.CHUNK_SIZE];
+        StreamingBody body = stream -> {
+            stream.write(part);
+            stream.write(part);
+            stream.write(part, 0, 10);
+        };
+
+        ChunkedBody.write(body, new HttpResponse(), out, true, true);
+
+        // Dos bloques llenos y el resto que close envía
+        assertEquals(3, out.chunks);
+    }
+
+    @Test
+    void testHttp10GetsRawBody() throws Exception {
+        StreamingBody body = out -> out.write("raw".getBytes(StandardCharsets.US_ASCII));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ChunkedBody.write(body, new HttpResponse(), out, false, false);
+
+        String response = out.toString(StandardCharsets.US_ASCII);
+        assertFalse(response.contains("transfer-encoding"));
+        assertTrue(response.endsWith("connection: close\r\n\r\nraw"));
+    }
+
+    @Test
+    void testStatusAndHeadersOfTheResponse() throws Exception {
+        // El código y las cabeceras que fijó el controlador se respetan, y lo ya escrito va primero
+        HttpResponse response = new HttpResponse();
+        response.setStatusCode(201);
+        response.setContentType("text/csv");
+        response.setHeader("x-export", "users");
+        response.write("id\n");
+        Iterator<String> rows = List.of("1\n", "2\n").iterator();
+        Supplier<String> body = () -> rows.hasNext() ? rows.next() : null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ChunkedBody.write(body, response, out, true, true);
+
+        String written = out.toString(StandardCharsets.US_ASCII);
+        assertTrue(written.startsWith("HTTP/1.1 201 Created\r\ncontent-type: text/csv\r\nx-export: users\r\n"));
+        assertTrue(written.contains("transfer-encoding: chunked\r\n"));
+        assertTrue(written.endsWith("\r\n\r\n5\r\nid\n1\n\r\n2\r\n2\n\r\n0\r\n\r\n"));
+    }
+
+    @Test
+    void testFailedBodyHasNoLastChunk() {
+        // Sin el trozo final el cliente sabe que la respuesta quedó incompleta
+        StreamingBody body = out -> {
+            out.write("partial".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            throw new IllegalStateException("boom");
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThrows(IOException.class, () -> ChunkedBody.write(body, new HttpResponse(), out, true, true));
+        assertTrue(out.toString(StandardCharsets.US_ASCII).endsWith("7\r\npartial\r\n"));
+    }
+}
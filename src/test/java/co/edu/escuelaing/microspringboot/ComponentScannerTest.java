@@ -0,0 +1,109 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class ComponentScannerTest {
+
+    @Deprecated(since = "1.0", forRemoval = true)
+    @RestController
+    public static class LegacyController {
+        @GetMapping("/legacy")
+        public static String legacy() {
+            return "legacy";
+        }
+    }
+
+    @Test
+    void testAnnotationIsReadFromTheClassFile() throws Exception {
+        assertTrue(hasRestController(GreetingController.class));
+        assertTrue(hasRestController(LegacyController.class));
+        assertFalse(hasRestController(HttpServer.class));
+        assertFalse(hasRestController(ComponentScannerTest.class));
+    }
+
+    @Test
+    void testDirectoryScanFindsOnlyControllers() throws Exception {
+        Path classes = Path.of(ComponentScannerTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+        List<String> names = ComponentScanner.findClassesInDirectory(classes, "co.edu.escuelaing.microspringboot");
+
+        assertTrue(names.contains(IntegrationController.class.getName()));
+        assertTrue(names.contains(LegacyController.class.getName()));
+        assertFalse(names.contains(ComponentScannerTest.class.getName()));
+    }
+
+    private static boolean hasRestController(Class<?> type) throws Exception {
+        String resource = type.getName().replace('.', '/') + ".class";
+        try (InputStream in = type.getClassLoader().getResourceAsStream(resource)) {
+            return ComponentScanner.hasAnnotation(in, ComponentScanner.REST_CONTROLLER);
+        }
+    }
+
+    @Test
+    void testGeneratedIndexListsTheControllers() throws Exception {
+        // El índice se genera al compilar, no hace falta recorrer el classpath
+        List<Class<?>> controllers = ComponentScanner.loadIndex("co.edu.escuelaing.microspringboot",
+                ComponentScanner.class.getClassLoader());
+
+        assertNotNull(controllers);
+        assertTrue(controllers.contains(GreetingController.class));
+        assertTrue(controllers.contains(HelloController.class));
+        assertTrue(controllers.contains(ExampleController.class));
+    }
+
+    @Test
+    void testIndexFiltersByPackageAndSkipsRouteLines(@TempDir Path dir) throws Exception {
+        Path index = dir.resolve(ComponentScanner.INDEX);
+        Files.createDirectories(index.getParent());
+        Files.writeString(index, "# comentario\n"
+                + "co.edu.escuelaing.microspringboot.IntegrationController\n"
+                + "co.edu.escuelaing.microspringboot.IntegrationController\thello\t/hello\t\n"
+                + "org.example.OtherController\n", StandardCharsets.UTF_8);
+
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()}, null) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                // Las clases vienen del classpath de la prueba, el índice del directorio temporal
+                return ComponentScannerTest.class.getClassLoader().loadClass(name);
+            }
+        }) {
+            List<Class<?>> controllers = ComponentScanner.loadIndex("co.edu.escuelaing.microspringboot", loader);
+
+            assertEquals(List.of(IntegrationController.class), controllers);
+        }
+    }
+
+    @Test
+    void testStaleIndexIsIgnored(@TempDir Path dir) throws Exception {
+        // Una clase que ya no existe o ya no es controlador obliga a recorrer el classpath
+        for (String stale : new String[] {"co.edu.escuelaing.microspringboot.RemovedController",
+                "co.edu.escuelaing.microspringboot.HttpServer"}) {
+            Path index = dir.resolve(ComponentScanner.INDEX);
+            Files.createDirectories(index.getParent());
+            Files.writeString(index, "co.edu.escuelaing.microspringboot.IntegrationController\n" + stale + "\n",
+                    StandardCharsets.UTF_8);
+
+            try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()},
+                    ComponentScannerTest.class.getClassLoader())) {
+                assertNull(ComponentScanner.loadIndex("co.edu.escuelaing.microspringboot", loader));
+            }
+        }
+    }
+
+    @Test
+    void testWithoutIndexReturnsNull(@TempDir Path dir) throws Exception {
+        try (URLClassLoader loader = new URLClassLoader(new URL[] {dir.toUri().toURL()}, null)) {
+            assertNull(ComponentScanner.loadIndex("co.edu.escuelaing.microspringboot", loader));
+        }
+    }
+}
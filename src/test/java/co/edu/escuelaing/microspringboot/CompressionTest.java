@@ -0,0 +1,64 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+public class CompressionTest {
+
+    @Test
+    void testAcceptEncodingNegotiation() {
+        assertTrue(Compression.acceptsGzip("gzip"));
+        assertTrue(Compression.acceptsGzip("deflate, gzip;q=0.5, br"));
+        assertTrue(Compression.acceptsGzip("*"));
+        assertFalse(Compression.acceptsGzip(null));
+        assertFalse(Compression.acceptsGzip("br, deflate"));
+        assertFalse(Compression.acceptsGzip("gzip;q=0"));
+        assertFalse(Compression.acceptsGzip("*, gzip;q=0.0"));
+        assertFalse(Compression.acceptsGzip("*;q=0"));
+    }
+
+    @Test
+    void testCompressibleTypes() {
+        assertTrue(Compression.isCompressible(HttpServer.getType(Path.of("index.html"))));
+        assertTrue(Compression.isCompressible(HttpServer.getType(Path.of("app.js"))));
+        assertTrue(Compression.isCompressible("application/json"));
+        assertFalse(Compression.isCompressible("image/png"));
+        assertFalse(Compression.isCompressible(null));
+    }
+
+    @Test
+    void testLargeDynamicResponsesAreCompressed() throws Exception {
+        // Solo las respuestas grandes se comprimen, y solo si el cliente lo acepta
+        String body = "x".repeat(Compression.MIN_DYNAMIC_BYTES);
+        String response = HttpServer.response("200 OK", "text/plain; charset=utf-8", body);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServer.writeResponse(out, response, true, true);
+        byte[] bytes = out.toByteArray();
+        String text = new String(bytes, StandardCharsets.ISO_8859_1);
+        int headEnd = text.indexOf("\r\n\r\n") + 4;
+        assertTrue(text.contains("content-encoding: gzip\r\n"));
+        assertTrue(text.contains("vary: Accept-Encoding\r\n"));
+        assertTrue(text.contains("content-length: " + (bytes.length - headEnd) + "\r\n"));
+        byte[] decoded = new GZIPInputStream(new ByteArrayInputStream(bytes, headEnd, bytes.length - headEnd)).readAllBytes();
+        assertEquals(body, new String(decoded, StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream identity = new ByteArrayOutputStream();
+        HttpServer.writeResponse(identity, response, false, false);
+        String plain = identity.toString(StandardCharsets.UTF_8);
+        assertTrue(plain.startsWith("HTTP/1.1 200 OK\r\nconnection: close\r\n"));
+        assertTrue(plain.contains("vary: Accept-Encoding\r\n"));
+        assertFalse(plain.contains("content-encoding"));
+        assertTrue(plain.endsWith("\r\n\r\n" + body));
+
+        ByteArrayOutputStream small = new ByteArrayOutputStream();
+        HttpServer.writeResponse(small, HttpServer.response("200 OK", "text/plain", "hi"), true, true);
+        assertFalse(small.toString(StandardCharsets.UTF_8).contains("gzip"));
+    }
+}
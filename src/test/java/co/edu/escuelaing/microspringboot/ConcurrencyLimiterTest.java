@@ -0,0 +1,96 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    @Test
+    void testRequestsOverTheLimitAreShed() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10, 100);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.release(FAST);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void testAdditiveIncreaseMultiplicativeDecrease() {
+        // Crece de a uno mientras se usa y se reduce un 10% con peticiones lentas
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 2, 30, 100);
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+        }
+        limiter.release(FAST);
+        assertEquals(21, limiter.getLimit());
+
+        limiter.tryAcquire();
+        limiter.release(SLOW);
+        assertEquals(18, limiter.getLimit());
+
+        // Sin carga el límite no crece
+        ConcurrencyLimiter idle = new ConcurrencyLimiter(20, 2, 30, 100);
+        idle.tryAcquire();
+        idle.release(FAST);
+        assertEquals(20, idle.getLimit());
+
+        for (int i = 0; i < 50; i++) {
+            idle.tryAcquire();
+            idle.release(SLOW);
+        }
+        assertEquals(2, idle.getLimit());
+    }
+
+    @Test
+    void testServeAnswers503WhenLimited() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 100);
+        ConcurrencyLimiter previous = HttpServer.limiter;
+        HttpServer.limiter = limiter;
+        try {
+            assertTrue(limiter.tryAcquire());
+            long rejected = HttpServer.metrics.getRejected(Metrics.CONCURRENCY_LIMIT);
+            HttpRequestParser head = new HttpRequestParser();
+            byte[] bytes = "GET / HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+            head.parse(bytes, 0, bytes.length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            assertFalse(HttpServer.serve(head, out, true));
+            String response = out.toString(StandardCharsets.US_ASCII);
+            assertTrue(response.startsWith("HTTP/1.1 503 Service Unavailable\r\n"));
+            assertTrue(response.contains("retry-after: 1\r\n"));
+            assertTrue(response.endsWith("\r\n\r\nService Unavailable"));
+            assertEquals(rejected + 1, HttpServer.metrics.getRejected(Metrics.CONCURRENCY_LIMIT));
+            assertEquals(1, limiter.getInFlight());
+        } finally {
+            HttpServer.limiter = previous;
+        }
+    }
+
+    @Test
+    void testAcceptorShedsConnection() throws Exception {
+        // La respuesta 503 sale directamente del hilo que acepta conexiones
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress("localhost", 0));
+            try (Socket client = new Socket("localhost", server.socket().getLocalPort())) {
+                SocketChannel accepted = server.accept();
+                HttpServer.shed(accepted);
+                String response = new String(client.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+                assertTrue(response.startsWith("HTTP/1.1 503 Service Unavailable\r\n"));
+                assertFalse(accepted.isOpen());
+            }
+        }
+    }
+}
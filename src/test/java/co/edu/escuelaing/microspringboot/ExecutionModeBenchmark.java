@@ -0,0 +1,95 @@
+package co.edu.escuelaing.microspringboot;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+/**
+ * Compares the fixed pool of 10 threads with the thread-per-connection
+ * executor when every handler blocks for {@link #HANDLER_BLOCK_MS}.
+ * Run with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=co.edu.escuelaing.microspringboot.ExecutionModeBenchmark
+ * </pre>
+ */
+public class ExecutionModeBenchmark {
+
+    private static final int HANDLER_BLOCK_MS = 50;
+    private static final int[] CLIENTS = {10, 100, 1000};
+
+    public static void main(String[] args) throws Exception {
+        System.out.printf("%-10s %8s %12s %14s%n", "mode", "clients", "elapsed ms", "requests/s");
+        for (int clients : CLIENTS) {
+            run("fixed-10", Executors.newFixedThreadPool(10), clients);
+            run("virtual", new ThreadPerTaskExecutor(clients), clients);
+        }
+    }
+
+    private static void run(String mode, ExecutorService executor, int clients) throws Exception {
+        try (ServerSocket server = new ServerSocket(0, clients)) {
+            Thread acceptor = new Thread(() -> acceptLoop(server, executor));
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            ExecutorService clientPool = Executors.newFixedThreadPool(clients);
+            CountDownLatch done = new CountDownLatch(clients);
+            long start = System.nanoTime();
+            for (int i = 0; i < clients; i++) {
+                clientPool.execute(() -> {
+                    try {
+                        request(server.getLocalPort());
+                    } catch (IOException e) {
+                        System.err.println("Request failed: " + e.getMessage());
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            done.await();
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            System.out.printf("%-10s %8d %12d %14.1f%n", mode, clients, elapsedMs,
+                    clients * 1000.0 / Math.max(1, elapsedMs));
+            clientPool.shutdown();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void acceptLoop(ServerSocket server, ExecutorService executor) {
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                executor.execute(() -> handle(socket));
+            }
+        } catch (IOException | RejectedExecutionException e) {
+            // Server socket closed at the end of the run
+        }
+    }
+
+    private static void handle(Socket socket) {
+        try (socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            String line;
+            while ((line = in.readLine()) != null && !line.isEmpty()) {
+                // Drain the request head
+            }
+            // Simulates a controller blocked on a downstream call
+            Thread.sleep(HANDLER_BLOCK_MS);
+            socket.getOutputStream().write("HTTP/1.1 200 OK\r\ncontent-length: 2\r\n\r\nok"
+                    .getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException | InterruptedException e) {
+            // Client went away
+        }
+    }
+
+    private static void request(int port) throws IOException {
+        try (Socket socket = new Socket("localhost", port)) {
+            socket.getOutputStream().write("GET / HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            socket.getInputStream().readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+public class HttpRequestParserTest {
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void testCompleteHead() throws Exception {
+        // Una cabecera completa expone método, destino, versión y headers
+        byte[] buf = bytes("GET /user?name=ana HTTP/1.1\r\nHost: localhost\r\nX-Trace:  abc \r\n\r\n");
+        HttpRequestParser parser = new HttpRequestParser();
+
+        assertEquals(buf.length, parser.parse(buf, 0, buf.length));
+        assertTrue(parser.isComplete());
+        assertEquals("GET", parser.getMethod());
+        assertEquals("/user?name=ana", parser.getTarget());
+        assertEquals("/user", parser.getPath());
+        assertEquals("name=ana", parser.getQuery());
+        assertEquals("HTTP/1.1", parser.getVersion());
+        assertEquals(2, parser.getHeaderCount());
+        assertEquals("localhost", parser.getHeader("host"));
+        assertEquals("abc", parser.getHeader("X-TRACE"));
+        assertNull(parser.getHeader("Accept"));
+    }
+
+    @Test
+    void testFragmentedHead() throws Exception {
+        // La cabecera llega en varios pedazos y el parser continúa donde quedó
+        byte[] buf = bytes("GET /hello HTTP/1.1\r\nHost: localhost\r\n\r\n");
+        HttpRequestParser parser = new HttpRequestParser();
+
+        assertEquals(-1, parser.parse(buf, 0, 7));
+        assertEquals(-1, parser.parse(buf, 0, 22));
+        assertEquals(-1, parser.parse(buf, 0, buf.length - 1));
+        assertEquals(buf.length, parser.parse(buf, 0, buf.length));
+        assertEquals("/hello", parser.getTarget());
+    }
+
+    @Test
+    void testPipelinedHeads() throws Exception {
+        // El parser se detiene al final de la primera petición
+        byte[] buf = bytes("GET /a HTTP/1.1\r\n\r\nGET /b HTTP/1.1\r\n\r\n");
+        HttpRequestParser parser = new HttpRequestParser();
+
+        int end = parser.parse(buf, 0, buf.length);
+        assertEquals("/a", parser.getTarget());
+        parser.reset();
+        assertEquals(buf.length, parser.parse(buf, end, buf.length));
+        assertEquals("/b", parser.getTarget());
+    }
+
+    @Test
+    void testBareLineFeeds() throws Exception {
+        byte[] buf = bytes("\nGET / HTTP/1.0\nConnection: keep-alive\n\n");
+        HttpRequestParser parser = new HttpRequestParser();
+
+        assertEquals(buf.length, parser.parse(buf, 0, buf.length));
+        assertTrue(parser.isVersion("HTTP/1.0"));
+        assertTrue(parser.headerEquals("connection", "Keep-Alive"));
+    }
+
+    @Test
+    void testMalformedRequestLine() {
+        byte[] buf = bytes("INVALID REQUEST FORMAT HERE\r\n\r\n");
+        HttpParseException e = assertThrows(HttpParseException.class,
+                () -> new HttpRequestParser().parse(buf, 0, buf.length));
+        assertEquals("400 Bad Request", e.getStatus());
+    }
+
+    @Test
+    void testWhitespaceInHeaderName() {
+        // Un espacio antes de los dos puntos permite request smuggling, se rechaza
+        for (String field : new String[] {"Content-Length : 5", "Transfer-Encoding\t: chunked", "X Forwarded: a"}) {
+            byte[] buf = bytes("POST / HTTP/1.1\r\n" + field + "\r\n\r\n");
+            HttpParseException e = assertThrows(HttpParseException.class,
+                    () -> new HttpRequestParser().parse(buf, 0, buf.length));
+            assertEquals("400 Bad Request", e.getStatus());
+        }
+    }
+
+    @Test
+    void testLimits() {
+        // Líneas o cabeceras demasiado grandes se rechazan sin esperar el final
+        byte[] longLine = bytes("GET /" + "a".repeat(200));
+        HttpParseException e1 = assertThrows(HttpParseException.class,
+                () -> new HttpRequestParser(100, 1000).parse(longLine, 0, longLine.length));
+        assertEquals("414 URI Too Long", e1.getStatus());
+
+        byte[] bigHead = bytes("GET / HTTP/1.1\r\nX-Big: " + "b".repeat(2000));
+        HttpParseException e2 = assertThrows(HttpParseException.class,
+                () -> new HttpRequestParser(100, 1000).parse(bigHead, 0, bigHead.length));
+        assertEquals("431 Request Header Fields Too Large", e2.getStatus());
+
+        // Una serie de líneas vacías sin petición no hace crecer el buffer sin límite
+        byte[] emptyLines = bytes("\r\n".repeat(600));
+        HttpParseException e3 = assertThrows(HttpParseException.class,
+                () -> new HttpRequestParser(100, 1000).parse(emptyLines, 0, emptyLines.length));
+        assertEquals("431 Request Header Fields Too Large", e3.getStatus());
+    }
+
+    @Test
+    void testHttpRequestHeaders() throws Exception {
+        // HttpRequest expone los headers de la petición
+        byte[] buf = bytes("GET /greeting HTTP/1.1\r\nAccept: text/plain\r\n\r\n");
+        HttpRequestParser parser = new HttpRequestParser();
+        parser.parse(buf, 0, buf.length);
+
+        HttpRequest request = new HttpRequest(new URI(parser.getTarget()), parser);
+        assertEquals("GET", request.getMethod());
+        assertEquals("text/plain", request.getHeader("accept"));
+        assertNull(new HttpRequest(new URI("/greeting")).getHeader("accept"));
+    }
+}
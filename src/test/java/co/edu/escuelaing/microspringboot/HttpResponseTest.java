@@ -0,0 +1,102 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class HttpResponseTest {
+
+    private static String written(HttpResponse response, boolean keepAlive, boolean acceptsGzip) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.writeTo(out, keepAlive, acceptsGzip);
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    void testHeadIsWrittenInOrder() throws Exception {
+        HttpResponse response = new HttpResponse();
+        response.setHeader("Cache-Control", "no-store");
+        response.write("hola");
+        assertEquals("HTTP/1.1 200 OK\r\ncontent-type: text/plain; charset=utf-8\r\n"
+                + "Cache-Control: no-store\r\ncontent-length: 4\r\n\r\nhola", written(response, true, false));
+    }
+
+    @Test
+    void testStatusCodeSetsReasonPhrase() throws Exception {
+        HttpResponse response = new HttpResponse();
+        response.setStatusCode(404);
+        assertEquals("Not Found", response.getStatusMessage());
+        response.setStatusCode(204);
+        // Sin cuerpo ni content-length en un 204
+        assertEquals("HTTP/1.1 204 No Content\r\ncontent-type: text/plain; charset=utf-8\r\n"
+                + "connection: close\r\n\r\n", written(response, false, false));
+    }
+
+    @Test
+    void testUtf8BodyAndOutputStream() throws Exception {
+        HttpResponse response = new HttpResponse();
+        response.write("año ");
+        response.getOutputStream().write("ñ".getBytes(StandardCharsets.UTF_8));
+        assertEquals(7, response.getBodyLength());
+        assertEquals("año ñ", response.getBodyAsString());
+    }
+
+    @Test
+    void testLargeBodiesAreCompressed() throws Exception {
+        HttpResponse response = new HttpResponse();
+        response.setContentType("application/json");
+        response.write("[" + "1,".repeat(Compression.MIN_DYNAMIC_BYTES) + "1]");
+        String text = written(response, true, true);
+        assertTrue(text.contains("vary: Accept-Encoding\r\ncontent-encoding: gzip\r\n"));
+        assertTrue(text.length() < Compression.MIN_DYNAMIC_BYTES);
+    }
+
+    @Test
+    void testEncodedBodiesAreNotCompressedAgain() throws Exception {
+        // Si el controlador ya comprimió el cuerpo, el servidor lo envía tal cual
+        byte[] json = ("[" + "1,".repeat(Compression.MIN_DYNAMIC_BYTES) + "1]").getBytes(StandardCharsets.UTF_8);
+        byte[] gzipped = Compression.gzip(json);
+        HttpResponse response = new HttpResponse();
+        response.setContentType("application/json");
+        response.setHeader("Content-Encoding", "gzip");
+        response.write(gzipped);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.writeTo(out, true, true);
+        String text = out.toString(StandardCharsets.ISO_8859_1);
+        int headEnd = text.indexOf("\r\n\r\n") + 4;
+
+        assertTrue(text.contains("Content-Encoding: gzip\r\ncontent-length: " + gzipped.length + "\r\n"));
+        assertFalse(text.contains("content-encoding: gzip"));
+        assertFalse(text.contains("vary: Accept-Encoding"));
+        assertArrayEquals(gzipped, Arrays.copyOfRange(out.toByteArray(), headEnd, out.size()));
+    }
+
+    @Test
+    void testReleasedBuffersAreReused() {
+        // El buffer del cuerpo vuelve al pool y no conserva el contenido anterior
+        HttpResponse first = new HttpResponse();
+        first.write("first body");
+        first.release();
+        HttpResponse second = new HttpResponse();
+        second.write("x");
+        assertEquals("x", second.getBodyAsString());
+        second.release();
+    }
+
+    @Test
+    void testInvalidHeadersAreRejected() {
+        HttpResponse response = new HttpResponse();
+        assertThrows(IllegalArgumentException.class, () -> response.setHeader("Content-Length", "1"));
+        assertThrows(IllegalArgumentException.class, () -> response.setHeader("X-Test", "a\r\nSet-Cookie: b"));
+        assertThrows(IllegalArgumentException.class, () -> response.setHeader("X-Test: a\r\nSet-Cookie", "b"));
+        assertThrows(IllegalArgumentException.class, () -> response.setHeader("X-Test:", "a"));
+        assertThrows(IllegalArgumentException.class, () -> response.setHeader("X Test", "a"));
+        assertThrows(IllegalArgumentException.class, () -> response.setHeader("X-Test\t", "a"));
+        assertThrows(IllegalArgumentException.class, () -> response.setHeader("", "a"));
+        assertThrows(IllegalArgumentException.class, () -> response.setStatusCode(42));
+    }
+}
@@ -9,8 +9,10 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Files;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Map;
 
@@ -33,6 +35,24 @@ public class HttpServerTest {
             return "ID: " + id + ", Type: " + type;
         }
         
+        @GetMapping("/created")
+        public static void created(@RequestParam("name") String name, HttpResponse response) {
+            response.setStatusCode(201);
+            response.setContentType("application/json; charset=utf-8");
+            response.setHeader("Location", "/users/" + name);
+            response.write("{\"name\":\"" + name + "\"}");
+        }
+        
+        @GetMapping("/square")
+        public static String square(@RequestParam("n") int n) {
+            return String.valueOf(n * n);
+        }
+        
+        @GetMapping("/profile")
+        public static Map<String, Object> profile(@RequestParam("name") String name) {
+            return Map.of("name", name);
+        }
+        
         @GetMapping("/error")
         public static String errorMethod() {
             throw new RuntimeException("Test error");
@@ -46,17 +66,16 @@ public class HttpServerTest {
     void setUp() {
         // Limpiar servicios antes de cada test
         HttpServer.services.clear();
-        HttpServer.requests.clear();
         
         // Restaurar directorio por defecto
         HttpServer.ROOT_DIRECTORY = "target/classes/webroot";
+        HttpServer.fileSystemStatic = false;
     }
     
     @AfterEach
     void tearDown() {
         // Limpiar después de cada test
         HttpServer.services.clear();
-        HttpServer.requests.clear();
     }
     
     // ========== TESTS DE REGISTRO DE SERVICIOS ==========
@@ -144,6 +163,10 @@ public class HttpServerTest {
         URI uri2 = new URI("/test?");
         String response2 = HttpServer.greetingService(uri2, false);
         assertTrue(response2.contains("HTTP/1.1 400 Bad Request"));
+        
+        // El nombre se busca por su clave, no se toma el primer valor de la consulta
+        String response3 = HttpServer.greetingService(new URI("/test?lang=es&name=Ana"), false);
+        assertTrue(response3.contains("Hello Ana"));
     }
     
     // ========== TESTS DE CARGA DE COMPONENTES ==========
@@ -197,4 +220,137 @@ public class HttpServerTest {
         String response2 = HttpServer.invokeService(uri2);
         assertTrue(response2.contains("HTTP/1.1 500 Internal Server Error"));
     }
+
+    // ========== TESTS DE CONEXIONES PERSISTENTES ==========
+    
+    @Test
+    void testResponsesCarryContentLength() throws Exception {
+        // Toda respuesta debe indicar su tamaño para poder reutilizar la conexión
+        HttpServer.loadComponent(TestController.class);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServer.handleRequest(new URI("/greeting?name=Ana"), out, true);
+        
+        String response = out.toString(StandardCharsets.UTF_8);
+        assertTrue(response.contains("content-length: 9\r\n"));
+        assertFalse(response.contains("connection: close"));
+        assertTrue(response.endsWith("\r\n\r\nHello Ana"));
+    }
+    
+    @Test
+    void testControllerWritesHttpResponse() throws Exception {
+        // El controlador define estado, tipo de contenido y cabeceras con el HttpResponse inyectado
+        HttpServer.loadComponent(TestController.class);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServer.handleRequest(new URI("/created?name=ana"), out, false);
+        
+        String response = out.toString(StandardCharsets.UTF_8);
+        assertTrue(response.startsWith("HTTP/1.1 201 Created\r\ncontent-type: application/json; charset=utf-8\r\n"));
+        assertTrue(response.contains("Location: /users/ana\r\n"));
+        assertTrue(response.contains("content-length: 14\r\n"));
+        assertTrue(response.contains("connection: close\r\n"));
+        assertTrue(response.endsWith("\r\n\r\n{\"name\":\"ana\"}"));
+    }
+    
+    @Test
+    void testObjectResultsAreJson() throws Exception {
+        // Un mapa o un record devuelto por el controlador se envía como JSON escapado
+        HttpServer.loadComponent(TestController.class);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServer.handleRequest(new URI("/profile?name=%22Ana%22"), out, true);
+        
+        String response = out.toString(StandardCharsets.UTF_8);
+        assertTrue(response.startsWith("HTTP/1.1 200 OK\r\ncontent-type: application/json; charset=utf-8\r\n"));
+        assertTrue(response.endsWith("\r\n\r\n{\"name\":\"\\\"Ana\\\"\"}"));
+        
+        HttpServer.get("/greeting/json", GreetingController.class.getMethod("greetingJson", String.class));
+        assertTrue(HttpServer.invokeService(new URI("/greeting/json?name=Bob")).endsWith("{\"msg\":\"Hello, Bob!\"}"));
+        assertTrue(HttpServer.greetingService(new URI("/test?name=a%22b"), false).endsWith("{\"msg\":\"Hello a\\\"b\"}"));
+    }
+    
+    @Test
+    void testInvalidParameterIsBadRequest() throws Exception {
+        // Un valor que no se puede convertir responde 400 con el motivo, no 500
+        HttpServer.loadComponent(TestController.class);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServer.handleRequest(new URI("/square?n=four"), out, true);
+        
+        String response = out.toString(StandardCharsets.UTF_8);
+        assertTrue(response.startsWith("HTTP/1.1 400 Bad Request\r\n"));
+        assertTrue(response.endsWith("Invalid value 'four' for parameter 'n', expected an integer"));
+        assertTrue(HttpServer.invokeService(new URI("/square?n=5")).endsWith("\r\n\r\n25"));
+    }
+    
+    @Test
+    void testTraversalIsBadRequest() throws Exception {
+        // Un destino que sale de la raíz se responde con 400 y se cierra la conexión
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertFalse(HttpServer.serve(parse("GET /%2e%2e/pom.xml HTTP/1.1\r\n\r\n"), out, true));
+        
+        String response = out.toString(StandardCharsets.UTF_8);
+        assertTrue(response.startsWith("HTTP/1.1 400 Bad Request\r\n"));
+        assertTrue(response.endsWith("Request path leaves the root"));
+    }
+    
+    @Test
+    void testHelloPostReadsFormBody() throws Exception {
+        // El formulario llega en el cuerpo y solo se acepta con POST
+        byte[] raw = "POST /app/hellopost HTTP/1.1\r\nContent-Length: 9\r\n\r\nname=Ana+".getBytes(
+                StandardCharsets.US_ASCII);
+        HttpRequestParser head = new HttpRequestParser();
+        ConnectionInput input = new ConnectionInput(null, raw, raw.length);
+        input.startBody(head.parse(raw, 0, raw.length));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(HttpServer.serve(head, BodyInputStream.open(head, input, 1024, null), out, true));
+        String response = out.toString(StandardCharsets.UTF_8);
+        assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(response.contains("Hello Ana "));
+
+        ByteArrayOutputStream get = new ByteArrayOutputStream();
+        HttpServer.handleRequest(new URI("/app/hellopost?name=Ana"), get, true);
+        String notAllowed = get.toString(StandardCharsets.UTF_8);
+        assertTrue(notAllowed.startsWith("HTTP/1.1 405 Method Not Allowed\r\nallow: POST\r\n"));
+    }
+    
+    @Test
+    void testConnectionCloseHeader() throws Exception {
+        // Cuando la conexión no se reutiliza se avisa al cliente
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServer.handleRequest(new URI("/missing.txt"), out, false);
+        
+        String response = out.toString(StandardCharsets.UTF_8);
+        assertTrue(response.startsWith("HTTP/1.1 404 Not Found\r\nconnection: close\r\n"));
+    }
+    
+    @Test
+    void testKeepAliveRules() throws Exception {
+        assertTrue(HttpServer.isKeepAlive(parse("GET / HTTP/1.1\r\n\r\n")));
+        assertTrue(HttpServer.isKeepAlive(parse("GET / HTTP/1.1\r\nConnection: keep-alive\r\n\r\n")));
+        assertFalse(HttpServer.isKeepAlive(parse("GET / HTTP/1.1\r\nConnection: Close\r\n\r\n")));
+        assertFalse(HttpServer.isKeepAlive(parse("GET / HTTP/1.0\r\n\r\n")));
+    }
+    
+    @Test
+    void testConditionalGetReturnsNotModified() throws Exception {
+        // Una segunda visita con el ETag recibido no vuelve a descargar el archivo
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        HttpServer.handleRequest(new HttpRequest(new URI("/style.css"), parse("GET /style.css HTTP/1.1\r\n\r\n")),
+                first, true);
+        String etag = HttpServer.staticFiles.get("/style.css").etag();
+        assertTrue(first.toString(StandardCharsets.UTF_8).contains("etag: " + etag + "\r\n"));
+
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        HttpServer.handleRequest(new HttpRequest(new URI("/style.css"),
+                parse("GET /style.css HTTP/1.1\r\nIf-None-Match: " + etag + "\r\n\r\n")), second, true);
+        String response = second.toString(StandardCharsets.UTF_8);
+        assertTrue(response.startsWith("HTTP/1.1 304 Not Modified\r\n"));
+        assertTrue(response.endsWith("\r\n\r\n"));
+        assertFalse(response.contains("content-length"));
+    }
+    
+    private static HttpRequestParser parse(String head) throws Exception {
+        HttpRequestParser parser = new HttpRequestParser();
+        byte[] bytes = head.getBytes(StandardCharsets.US_ASCII);
+        parser.parse(bytes, 0, bytes.length);
+        return parser;
+    }
 }
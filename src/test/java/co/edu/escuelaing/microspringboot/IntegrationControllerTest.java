@@ -17,7 +17,6 @@ public class IntegrationControllerTest {
     void setUp() {
         // Limpiar estado antes de cada test
         HttpServer.services.clear();
-        HttpServer.requests.clear();
         
         // Cargar el controlador de integración
         HttpServer.loadComponent(IntegrationController.class);
@@ -27,7 +26,6 @@ public class IntegrationControllerTest {
     void tearDown() {
         // Limpiar después de cada test
         HttpServer.services.clear();
-        HttpServer.requests.clear();
     }
     
     @Test
@@ -88,10 +86,11 @@ public class IntegrationControllerTest {
     void testAnnotationsAndRegistration() {
         // Test que las anotaciones y registros funcionan correctamente
         assertTrue(IntegrationController.class.isAnnotationPresent(RestController.class));
-        assertTrue(HttpServer.requests.containsKey("/greeting"));
-        assertTrue(HttpServer.requests.containsKey("/user"));
-        assertTrue(HttpServer.requests.containsKey("/math"));
-        assertFalse(HttpServer.requests.containsKey("/hello"));
+        assertTrue(HttpServer.services.containsKey("/hello"));
+        assertTrue(HttpServer.services.containsKey("/greeting"));
+        assertTrue(HttpServer.services.containsKey("/user"));
+        assertTrue(HttpServer.services.containsKey("/math"));
+        assertTrue(HttpServer.services.get("/user").getParameters()[1].isAnnotationPresent(RequestParam.class));
     }
     
     @Test
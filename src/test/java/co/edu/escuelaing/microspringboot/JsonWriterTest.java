@@ -0,0 +1,115 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+public class JsonWriterTest {
+
+    public enum Role { ADMIN, GUEST }
+
+    public record User(String name, int age, List<Role> roles, Optional<String> email) {
+    }
+
+    public static class Account {
+        public final String id = "a-1";
+        private final User owner = new User("Ana", 30, List.of(Role.ADMIN), Optional.empty());
+
+        public User getOwner() {
+            return owner;
+        }
+
+        public boolean isActive() {
+            return true;
+        }
+
+        public double getBalance() {
+            return 10.5;
+        }
+
+        public static String getIgnored() {
+            return "static";
+        }
+    }
+
+    public static class Node {
+        public Node next;
+    }
+
+    public record Counters(byte b, short s, int i, long l, boolean on, String label, Integer boxed, char c) {
+    }
+
+    @Test
+    void testRecordsAndPojos() {
+        // Los records conservan el orden de sus componentes, los POJO se ordenan por nombre
+        assertEquals("{\"name\":\"Ana\",\"age\":30,\"roles\":[\"ADMIN\",\"GUEST\"],\"email\":\"a@b.co\"}",
+                json(new User("Ana", 30, List.of(Role.ADMIN, Role.GUEST), Optional.of("a@b.co"))));
+        assertEquals("{\"active\":true,\"balance\":10.5,\"id\":\"a-1\",\"owner\":{\"name\":\"Ana\",\"age\":30,"
+                + "\"roles\":[\"ADMIN\"],\"email\":null}}", json(new Account()));
+    }
+
+    @Test
+    void testCollectionsAndScalars() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("ids", new int[]{1, -2, 3});
+        map.put("big", new long[]{Long.MIN_VALUE});
+        map.put("tags", new String[]{"x"});
+        map.put("date", LocalDate.of(2024, 2, 29));
+        map.put("nan", Double.NaN);
+        map.put("none", null);
+        map.put("empty", new Object[0]);
+        assertEquals("{\"ids\":[1,-2,3],\"big\":[-9223372036854775808],\"tags\":[\"x\"],\"date\":\"2024-02-29\","
+                + "\"nan\":null,\"none\":null,\"empty\":[]}", json(map));
+        assertTrue(JsonWriter.isJson(map));
+        assertTrue(JsonWriter.isJson(new Account()));
+        assertFalse(JsonWriter.isJson("text"));
+        assertFalse(JsonWriter.isJson(42));
+        assertFalse(JsonWriter.isJson(Role.ADMIN));
+    }
+
+    @Test
+    void testPrimitivePropertiesAreWrittenWithoutBoxing() {
+        // Cada tipo de propiedad tiene su propio camino, los nulos y los tipos sin camino propio siguen igual
+        assertEquals("{\"b\":-1,\"s\":300,\"i\":-7,\"l\":9223372036854775807,\"on\":false,\"label\":null,"
+                + "\"boxed\":5,\"c\":\"x\"}",
+                json(new Counters((byte) -1, (short) 300, -7, Long.MAX_VALUE, false, null, 5, 'x')));
+        assertEquals("{\"b\":0,\"s\":0,\"i\":0,\"l\":0,\"on\":true,\"label\":\"a\\\"b\",\"boxed\":null,\"c\":\"\\n\"}",
+                json(new Counters((byte) 0, (short) 0, 0, 0, true, "a\"b", null, '\n')));
+    }
+
+    @Test
+    void testStringsAreEscaped() {
+        // Comillas, barras y caracteres de control no pueden romper el documento
+        assertEquals("\"a\\\"b\\\\c\\n\\t\\u0001\"", json("a\"b\\c\n\t\u0001"));
+        String unicode = json("ñ€😀");
+        assertEquals("\"ñ€😀\"", unicode);
+        assertEquals("\"?\"", json("\uD83D"));
+    }
+
+    @Test
+    void testCyclesAreRejected() {
+        Node node = new Node();
+        node.next = node;
+        assertThrows(IllegalStateException.class, () -> json(node));
+        List<Object> list = new ArrayList<>();
+        list.add(list);
+        assertThrows(IllegalStateException.class, () -> json(list));
+    }
+
+    private static String json(Object value) {
+        HttpResponse out = new HttpResponse();
+        try {
+            JsonWriter.write(value, out);
+            return out.getBodyAsString();
+        } finally {
+            out.release();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class MetricsTest {
+
+    @AfterEach
+    void tearDown() {
+        HttpServer.services.clear();
+    }
+
+    @Test
+    void testHistogramBuckets() {
+        // Cada potencia de dos se divide en cuatro cubetas lineales
+        assertEquals(3, LatencyHistogram.index(3));
+        assertEquals(4, LatencyHistogram.index(4));
+        assertEquals(LatencyHistogram.index(1000), LatencyHistogram.index(1023));
+        assertNotEquals(LatencyHistogram.index(1023), LatencyHistogram.index(1024));
+        assertTrue(LatencyHistogram.index(Long.MAX_VALUE) > LatencyHistogram.index(1L << 36));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10_000);          // 10 us
+        histogram.record(1_500_000);       // 1.5 ms
+        histogram.record(2_000_000_000L);  // 2 s
+        assertEquals(1, histogram.countAtMost(5));
+        assertEquals(2, histogram.countAtMost(11));
+        assertEquals(3, histogram.countAtMost(21));
+        assertEquals(3, histogram.count());
+        assertEquals(2_001_510_000L, histogram.sumNanos());
+
+        // Un valor justo en el límite cuenta en esa cubeta (le = menor o igual)
+        LatencyHistogram boundary = new LatencyHistogram();
+        boundary.record(32_000);           // 32 us
+        boundary.record(32_001);
+        assertEquals(0, boundary.countAtMost(4));
+        assertEquals(1, boundary.countAtMost(5));
+        assertEquals(2, boundary.countAtMost(6));
+    }
+
+    @Test
+    void testPrometheusFormat() {
+        Metrics metrics = new Metrics();
+        metrics.record("/users/{id}", 200, 120, 40_000);
+        metrics.record("/users/{id}", 200, 80, 60_000);
+        metrics.record("/users/{id}", 500, 50, 2_000_000);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            String page = metrics.render(pool, new StaticFileCache("webroot", 1024), null, null);
+
+            assertTrue(page.contains("# TYPE http_requests_total counter\n"));
+            assertTrue(page.contains("http_requests_total{route=\"/users/{id}\",status=\"200\"} 2\n"));
+            assertTrue(page.contains("http_requests_total{route=\"/users/{id}\",status=\"500\"} 1\n"));
+            assertTrue(page.contains("http_response_bytes_total{route=\"/users/{id}\"} 250\n"));
+            assertTrue(page.contains("http_request_duration_seconds_bucket{route=\"/users/{id}\",le=\"0.000032\"} 0\n"));
+            assertTrue(page.contains("http_request_duration_seconds_bucket{route=\"/users/{id}\",le=\"0.000064\"} 2\n"));
+            assertTrue(page.contains("http_request_duration_seconds_bucket{route=\"/users/{id}\",le=\"+Inf\"} 3\n"));
+            assertTrue(page.contains("http_request_duration_seconds_count{route=\"/users/{id}\"} 3\n"));
+            assertTrue(page.contains("http_executor_active_workers 0\n"));
+            assertTrue(page.contains("http_executor_queued_tasks 0\n"));
+            assertTrue(page.contains("static_cache_hits_total 0\n"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testRequestsAreRecordedByRoute() throws Exception {
+        // Las peticiones se agrupan por plantilla de ruta, no por ruta concreta
+        HttpServer.loadComponent(RouteTableTest.UserController.class);
+        serve("GET /users/41 HTTP/1.1\r\n\r\n");
+        serve("GET /users/42 HTTP/1.1\r\n\r\n");
+        serve("GET /no-such-file.txt HTTP/1.1\r\n\r\n");
+
+        String page = serve("GET /metrics HTTP/1.1\r\n\r\n");
+        assertTrue(page.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(page.contains("content-type: " + Metrics.CONTENT_TYPE));
+        assertTrue(page.contains("http_requests_total{route=\"/users/{id}\",status=\"200\"} 2\n"));
+        assertTrue(page.contains("http_requests_total{route=\"static\",status=\"404\"}"));
+        assertFalse(page.contains("/users/41"));
+    }
+
+    private static String serve(String head) throws Exception {
+        HttpRequestParser parser = new HttpRequestParser();
+        byte[] bytes = head.getBytes(StandardCharsets.US_ASCII);
+        parser.parse(bytes, 0, bytes.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpServer.serve(parser, out, true);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,347 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the selector based engine.
+ */
+public class NioEngineTest {
+
+    private static final int SERVER_PORT = 35002;
+    private static CountDownLatch firstChunkRead;
+
+    @RestController
+    public static class StreamingController {
+        @GetMapping("/stream")
+        public static StreamingBody stream() {
+            return out -> {
+                out.write("first".getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                try {
+                    // El segundo trozo solo se produce cuando el cliente ya recibió el primero
+                    if (!firstChunkRead.await(5, TimeUnit.SECONDS)) {
+                        throw new IOException("First chunk was not delivered");
+                    }
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                out.write("second".getBytes(StandardCharsets.US_ASCII));
+            };
+        }
+    }
+
+    @RestController
+    public static class UploadController {
+        @PostMapping("/echo")
+        public static String echo(@RequestBody String body) {
+            return "Echo " + body;
+        }
+
+        @PutMapping("/upload")
+        public static String upload(@RequestBody InputStream body) throws IOException {
+            long count = 0;
+            byte[] buffer = new byte[1000];
+            int n;
+            while ((n = body.read(buffer)) >= 0) {
+                count += n;
+            }
+            return "Received " + count;
+        }
+
+        @DeleteMapping("/echo")
+        public static String delete() {
+            return "Deleted";
+        }
+    }
+
+    private ExecutorService workers;
+    private NioEngine engine;
+    private Thread acceptor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        HttpServer.services.clear();
+        HttpServer.loadComponent(IntegrationController.class);
+        HttpServer.loadComponent(StreamingController.class);
+        HttpServer.loadComponent(UploadController.class);
+
+        workers = Executors.newFixedThreadPool(4);
+        engine = new NioEngine(SERVER_PORT, 2, workers);
+        acceptor = new Thread(() -> {
+            try {
+                engine.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        Thread.sleep(200);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        engine.stop();
+        acceptor.join(2000);
+        workers.shutdown();
+        workers.awaitTermination(2, TimeUnit.SECONDS);
+        HttpServer.services.clear();
+    }
+
+    @Test
+    void testServiceRequest() throws Exception {
+        // Una petición completa llega al controlador
+        String response = send("GET /greeting?name=Nio HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        assertTrue(response.startsWith("HTTP/1.1 200 OK"));
+        assertTrue(response.contains("Hello Nio"));
+    }
+
+    @Test
+    void testStreamingBodyIsSentPerChunk() throws Exception {
+        firstChunkRead = new CountDownLatch(1);
+        try (Socket socket = new Socket("localhost", SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /stream HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            String head = readUntil(in, "5\r\nfirst\r\n");
+            assertTrue(head.startsWith("HTTP/1.1 200 OK"));
+            assertTrue(head.contains("transfer-encoding: chunked"));
+
+            firstChunkRead.countDown();
+            assertEquals("6\r\nsecond\r\n0\r\n\r\n", readUntil(in, "0\r\n\r\n"));
+
+            // La conexión sigue abierta para la siguiente petición
+            out.write("GET /hello HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            assertTrue(readUntil(in, "Hello World!").startsWith("HTTP/1.1 200 OK"));
+        }
+    }
+
+    @Test
+    void testFullThreadPerTaskExecutorShedsRequests() throws Exception {
+        // Con hilos por tarea sin permisos libres el event loop responde 503 en vez de bloquearse
+        firstChunkRead = new CountDownLatch(1);
+        ThreadPerTaskExecutor perTask = new ThreadPerTaskExecutor(1);
+        NioEngine limited = new NioEngine(SERVER_PORT + 1, 1, perTask);
+        Thread loop = new Thread(() -> {
+            try {
+                limited.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        loop.setDaemon(true);
+        loop.start();
+        Thread.sleep(200);
+        try (Socket streaming = new Socket("localhost", SERVER_PORT + 1)) {
+            streaming.setSoTimeout(5000);
+            streaming.getOutputStream().write("GET /stream HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            InputStream in = streaming.getInputStream();
+            readUntil(in, "5\r\nfirst\r\n");
+
+            try (Socket other = new Socket("localhost", SERVER_PORT + 1)) {
+                other.setSoTimeout(5000);
+                other.getOutputStream().write("GET /hello HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                        .getBytes(StandardCharsets.US_ASCII));
+                String response = new String(other.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+                assertTrue(response.startsWith("HTTP/1.1 503 Service Unavailable"));
+            }
+
+            firstChunkRead.countDown();
+            assertEquals("6\r\nsecond\r\n0\r\n\r\n", readUntil(in, "0\r\n\r\n"));
+        } finally {
+            limited.stop();
+            loop.join(2000);
+            perTask.shutdown();
+        }
+    }
+
+    @Test
+    void testHeadRequestsKeepTheConnectionInSync() throws Exception {
+        // HEAD envía las mismas cabeceras que GET sin cuerpo, así la siguiente respuesta no se corre
+        firstChunkRead = new CountDownLatch(1);
+        String pipelined = "HEAD /greeting?name=Nio HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "HEAD /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "HEAD /stream HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "GET /hello HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+        String response = send(pipelined);
+
+        String[] responses = response.split("(?=HTTP/1\\.1 )");
+        assertEquals(4, responses.length, response);
+        assertTrue(responses[0].contains("content-length: 9\r\n"));
+        assertTrue(responses[0].endsWith("\r\n\r\n"));
+        assertTrue(responses[1].contains("content-type: text/html"));
+        assertFalse(responses[1].contains("content-length: 0\r\n"));
+        assertTrue(responses[1].endsWith("\r\n\r\n"));
+        assertTrue(responses[2].contains("transfer-encoding: chunked\r\n"));
+        assertTrue(responses[2].endsWith("\r\n\r\n"));
+        assertTrue(responses[3].startsWith("HTTP/1.1 200 OK"));
+        assertTrue(responses[3].endsWith("Hello World!"));
+    }
+
+    @Test
+    void testRequestBodiesAndMethodRouting() throws Exception {
+        // El cuerpo se recibe completo aunque llegue en trozos y la siguiente petición sigue en orden
+        try (Socket socket = new Socket("localhost", SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write("POST /echo HTTP/1.1\r\nContent-Length: 11\r\n\r\nhello".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            Thread.sleep(50);
+            out.write((" world"
+                    + "PUT /upload HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n3e8\r\n" + "x".repeat(1000) + "\r\n"
+                    + "0\r\n\r\n"
+                    + "DELETE /echo HTTP/1.1\r\n\r\n"
+                    + "PUT /echo HTTP/1.1\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            int echo = response.indexOf("Echo hello world");
+            int upload = response.indexOf("Received 1000");
+            int delete = response.indexOf("Deleted");
+            assertTrue(echo > 0 && upload > echo && delete > upload, response);
+            String notAllowed = response.substring(delete);
+            assertTrue(notAllowed.contains("HTTP/1.1 405 Method Not Allowed\r\nconnection: close\r\nallow: POST, DELETE\r\n"));
+        }
+    }
+
+    @Test
+    void testExpectContinueAndBodyLimit() throws Exception {
+        // El servidor pide el cuerpo con 100 Continue y rechaza cuerpos demasiado grandes
+        try (Socket socket = new Socket("localhost", SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write("POST /echo HTTP/1.1\r\nExpect: 100-continue\r\nContent-Length: 2\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+            assertEquals("HTTP/1.1 100 Continue\r\n\r\n", readUntil(in, "\r\n\r\n"));
+            out.write("okPOST /echo HTTP/1.1\r\nContent-Length: 999999999\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(response.contains("Echo ok"));
+            assertTrue(response.contains("HTTP/1.1 413 Content Too Large\r\n"));
+        }
+    }
+
+    private static String readUntil(InputStream in, String end) throws IOException {
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        while (!read.toString(StandardCharsets.US_ASCII).endsWith(end)) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Connection closed before " + end.trim());
+            }
+            read.write(b);
+        }
+        return read.toString(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void testFragmentedRequest() throws Exception {
+        // La cabecera llega en varios segmentos TCP
+        try (Socket socket = new Socket("localhost", SERVER_PORT)) {
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /hel".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            Thread.sleep(50);
+            out.write("lo HTTP/1.1\r\nHost: loc".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            Thread.sleep(50);
+            out.write("alhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(response.contains("Hello World!"));
+        }
+    }
+
+    @Test
+    void testIdleConnectionsDoNotAddThreads() throws Exception {
+        // Muchas conexiones abiertas no deben crear hilos nuevos
+        int before = Thread.activeCount();
+        List<Socket> idle = new ArrayList<>();
+        try {
+            for (int i = 0; i < 500; i++) {
+                idle.add(new Socket("localhost", SERVER_PORT));
+            }
+            String response = send("GET /hello HTTP/1.1\r\nConnection: close\r\n\r\n");
+            assertTrue(response.contains("Hello World!"));
+            assertTrue(Thread.activeCount() <= before + 4,
+                    "Thread count should not grow with open connections");
+        } finally {
+            for (Socket s : idle) {
+                s.close();
+            }
+        }
+    }
+
+    @Test
+    void testPipelinedRequestsOnOneConnection() throws Exception {
+        // Dos peticiones enviadas juntas se responden en orden por la misma conexión
+        String response = send("GET /greeting?name=Uno HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                + "GET /greeting?name=Dos HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        int first = response.indexOf("Hello Uno");
+        int second = response.indexOf("Hello Dos");
+        assertTrue(first > 0 && second > first, "Both responses should arrive in order");
+        assertTrue(response.substring(first).contains("connection: close"));
+    }
+
+    @Test
+    void testStaticFileNotFound() throws Exception {
+        String response = send("GET /missing.txt HTTP/1.1\r\nConnection: close\r\n\r\n");
+        assertTrue(response.startsWith("HTTP/1.1 404 Not Found"));
+    }
+
+    @Test
+    void testFileRegionAfterKeepAliveResponse(@TempDir Path dir) throws Exception {
+        // El cuerpo del archivo se envía con transferTo y la conexión sigue abierta
+        byte[] data = new byte[300_000];
+        new Random(7).nextBytes(data);
+        Files.write(dir.resolve("media.bin"), data);
+        String root = HttpServer.ROOT_DIRECTORY;
+        HttpServer.ROOT_DIRECTORY = dir.toString();
+        HttpServer.fileSystemStatic = true;
+        try (Socket socket = new Socket("localhost", SERVER_PORT)) {
+            socket.getOutputStream().write(("GET /media.bin HTTP/1.1\r\nRange: bytes=1000-\r\n\r\n"
+                    + "GET /greeting?name=Nio HTTP/1.1\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            byte[] response = socket.getInputStream().readAllBytes();
+            String text = new String(response, StandardCharsets.ISO_8859_1);
+            int bodyStart = text.indexOf("\r\n\r\n") + 4;
+            assertTrue(text.startsWith("HTTP/1.1 206 Partial Content\r\n"));
+            assertTrue(text.contains("content-range: bytes 1000-299999/300000\r\n"));
+            assertArrayEquals(Arrays.copyOfRange(data, 1000, data.length),
+                    Arrays.copyOfRange(response, bodyStart, bodyStart + data.length - 1000));
+            assertTrue(text.endsWith("Hello Nio"));
+        } finally {
+            HttpServer.ROOT_DIRECTORY = root;
+            HttpServer.fileSystemStatic = false;
+        }
+    }
+
+    private String send(String request) throws IOException {
+        try (Socket socket = new Socket("localhost", SERVER_PORT)) {
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+            return new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
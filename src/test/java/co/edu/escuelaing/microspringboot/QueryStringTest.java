@@ -0,0 +1,55 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.util.List;
+
+public class QueryStringTest {
+
+    @Test
+    void testDecoding() {
+        QueryString query = QueryString.parse("name=Juan+P%C3%A9rez&eq=a=b&sym=%26%3D%2B&flag&empty=");
+        assertEquals("Juan Pérez", query.get("name"));
+        // El valor puede contener '=' y caracteres escapados
+        assertEquals("a=b", query.get("eq"));
+        assertEquals("&=+", query.get("sym"));
+        assertEquals("", query.get("flag"));
+        assertEquals("", query.get("empty"));
+        assertNull(query.get("missing"));
+    }
+
+    @Test
+    void testRepeatedNames() {
+        QueryString query = QueryString.parse("tag=a&x=1&tag=b&&tag=");
+        assertEquals("a", query.get("tag"));
+        assertEquals(List.of("a", "b", ""), query.getAll("tag"));
+        assertEquals(List.of(), query.getAll("other"));
+        assertEquals(4, query.size());
+    }
+
+    @Test
+    void testMalformedEscapesAreKept() {
+        QueryString query = QueryString.parse("a=100%&b=%zz&c=%4");
+        assertEquals("100%", query.get("a"));
+        assertEquals("%zz", query.get("b"));
+        assertEquals("%4", query.get("c"));
+    }
+
+    @Test
+    void testParameterCountIsCapped() {
+        // Solo se guardan los primeros MAX_PARAMETERS pares
+        String raw = "k=v&".repeat(QueryString.MAX_PARAMETERS * 4);
+        QueryString query = QueryString.parse(raw);
+        assertEquals(QueryString.MAX_PARAMETERS, query.size());
+        assertEquals(QueryString.MAX_PARAMETERS, query.getAll("k").size());
+    }
+
+    @Test
+    void testHttpRequestUsesRawQuery() throws Exception {
+        HttpRequest request = new HttpRequest(new URI("/search?q=a%26b&tag=x&tag=y"));
+        assertEquals("a&b", request.getValue("q"));
+        assertEquals(List.of("x", "y"), request.getValues("tag"));
+    }
+}
@@ -0,0 +1,60 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+public class RequestTargetTest {
+
+    private static RequestTarget parse(String target) throws HttpParseException {
+        byte[] bytes = target.getBytes(StandardCharsets.UTF_8);
+        return RequestTarget.parse(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void testPathAndQuery() throws Exception {
+        RequestTarget target = parse("/user?name=ana&age=3");
+        assertEquals("/user", target.getPath());
+        assertEquals("name=ana&age=3", target.getQuery());
+        assertNull(parse("/user").getQuery());
+        assertEquals("", parse("/user?").getQuery());
+        // El fragmento no forma parte de la petición
+        assertEquals("/a", parse("/a#top").getPath());
+    }
+
+    @Test
+    void testPathIsDecodedAndNormalized() throws Exception {
+        assertEquals("/mis archivos/año.txt", parse("/mis%20archivos/a%C3%B1o.txt").getPath());
+        assertEquals("/a+b", parse("/a+b").getPath());
+        assertEquals("/b/", parse("//a/../b/./").getPath());
+        assertEquals("/", parse("/a/..").getPath());
+        assertEquals("/.well-known/x", parse("/.well-known/x").getPath());
+    }
+
+    @Test
+    void testAbsoluteForm() throws Exception {
+        RequestTarget target = parse("http://localhost:35000/hello?x=1");
+        assertEquals("/hello", target.getPath());
+        assertEquals("x=1", target.getQuery());
+        assertEquals("/", parse("HTTP://localhost").getPath());
+    }
+
+    @Test
+    void testInvalidTargetsAreBadRequests() {
+        // Subir por encima de la raíz, escapado o no, se rechaza con 400
+        for (String target : new String[] {"/../etc/passwd", "/a/../../b", "/%2e%2e/secret", "/%2E%2E%2Fsecret",
+                "/bad%zz", "/nul%00", "/100%", "*", "ftp://host/a", "relative"}) {
+            HttpParseException e = assertThrows(HttpParseException.class, () -> parse(target), target);
+            assertEquals("400 Bad Request", e.getStatus());
+        }
+    }
+
+    @Test
+    void testFromUri() throws Exception {
+        assertEquals("/greeting", RequestTarget.of(new URI("/greeting?name=Ana")).getPath());
+        assertNull(RequestTarget.of(new URI("/../x")));
+        assertNull(RequestTarget.of(null));
+    }
+}
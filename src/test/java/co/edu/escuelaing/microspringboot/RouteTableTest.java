@@ -0,0 +1,161 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.util.List;
+
+public class RouteTableTest {
+
+    @RestController
+    public static class UserController {
+        @GetMapping("/users/{id}")
+        public static String user(@PathVariable("id") String id) {
+            return "User " + id;
+        }
+
+        @GetMapping("/users/me")
+        public static String me() {
+            return "Current user";
+        }
+
+        @GetMapping("/users/{id}/orders/{order}")
+        public static String order(@PathVariable("id") String id, @PathVariable("order") String order,
+                                   @RequestParam(value = "format", defaultValue = "text") String format) {
+            return "Order " + order + " of " + id + " as " + format;
+        }
+    }
+
+    @RestController
+    public static class ConflictingController {
+        @GetMapping("/users/{name}")
+        public static String byName(@PathVariable("name") String name) {
+            return name;
+        }
+    }
+
+    @RestController
+    public static class MisnamedController {
+        @GetMapping("/accounts/{id}")
+        public static String account(@PathVariable("accountId") long id) {
+            return "Account " + id;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        HttpServer.services.clear();
+    }
+
+    @AfterEach
+    void tearDown() {
+        HttpServer.services.clear();
+    }
+
+    @Test
+    void testLiteralAndVariableSegments() throws Exception {
+        // Los segmentos literales tienen prioridad sobre las variables
+        RouteTable table = new RouteTable();
+        Method user = UserController.class.getMethod("user", String.class);
+        Method me = UserController.class.getMethod("me");
+        table.register("/users/{id}", user);
+        table.register("/users/me", me);
+
+        assertEquals(me, table.match("/users/me").getHandler());
+        RouteTable.Match match = table.match("/users/42");
+        assertEquals(user, match.getHandler());
+        assertEquals("42", match.getPathVariable("id"));
+        assertNull(match.getPathVariable("other"));
+        assertNull(table.match("/users"));
+        assertNull(table.match("/users/"));
+        assertNull(table.match("/users/42/extra"));
+    }
+
+    @Test
+    void testStaticMatchIsShared() throws Exception {
+        // Las rutas sin variables no crean objetos en cada búsqueda
+        RouteTable table = new RouteTable();
+        table.register("/hello", UserController.class.getMethod("me"));
+        table.register("/", UserController.class.getMethod("me"));
+
+        assertSame(table.match("/hello"), table.match("/hello"));
+        assertNotNull(table.match("/"));
+        assertNull(table.match("/hello/world"));
+    }
+
+    @Test
+    void testConflictingMappingsFail() {
+        // Dos métodos con la misma ruta se reportan al cargar
+        HttpServer.loadComponent(UserController.class);
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> HttpServer.loadComponent(ConflictingController.class));
+        assertTrue(e.getMessage().contains("/users/{id}"));
+    }
+
+    @Test
+    void testUnknownPathVariableFails() {
+        // Un @PathVariable que no está en la ruta detiene el arranque en vez de llegar como null
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> HttpServer.loadComponent(MisnamedController.class));
+        assertTrue(e.getMessage().contains("accountId"));
+        assertTrue(HttpServer.services.isEmpty());
+        assertEquals(List.of("id", "order"), RouteTable.variables("/users/{id}/orders/{order}"));
+    }
+
+    @Test
+    void testMapView() throws Exception {
+        RouteTable table = new RouteTable();
+        Method me = UserController.class.getMethod("me");
+        table.put("/users/me", me);
+
+        assertTrue(table.containsKey("/users/me"));
+        assertEquals(me, table.get("/users/me"));
+        assertEquals(1, table.size());
+        table.remove("/users/me");
+        assertNull(table.match("/users/me"));
+        assertTrue(table.isEmpty());
+    }
+
+    @Test
+    void testMethodRouting() throws Exception {
+        // La misma ruta puede tener un método distinto para cada verbo HTTP
+        RouteTable table = new RouteTable();
+        Method user = UserController.class.getMethod("user", String.class);
+        Method me = UserController.class.getMethod("me");
+        table.register("/users/{id}", user);
+        table.register("POST", "/users/{id}", me);
+        table.register("DELETE", "/users/me", me);
+
+        assertEquals(user, table.match("HEAD", "/users/7").getHandler());
+        assertEquals("7", table.match("POST", "/users/7").getPathVariable("id"));
+        assertEquals(me, table.match("DELETE", "/users/me").getHandler());
+        assertEquals(user, table.match("GET", "/users/me").getHandler());
+        assertNull(table.match("PUT", "/users/7"));
+        assertNull(table.match("PATCH", "/users/7"));
+        assertEquals("GET, HEAD, POST", table.allowed("/users/7"));
+        assertNull(table.allowed("/orders"));
+        assertTrue(table.containsKey("POST /users/{id}"));
+        assertTrue(table.containsKey("/users/{id}"));
+
+        table.remove("POST /users/{id}");
+        assertNull(table.match("POST", "/users/7"));
+        assertNotNull(table.match("/users/7"));
+    }
+
+    @Test
+    void testPathVariableBinding() throws Exception {
+        // Las variables de la ruta llegan a los parámetros anotados
+        HttpServer.loadComponent(UserController.class);
+
+        String response = HttpServer.invokeService(new URI("/users/7/orders/99?format=json"));
+        assertTrue(response.contains("HTTP/1.1 200 OK"));
+        assertTrue(response.contains("Order 99 of 7 as json"));
+
+        String me = HttpServer.invokeService(new URI("/users/me"));
+        assertTrue(me.contains("Current user"));
+    }
+}
@@ -0,0 +1,179 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ServerConfigTest {
+
+    @Test
+    void testDefaults() {
+        ServerConfig config = ServerConfig.of(Map.of());
+
+        assertEquals(35000, config.getPort());
+        assertEquals(10, config.getWorkers());
+        assertEquals(1000, config.getWorkerQueue());
+        assertEquals(5000, config.getIdleTimeoutMs());
+        assertEquals(100, config.getMaxKeepAliveRequests());
+        assertEquals(HttpRequestParser.MAX_HEAD_SIZE, config.getMaxHeaderSize());
+        assertTrue(config.isTcpNoDelay());
+        assertFalse(config.isNioEngine());
+        assertFalse(config.isAdaptiveConcurrencyLimit());
+        assertNull(config.getStaticDir());
+    }
+
+    @Test
+    void testValuesAndInvalidValues() {
+        // Los valores invalidos se reemplazan por el valor por defecto
+        ServerConfig config = ServerConfig.of(Map.of(
+                "server.port", "8080",
+                "server.workers", "32",
+                "server.engine", "NIO",
+                "server.tcp.nodelay", "false",
+                "server.so.rcvbuf", "65536",
+                "server.worker.queue", "mucho",
+                "server.so.reuseport", "quizas"));
+
+        assertEquals(8080, config.getPort());
+        assertEquals(32, config.getWorkers());
+        assertTrue(config.isNioEngine());
+        assertFalse(config.isTcpNoDelay());
+        assertEquals(65536, config.getReceiveBuffer());
+        assertEquals(1000, config.getWorkerQueue());
+        assertFalse(config.isReusePort());
+    }
+
+    @Test
+    void testNioBodyLimitFitsInABuffer() {
+        // El motor nio guarda el cuerpo completo en memoria, así que el límite se reduce
+        Map<String, String> huge = Map.of("server.max.body.size", "4294967296");
+        assertEquals(4294967296L, ServerConfig.of(huge).getMaxBodySize());
+
+        Map<String, String> nio = new HashMap<>(huge);
+        nio.put("server.engine", "nio");
+        assertEquals(ServerConfig.NIO_MAX_BODY_SIZE, ServerConfig.of(nio).getMaxBodySize());
+        assertEquals(1024, ServerConfig.of(Map.of("server.engine", "nio", "server.max.body.size", "1024"))
+                .getMaxBodySize());
+    }
+
+    @Test
+    void testEnvironmentNames() {
+        assertEquals("WORKER_QUEUE", ServerConfig.environmentName("server.worker.queue"));
+        assertEquals("SO_REUSEPORT", ServerConfig.environmentName("server.so.reuseport"));
+        assertEquals("ACCESS_LOG_LEVEL", ServerConfig.environmentName("server.access.log.level"));
+    }
+
+    @Test
+    void testSystemPropertyIsRead() {
+        String previous = System.getProperty("server.backlog");
+        System.setProperty("server.backlog", "512");
+        try {
+            assertEquals(512, ServerConfig.load().getBacklog());
+        } finally {
+            if (previous == null) {
+                System.clearProperty("server.backlog");
+            } else {
+                System.setProperty("server.backlog", previous);
+            }
+        }
+    }
+
+    @Test
+    void testSocketOptionsAreApplied() throws Exception {
+        ServerConfig config = ServerConfig.of(Map.of("server.so.reuseaddr", "true", "server.so.rcvbuf", "32768"));
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            config.applyToServer(channel);
+
+            assertTrue(channel.getOption(StandardSocketOptions.SO_REUSEADDR));
+            assertTrue(channel.getOption(StandardSocketOptions.SO_RCVBUF) >= 32768 / 2);
+        }
+    }
+
+    @Test
+    void testNioEngineClosesIncompleteHeadAfterReadTimeout() throws Exception {
+        // Una cabecera incompleta se cierra con el READ_TIMEOUT_MS aunque el idle sea mayor
+        int port = 35093;
+        ServerConfig config = ServerConfig.of(Map.of(
+                "server.port", Integer.toString(port),
+                "server.event.loops", "1",
+                "server.read.timeout.ms", "500",
+                "server.idle.timeout.ms", "60000"));
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        NioEngine engine = new NioEngine(config, workers);
+        Thread acceptor = new Thread(() -> {
+            try {
+                engine.start();
+            } catch (Exception e) {
+                // El motor se detiene al final de la prueba
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        try (Socket socket = connect(port)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write("GET /app/hello HTTP/1.1\r\nHost: loc".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            InputStream in = socket.getInputStream();
+
+            assertEquals(-1, in.read());
+        } finally {
+            engine.stop();
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testBlockingOutputClosesStalledWriteAfterWriteTimeout() throws Exception {
+        // Un cliente que deja de leer no retiene al worker más que WRITE_TIMEOUT_MS
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            try (SocketChannel client = SocketChannel.open(server.getLocalAddress());
+                 SocketChannel accepted = server.accept()) {
+                accepted.setOption(StandardSocketOptions.SO_SNDBUF, 4096);
+                SocketChannelOutput out = new SocketChannelOutput(accepted, 300);
+                byte[] block = new byte[SocketChannelOutput.SLICE];
+                long start = System.nanoTime();
+
+                assertThrows(SocketTimeoutException.class, () -> {
+                    while (true) {
+                        out.write(block);
+                    }
+                });
+                assertTrue(System.nanoTime() - start < 10_000_000_000L);
+                assertFalse(accepted.isOpen());
+                // El servidor cerró por su cuenta, el cliente nunca leyó ni cerró
+                assertTrue(client.isConnected());
+            }
+        }
+    }
+
+    private static Socket connect(int port) throws Exception {
+        for (int i = 0; i < 50; i++) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress("localhost", port));
+                return socket;
+            } catch (ConnectException e) {
+                socket.close();
+                Thread.sleep(50);
+            }
+        }
+        throw new IllegalStateException("Engine did not start");
+    }
+}
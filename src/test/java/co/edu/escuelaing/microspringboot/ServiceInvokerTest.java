@@ -0,0 +1,101 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+
+public class ServiceInvokerTest {
+
+    public static class InstanceController {
+        private final String prefix = "Hi ";
+
+        public String hi(@RequestParam(value = "name", defaultValue = "you") String name, String unbound) {
+            return prefix + name + (unbound == null ? "" : unbound);
+        }
+    }
+
+    public enum Color { RED, GREEN }
+
+    public static class TypedController {
+        public static String typed(@RequestParam("n") int n,
+                                   @RequestParam(value = "ratio", defaultValue = "0.5") double ratio,
+                                   @RequestParam(value = "on", defaultValue = "false") boolean on,
+                                   @RequestParam(value = "color", defaultValue = "red") Color color,
+                                   @RequestParam("limit") Optional<Long> limit,
+                                   @RequestParam("ids") List<Integer> ids,
+                                   @RequestParam("max") Integer max) {
+            return n + " " + ratio + " " + on + " " + color + " " + limit + " " + ids + " " + max;
+        }
+
+        public static String unsupported(@RequestParam("o") Object o) {
+            return String.valueOf(o);
+        }
+    }
+
+    private static ServiceInvoker typedInvoker() throws Exception {
+        return new ServiceInvoker(TypedController.class.getMethod("typed", int.class, double.class, boolean.class,
+                Color.class, Optional.class, List.class, Integer.class));
+    }
+
+    @Test
+    void testTypedParameters() throws Throwable {
+        // Cada tipo usa el conversor elegido al cargar el controlador
+        ServiceInvoker invoker = typedInvoker();
+        assertEquals("3 0.5 false RED Optional.empty [] null",
+                invoker.invoke(new HttpRequest(new URI("/typed?n=3")), null));
+        assertEquals("-7 2.5 true GREEN Optional[9000000000] [1, 2, 3] 4",
+                invoker.invoke(new HttpRequest(new URI(
+                        "/typed?n=-7&ratio=2.5&on=TRUE&color=green&limit=9000000000&ids=1,2,3&max=4")), null));
+        // Los elementos vacíos de una lista se omiten
+        assertEquals("3 0.5 false RED Optional.empty [1, 2] null",
+                invoker.invoke(new HttpRequest(new URI("/typed?n=3&ids=1,,2,&ids=")), null));
+    }
+
+    @Test
+    void testConversionErrorsAreBindingErrors() throws Exception {
+        ServiceInvoker invoker = typedInvoker();
+        ParameterBindingException e = assertThrows(ParameterBindingException.class,
+                () -> invoker.invoke(new HttpRequest(new URI("/typed?n=abc")), null));
+        assertEquals("Invalid value 'abc' for parameter 'n', expected an integer", e.getMessage());
+        assertThrows(ParameterBindingException.class,
+                () -> invoker.invoke(new HttpRequest(new URI("/typed")), null));
+        assertThrows(ParameterBindingException.class,
+                () -> invoker.invoke(new HttpRequest(new URI("/typed?n=1&color=blue")), null));
+        assertThrows(ParameterBindingException.class,
+                () -> invoker.invoke(new HttpRequest(new URI("/typed?n=1&ids=1,x")), null));
+    }
+
+    @Test
+    void testUnsupportedTypeFailsAtLoad() throws Exception {
+        // Un tipo sin conversor se detecta al registrar la ruta, no en la primera petición
+        assertThrows(IllegalStateException.class,
+                () -> new ServiceInvoker(TypedController.class.getMethod("unsupported", Object.class)));
+    }
+
+    @Test
+    void testBindsParametersOnce() throws Throwable {
+        // Los parámetros se resuelven con los binders precompilados
+        ServiceInvoker invoker = new ServiceInvoker(IntegrationController.class.getMethod("math", String.class, String.class));
+        assertEquals("Result: 7", invoker.invoke(new HttpRequest(new URI("/math?a=3&b=4")), null));
+        assertEquals("Result: 0", invoker.invoke(new HttpRequest(new URI("/math")), null));
+    }
+
+    @Test
+    void testInstanceMethod() throws Throwable {
+        // Los métodos de instancia se invocan sobre un controlador creado una vez
+        ServiceInvoker invoker = new ServiceInvoker(InstanceController.class.getMethod("hi", String.class, String.class));
+        assertEquals("Hi you", invoker.invoke(new HttpRequest(new URI("/hi")), null));
+        assertEquals("Hi Ana", invoker.invoke(new HttpRequest(new URI("/hi?name=Ana")), null));
+    }
+
+    @Test
+    void testExceptionsPropagate() throws Exception {
+        ServiceInvoker invoker = new ServiceInvoker(HttpServerTest.TestController.class.getMethod("errorMethod"));
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> invoker.invoke(new HttpRequest(new URI("/error")), null));
+        assertEquals("Test error", e.getMessage());
+    }
+}
@@ -0,0 +1,105 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class StaticDirectoryTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void testWholeFile() throws Exception {
+        Files.writeString(root.resolve("page.html"), "<h1>Disk</h1>");
+
+        String response = serve("/page.html", "");
+        assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(response.contains("content-type: text/html; charset=utf-8\r\n"));
+        assertTrue(response.contains("content-length: 13\r\n"));
+        assertTrue(response.contains("accept-ranges: bytes\r\n"));
+        assertTrue(response.endsWith("\r\n\r\n<h1>Disk</h1>"));
+        assertNull(serveOrNull("/missing.html", ""));
+        assertNull(serveOrNull("/", ""));
+    }
+
+    @Test
+    void testHeadSendsOnlyTheHead() throws Exception {
+        Files.writeString(root.resolve("page.html"), "<h1>Disk</h1>");
+        HttpRequestParser head = new HttpRequestParser();
+        byte[] bytes = "HEAD /page.html HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        head.parse(bytes, 0, bytes.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertTrue(StaticDirectory.serve(root, "/page.html", new HttpRequest(new URI("/page.html"), head), out, true));
+        String response = out.toString(StandardCharsets.US_ASCII);
+        assertTrue(response.contains("content-length: 13\r\n"));
+        assertTrue(response.endsWith("\r\n\r\n"));
+    }
+
+    @Test
+    void testRangeRequests() throws Exception {
+        // Los rangos de bytes permiten reanudar descargas y saltar en videos
+        Files.writeString(root.resolve("data.txt"), "0123456789");
+
+        String partial = serve("/data.txt", "Range: bytes=2-5\r\n");
+        assertTrue(partial.startsWith("HTTP/1.1 206 Partial Content\r\n"));
+        assertTrue(partial.contains("content-range: bytes 2-5/10\r\n"));
+        assertTrue(partial.contains("content-length: 4\r\n"));
+        assertTrue(partial.endsWith("\r\n\r\n2345"));
+
+        assertTrue(serve("/data.txt", "Range: bytes=-3\r\n").endsWith("\r\n\r\n789"));
+        assertTrue(serve("/data.txt", "Range: bytes=7-\r\n").endsWith("\r\n\r\n789"));
+        assertTrue(serve("/data.txt", "Range: bytes=8-100\r\n").endsWith("\r\n\r\n89"));
+
+        String unsatisfiable = serve("/data.txt", "Range: bytes=10-\r\n");
+        assertTrue(unsatisfiable.startsWith("HTTP/1.1 416 Range Not Satisfiable\r\n"));
+        assertTrue(unsatisfiable.contains("content-range: bytes */10\r\n"));
+
+        // Varios rangos o un If-Range viejo devuelven el archivo completo
+        assertTrue(serve("/data.txt", "Range: bytes=0-1,4-5\r\n").startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(serve("/data.txt", "Range: bytes=0-1\r\nIf-Range: \"old\"\r\n").startsWith("HTTP/1.1 200 OK\r\n"));
+    }
+
+    @Test
+    void testConditionalRequest() throws Exception {
+        Files.writeString(root.resolve("app.js"), "console.log(1);");
+        String first = serve("/app.js", "");
+        int start = first.indexOf("etag: ") + "etag: ".length();
+        String etag = first.substring(start, first.indexOf("\r\n", start));
+
+        String response = serve("/app.js", "If-None-Match: " + etag + "\r\n");
+        assertTrue(response.startsWith("HTTP/1.1 304 Not Modified\r\n"));
+        assertTrue(response.endsWith("\r\n\r\n"));
+        String ranged = serve("/app.js", "Range: bytes=0-6\r\nIf-Range: " + etag + "\r\n");
+        assertTrue(ranged.endsWith("\r\n\r\nconsole"));
+    }
+
+    @Test
+    void testPathsCannotLeaveRoot() {
+        assertNull(StaticDirectory.resolve(root, "/../secret.txt"));
+        assertNull(StaticDirectory.resolve(root, "/a/../../secret.txt"));
+        assertEquals(root.toAbsolutePath().normalize().resolve("a/b.txt"), StaticDirectory.resolve(root, "/a/./b.txt"));
+    }
+
+    private String serve(String path, String headers) throws Exception {
+        String response = serveOrNull(path, headers);
+        assertNotNull(response);
+        return response;
+    }
+
+    private String serveOrNull(String path, String headers) throws Exception {
+        HttpRequestParser head = new HttpRequestParser();
+        byte[] bytes = ("GET " + path + " HTTP/1.1\r\n" + headers + "\r\n").getBytes(StandardCharsets.US_ASCII);
+        head.parse(bytes, 0, bytes.length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        boolean served = StaticDirectory.serve(root, path, new HttpRequest(new URI(path), head), out, true);
+        return served ? out.toString(StandardCharsets.UTF_8) : null;
+    }
+}
@@ -0,0 +1,165 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+public class StaticFileCacheTest {
+
+    @Test
+    void testHitsAndMisses() throws Exception {
+        // La primera petición carga el archivo y las siguientes salen de memoria
+        StaticFileCache cache = new StaticFileCache("webroot", 1024 * 1024);
+
+        StaticFileCache.Entry first = cache.get("/style.css");
+        StaticFileCache.Entry second = cache.get("/style.css");
+
+        assertNotNull(first);
+        assertSame(first, second);
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(first.size(), cache.getCachedBytes());
+        assertNull(cache.get("/missing.txt"));
+    }
+
+    @Test
+    void testPrecomputedHeaders() throws Exception {
+        StaticFileCache cache = new StaticFileCache("webroot", 1024 * 1024);
+        StaticFileCache.Entry entry = cache.get("/index.html");
+
+        String keepAlive = new String(entry.header(true), StandardCharsets.US_ASCII);
+        String close = new String(entry.header(false), StandardCharsets.US_ASCII);
+        assertTrue(keepAlive.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(keepAlive.contains("content-type: text/html; charset=utf-8\r\n"));
+        assertTrue(keepAlive.contains("content-length: " + entry.body().length + "\r\n"));
+        assertTrue(keepAlive.endsWith("\r\n\r\n"));
+        assertFalse(keepAlive.contains("connection: close"));
+        assertTrue(close.endsWith("connection: close\r\n\r\n"));
+    }
+
+    @Test
+    void testValidators() throws Exception {
+        // El ETag se calcula una vez por archivo y depende solo del contenido
+        StaticFileCache.Entry entry = new StaticFileCache("webroot", 1 << 20).get("/index.html");
+        StaticFileCache.Entry again = new StaticFileCache("webroot", 1 << 20).get("/index.html");
+        String etag = entry.etag();
+
+        assertEquals(etag, again.etag());
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""));
+        String header = new String(entry.header(true), StandardCharsets.US_ASCII);
+        assertTrue(header.contains("etag: " + etag + "\r\n"));
+        assertTrue(header.contains("last-modified: "));
+        assertTrue(header.contains("cache-control: no-cache\r\n"));
+        String notModified = new String(entry.notModifiedHeader(false), StandardCharsets.US_ASCII);
+        assertTrue(notModified.startsWith("HTTP/1.1 304 Not Modified\r\n"));
+        assertTrue(notModified.endsWith("connection: close\r\n\r\n"));
+        assertFalse(notModified.contains("content-length"));
+    }
+
+    @Test
+    void testConditionalHeaders() throws Exception {
+        StaticFileCache.Entry entry = new StaticFileCache("webroot", 1 << 20).get("/index.html");
+        String etag = entry.etag();
+
+        assertTrue(entry.isNotModified(etag, null));
+        assertTrue(entry.isNotModified("\"other\", W/" + etag, null));
+        assertTrue(entry.isNotModified("*", null));
+        assertFalse(entry.isNotModified("\"other\"", null));
+        assertFalse(entry.isNotModified(null, null));
+        assertTrue(entry.isNotModified(null, "Fri, 31 Dec 9999 23:59:59 GMT"));
+        assertFalse(entry.isNotModified(null, "Thu, 01 Jan 1970 00:00:00 GMT"));
+        assertFalse(entry.isNotModified(null, "not a date"));
+        // If-None-Match tiene prioridad sobre la fecha
+        assertFalse(entry.isNotModified("\"other\"", "Fri, 31 Dec 9999 23:59:59 GMT"));
+    }
+
+    @Test
+    void testGzipVariant() throws Exception {
+        // Los archivos de texto se comprimen una sola vez al cargarlos
+        StaticFileCache cache = new StaticFileCache("webroot", 1 << 20);
+        StaticFileCache.Entry html = cache.get("/index.html");
+        StaticFileCache.Entry gzip = html.gzip();
+
+        assertNotNull(gzip);
+        assertSame(gzip, cache.get("/index.html").variant(true));
+        assertSame(html, html.variant(false));
+        assertArrayEquals(html.body(), new GZIPInputStream(
+                new ByteArrayInputStream(gzip.body())).readAllBytes());
+        assertNotEquals(html.etag(), gzip.etag());
+        assertEquals(html.body().length + gzip.body().length, cache.getCachedBytes());
+
+        String header = new String(gzip.header(true), StandardCharsets.US_ASCII);
+        assertTrue(header.contains("content-encoding: gzip\r\n"));
+        assertTrue(header.contains("content-length: " + gzip.body().length + "\r\n"));
+        assertTrue(header.contains("vary: Accept-Encoding\r\n"));
+        assertTrue(new String(html.header(true), StandardCharsets.US_ASCII).contains("vary: Accept-Encoding\r\n"));
+        // Las imágenes ya vienen comprimidas
+        assertNull(cache.get("/time.jpg").gzip());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() throws Exception {
+        // Con un límite pequeño se descarta el archivo usado hace más tiempo
+        long css = new StaticFileCache("webroot", 1 << 20).get("/style.css").size();
+        long js = new StaticFileCache("webroot", 1 << 20).get("/script.js").size();
+        long html = new StaticFileCache("webroot", 1 << 20).get("/index.html").size();
+        StaticFileCache cache = new StaticFileCache("webroot", css + js + html - 1);
+
+        cache.get("/style.css");
+        cache.get("/script.js");
+        cache.get("/style.css");
+        cache.get("/index.html");
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(css + html, cache.getCachedBytes());
+        cache.get("/style.css");
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    void testLargeFilesAreNotCached() throws Exception {
+        StaticFileCache cache = new StaticFileCache("webroot", 10);
+
+        assertNotNull(cache.get("/time.jpg"));
+        assertEquals(0, cache.getCachedBytes());
+    }
+
+    @Test
+    void testGzipCopyIsDroppedWhenItDoesNotFit() throws Exception {
+        // Si la copia comprimida no cabe, se guarda solo el archivo y no se comprime en cada petición
+        long html = new StaticFileCache("webroot", 1 << 20).get("/index.html").body().length;
+        StaticFileCache cache = new StaticFileCache("webroot", html);
+
+        StaticFileCache.Entry entry = cache.get("/index.html");
+        assertNull(entry.gzip());
+        assertEquals(html, cache.getCachedBytes());
+        assertSame(entry, cache.get("/index.html"));
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    void testLargeFilesAreStreamed() throws Exception {
+        // Un archivo más grande que la caché no se lee en memoria, se envía por partes
+        StaticFileCache cache = new StaticFileCache("webroot", 10);
+        StaticFileCache.Entry entry = cache.get("/time.jpg");
+        byte[] expected;
+        try (InputStream resource = getClass().getClassLoader().getResourceAsStream("webroot/time.jpg")) {
+            expected = resource.readAllBytes();
+        }
+
+        assertTrue(entry.isStreamed());
+        assertNull(entry.body());
+        assertNull(entry.gzip());
+        String header = new String(entry.header(true), StandardCharsets.US_ASCII);
+        assertTrue(header.contains("content-length: " + expected.length + "\r\n"));
+        assertTrue(entry.etag().startsWith("\"" + Long.toHexString(expected.length) + "-"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entry.writeBody(out);
+        assertArrayEquals(expected, out.toByteArray());
+    }
+}
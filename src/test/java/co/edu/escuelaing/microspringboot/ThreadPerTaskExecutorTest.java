@@ -0,0 +1,70 @@
+package co.edu.escuelaing.microspringboot;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThreadPerTaskExecutorTest {
+
+    @Test
+    void testConcurrencyLimit() throws Exception {
+        // Nunca deben correr más tareas que el límite configurado
+        ThreadPerTaskExecutor executor = new ThreadPerTaskExecutor(3);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxSeen = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(12);
+
+        for (int i = 0; i < 12; i++) {
+            executor.execute(() -> {
+                int now = running.incrementAndGet();
+                maxSeen.accumulateAndGet(now, Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(maxSeen.get() <= 3, "At most 3 tasks should run at once");
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    void testTryExecuteDoesNotWait() throws Exception {
+        // Sin permisos libres tryExecute rechaza la tarea en vez de bloquear al llamador
+        ThreadPerTaskExecutor executor = new ThreadPerTaskExecutor(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch ran = new CountDownLatch(1);
+        executor.tryExecute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertThrows(RejectedExecutionException.class, () -> executor.tryExecute(() -> { }));
+
+        release.countDown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+        executor.tryExecute(ran::countDown);
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    void testRejectsAfterShutdown() {
+        ThreadPerTaskExecutor executor = new ThreadPerTaskExecutor(0);
+        executor.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> { }));
+    }
+}